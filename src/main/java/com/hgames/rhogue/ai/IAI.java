@@ -26,7 +26,8 @@ public interface IAI<T extends IAnimate> {
 	/**
 	 * @param one
 	 * @param two
-	 * @return Whether {@code one} has a Line of Sight on {@code two}.
+	 * @return Whether {@code one} has a Line of Sight on {@code two}. See
+	 *         {@link LOSService} to answer many queries efficiently.
 	 */
 	public boolean hasLOS(T one, T two);
 
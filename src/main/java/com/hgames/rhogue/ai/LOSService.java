@@ -0,0 +1,189 @@
+package com.hgames.rhogue.ai;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hgames.rhogue.animate.IAnimate;
+import com.hgames.rhogue.fov.FOVCache;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * A service to answer line of sight queries, typically to implement
+ * {@link IAI#hasLOS(IAnimate, IAnimate)}. Queries are answered from the
+ * visibility set of the asking animate, that is computed once (with
+ * {@link FOVCache}) and shared by all queries of this animate (and of animates
+ * at the same position) as long as the map's version doesn't change.
+ * 
+ * <p>
+ * Prefer {@link #hasLOS(List, List)} and
+ * {@link #getVisibles(IAnimate, Collection, List)} over repeated calls to
+ * {@link #hasLOS(IAnimate, IAnimate)}: they group queries by source, so that
+ * each source's visibility set is computed at most once per call, whatever
+ * the cache's memory budget.
+ * </p>
+ * 
+ * <p>
+ * In symmetric mode (see {@link #setSymmetric(boolean)}), {@code one} has a
+ * line of sight on {@code two} if {@code one} sees {@code two} or if
+ * {@code two} sees {@code one}. Hence results don't depend on which side asks.
+ * </p>
+ * 
+ * @author smelC
+ * @param <T>
+ *            The concrete type of animates.
+ */
+public abstract class LOSService<T extends IAnimate> {
+
+	/** The maximum distance at which a line of sight exists */
+	protected final int radius;
+
+	protected boolean symmetric;
+
+	private final FOVCache cache;
+
+	/**
+	 * @param width
+	 *            The map's width.
+	 * @param height
+	 *            The map's height.
+	 * @param radius
+	 *            The maximum distance at which a line of sight exists.
+	 * @param maxBytes
+	 *            The memory budget of the underlying {@link FOVCache}, in bytes.
+	 */
+	public LOSService(int width, int height, int radius, long maxBytes) {
+		if (radius < 0)
+			throw new IllegalStateException("Radius of line of sight must be >= 0. Received: " + radius);
+		this.radius = radius;
+		this.cache = new FOVCache(width, height, maxBytes) {
+			@Override
+			protected double getResistance(int x, int y) {
+				return LOSService.this.getResistance(x, y);
+			}
+		};
+	}
+
+	/**
+	 * @param value
+	 *            Whether lines of sight should be symmetric.
+	 * @return {@code this}
+	 */
+	public LOSService<T> setSymmetric(boolean value) {
+		this.symmetric = value;
+		return this;
+	}
+
+	/**
+	 * @param one
+	 * @param two
+	 * @return Whether {@code one} has a Line of Sight on {@code two}.
+	 */
+	public boolean hasLOS(T one, T two) {
+		final int version = getVersion();
+		final int ox = one.getX();
+		final int oy = one.getY();
+		final int tx = two.getX();
+		final int ty = two.getY();
+		if (FOVCache.isVisible(cache.getVisibles(ox, oy, radius, version), radius, tx - ox, ty - oy))
+			return true;
+		return symmetric
+				&& FOVCache.isVisible(cache.getVisibles(tx, ty, radius, version), radius, ox - tx, oy - ty);
+	}
+
+	/**
+	 * @param ones
+	 * @param twos
+	 *            Of the same size as {@code ones}.
+	 * @return An array whose i-th element tells whether {@code ones.get(i)} has
+	 *         a line of sight on {@code twos.get(i)}.
+	 */
+	public boolean[] hasLOS(List<? extends T> ones, List<? extends T> twos) {
+		final int sz = ones.size();
+		if (sz != twos.size())
+			throw new IllegalStateException(
+					"Lists of queries should have the same size. Received: " + sz + " and " + twos.size());
+		final boolean[] result = new boolean[sz];
+		final int version = getVersion();
+		final Map<Coord, long[]> visibles = new HashMap<Coord, long[]>();
+		/* Sources in symmetric mode may need the visibility set of targets */
+		final List<Integer> unanswereds = symmetric ? new ArrayList<Integer>() : null;
+		for (int i = 0; i < sz; i++) {
+			final T one = ones.get(i);
+			final T two = twos.get(i);
+			result[i] = isVisible(visibles, version, one, two);
+			if (!result[i] && unanswereds != null)
+				unanswereds.add(i);
+		}
+		if (unanswereds != null) {
+			final int nb = unanswereds.size();
+			for (int j = 0; j < nb; j++) {
+				final int i = unanswereds.get(j);
+				result[i] = isVisible(visibles, version, twos.get(i), ones.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param one
+	 * @param candidates
+	 * @param buf
+	 *            Where to record the result, or null for this method to
+	 *            allocate a fresh list.
+	 * @return The members of {@code candidates} on which {@code one} has a
+	 *         line of sight (i.e. {@code buf} if it was non-null).
+	 */
+	public List<T> getVisibles(T one, Collection<? extends T> candidates, /* @Nullable */ List<T> buf) {
+		final List<T> result = buf == null ? new ArrayList<T>(candidates.size()) : buf;
+		final int version = getVersion();
+		final int ox = one.getX();
+		final int oy = one.getY();
+		final long[] visibles = cache.getVisibles(ox, oy, radius, version);
+		for (T candidate : candidates) {
+			final int cx = candidate.getX();
+			final int cy = candidate.getY();
+			if (FOVCache.isVisible(visibles, radius, cx - ox, cy - oy)
+					|| (symmetric && FOVCache.isVisible(cache.getVisibles(cx, cy, radius, version), radius,
+							ox - cx, oy - cy)))
+				result.add(candidate);
+		}
+		return result;
+	}
+
+	/** Forgets all visibility sets computed so far */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return The version of the map, typically
+	 *         {@link com.hgames.rhogue.generation.map.dungeon.Dungeon#getVersion()}
+	 *         . Visibility sets computed for another version are not used.
+	 */
+	protected abstract int getVersion();
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The resistance at (x, y), as in
+	 *         {@link com.hgames.rhogue.fov.ShadowCastingObjectFOV}.
+	 */
+	protected abstract double getResistance(int x, int y);
+
+	private boolean isVisible(Map<Coord, long[]> visibles, int version, T one, T two) {
+		final int ox = one.getX();
+		final int oy = one.getY();
+		final Coord key = Coord.get(ox, oy);
+		long[] vis = visibles.get(key);
+		if (vis == null) {
+			vis = cache.getVisibles(ox, oy, radius, version);
+			visibles.put(key, vis);
+		}
+		return FOVCache.isVisible(vis, radius, two.getX() - ox, two.getY() - oy);
+	}
+
+}
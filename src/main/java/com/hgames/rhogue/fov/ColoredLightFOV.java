@@ -0,0 +1,133 @@
+package com.hgames.rhogue.fov;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.hgames.lib.color.IColor;
+import com.hgames.rhogue.grid.Positioned;
+import com.hgames.rhogue.lighting.ILightSource;
+
+/**
+ * Colored lighting without per-cell objects. The light received by each cell is
+ * accumulated as a packed RGB int ({@code 0xRRGGBB}) in a single {@code int[]}
+ * (see {@link #getRGBs()}) where each channel saturates at {@code 0xFF}.
+ * Sources' colors are resolved (see {@link #toRGB(IColor)}) once per source and
+ * per call to {@link #computeFOV(List)}.
+ * 
+ * <p>
+ * Contrary to its superclass, {@link #getFOV()} is always null: this class
+ * doesn't use cells.
+ * </p>
+ * 
+ * @author smelC
+ * @param <U>
+ *            The type of light sources.
+ */
+public abstract class ColoredLightFOV<U extends ILightSource & Positioned>
+		extends ShadowCastingObjectFOV<U, FOVCell<U>> {
+
+	/** The light of (x, y) is at {@code x * height + y} */
+	protected final int[] rgbs;
+
+	/**
+	 * The stamp of the last source that lit a cell, so that a source lights a
+	 * cell at most once (shadowcasting visits cells on the octants' borders
+	 * twice).
+	 */
+	private final int[] stamps;
+	private int stamp;
+
+	/* The color of the source being computed, resolved once per source */
+	private int red;
+	private int green;
+	private int blue;
+
+	/**
+	 * @param width
+	 * @param height
+	 */
+	public ColoredLightFOV(int width, int height) {
+		super(width, height);
+		this.rgbs = new int[width * height];
+		this.stamps = new int[width * height];
+	}
+
+	/**
+	 * Computes the light of {@code sources}, adding it to the light computed so
+	 * far (see {@link #clearLightMap()}).
+	 */
+	@Override
+	public void computeFOV(List<? extends U> sources) {
+		final int sz = sources.size();
+		for (int i = 0; i < sz; i++) {
+			final U source = sources.get(i);
+			final int rgb = toRGB(source.getLightColor());
+			red = (rgb >>> 16) & 0xFF;
+			green = (rgb >>> 8) & 0xFF;
+			blue = rgb & 0xFF;
+			nextStamp();
+			calculateFOV(source);
+		}
+	}
+
+	@Override
+	public void clearLightMap() {
+		Arrays.fill(rgbs, 0);
+	}
+
+	/**
+	 * @return The light computed so far, as packed RGB ints; the light of (x,
+	 *         y) being at {@code x * height + y}. A reference to this instance'
+	 *         inner state is returned.
+	 */
+	public int[] getRGBs() {
+		return rgbs;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The light at (x, y), as a packed RGB int.
+	 */
+	public int getRGB(int x, int y) {
+		return rgbs[(x * height) + y];
+	}
+
+	@Override
+	protected boolean light(U source, double v, int x, int y) {
+		final int idx = (x * height) + y;
+		if (stamps[idx] == stamp)
+			/* Already lit by this source */
+			return false;
+		stamps[idx] = stamp;
+		final int before = rgbs[idx];
+		final int r = Math.min(0xFF, ((before >>> 16) & 0xFF) + (int) ((red * v) + 0.5d));
+		final int g = Math.min(0xFF, ((before >>> 8) & 0xFF) + (int) ((green * v) + 0.5d));
+		final int b = Math.min(0xFF, (before & 0xFF) + (int) ((blue * v) + 0.5d));
+		final int after = (r << 16) | (g << 8) | b;
+		rgbs[idx] = after;
+		return before != after;
+	}
+
+	@Override
+	protected FOVCell<U> buildCell() {
+		throw new IllegalStateException("Cells are not used by " + getClass().getSimpleName());
+	}
+
+	/**
+	 * @param color
+	 *            A source's color, or null if the source has no color.
+	 * @return {@code color} as a packed RGB int ({@code 0xRRGGBB}).
+	 */
+	protected abstract int toRGB(/* @Nullable */ IColor color);
+
+	private void nextStamp() {
+		stamp++;
+		if (stamp == 0) {
+			/* Wrapped around, stamps of previous sources may collide */
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.hgames.rhogue.fov;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hgames.lib.color.IColor;
+import com.hgames.rhogue.grid.Positioned;
+import com.hgames.rhogue.lighting.ILightSource;
+
+/**
+ * A cache of visibility computations, keyed by {@code (x, y, radius, version)}
+ * where {@code version} identifies the state of the map (typically
+ * {@code Dungeon#getVersion()}). Because the version is part of the key,
+ * invalidation is automatic: entries of previous versions are never returned
+ * and they eventually get evicted.
+ * 
+ * <p>
+ * Visible cells are computed with {@link ShadowCastingObjectFOV} and stored as
+ * bitsets over the square of side {@code 2 * radius + 1} centered on the
+ * viewer (see {@link #isVisible(long[], int, int, int)}). Entries are evicted in
+ * least recently used order, so that the cache never exceeds the number of
+ * bytes given at construction (approximately).
+ * </p>
+ * 
+ * @author smelC
+ */
+public abstract class FOVCache {
+
+	protected final int width;
+	protected final int height;
+
+	/** The memory budget, in bytes */
+	protected final long maxBytes;
+
+	/** An estimation of the memory used by an entry, excluding its bitset */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	/** In access order, so that iteration starts with the least recently used */
+	private final LinkedHashMap<Key, long[]> cache;
+	/** An estimation of the memory used by {@link #cache} */
+	private long bytes;
+
+	private final Eye eye = new Eye();
+	/** Where {@link #fov} records its results */
+	private long[] current;
+	private final ShadowCastingObjectFOV<Eye, FOVCell<Eye>> fov;
+
+	/**
+	 * @param width
+	 *            The map's width.
+	 * @param height
+	 *            The map's height.
+	 * @param maxBytes
+	 *            The memory budget of this cache, in bytes.
+	 */
+	public FOVCache(int width, int height, long maxBytes) {
+		if (maxBytes < 0)
+			throw new IllegalStateException("Memory budget of FOV cache must be >= 0. Received: " + maxBytes);
+		this.width = width;
+		this.height = height;
+		this.maxBytes = maxBytes;
+		this.cache = new LinkedHashMap<Key, long[]>(16, 0.75f, true);
+		this.fov = new ShadowCastingObjectFOV<Eye, FOVCell<Eye>>(width, height) {
+			@Override
+			protected boolean light(Eye source, double v, int x, int y) {
+				final int r = source.radius;
+				final int idx = ((x - source.x + r) * ((2 * r) + 1)) + (y - source.y + r);
+				final long mask = 1L << (idx & 63);
+				final boolean result = (current[idx >>> 6] & mask) == 0;
+				current[idx >>> 6] |= mask;
+				return result;
+			}
+
+			@Override
+			protected FOVCell<Eye> buildCell() {
+				throw new IllegalStateException("Cells are not used by " + FOVCache.class.getSimpleName());
+			}
+
+			@Override
+			protected double getResistance(int x, int y) {
+				return FOVCache.this.getResistance(x, y);
+			}
+		};
+	}
+
+	/**
+	 * @param x
+	 *            The viewer's x-coordinate.
+	 * @param y
+	 *            The viewer's y-coordinate.
+	 * @param radius
+	 *            The viewer's radius.
+	 * @param version
+	 *            The version of the map.
+	 * @return The cells visible from {@code (x, y)}, to be queried with
+	 *         {@link #isVisible(long[], int, int, int)}. It is a reference to this
+	 *         cache's inner state, do not modify it.
+	 */
+	public long[] getVisibles(int x, int y, int radius, int version) {
+		final Key key = new Key(x, y, radius, version);
+		long[] result = cache.get(key);
+		if (result != null)
+			return result;
+		result = compute(x, y, radius);
+		final long sz = (result.length * 8) + ENTRY_OVERHEAD;
+		if (sz <= maxBytes) {
+			cache.put(key, result);
+			bytes += sz;
+			evict();
+		}
+		return result;
+	}
+
+	/**
+	 * @param x
+	 *            The viewer's x-coordinate.
+	 * @param y
+	 *            The viewer's y-coordinate.
+	 * @param radius
+	 *            The viewer's radius.
+	 * @param version
+	 *            The version of the map.
+	 * @param tx
+	 *            The target's x-coordinate.
+	 * @param ty
+	 *            The target's y-coordinate.
+	 * @return Whether {@code (tx, ty)} is visible from {@code (x, y)}.
+	 */
+	public boolean isVisible(int x, int y, int radius, int version, int tx, int ty) {
+		return isVisible(getVisibles(x, y, radius, version), radius, tx - x, ty - y);
+	}
+
+	/**
+	 * @param visibles
+	 *            A result of {@link #getVisibles(int, int, int, int)}.
+	 * @param radius
+	 *            The radius given to {@link #getVisibles(int, int, int, int)}.
+	 * @param dx
+	 *            The x-offset of the target w.r.t. the viewer.
+	 * @param dy
+	 *            The y-offset of the target w.r.t. the viewer.
+	 * @return Whether the target is visible.
+	 */
+	public static boolean isVisible(long[] visibles, int radius, int dx, int dy) {
+		if (dx < -radius || radius < dx || dy < -radius || radius < dy)
+			return false;
+		final int idx = ((dx + radius) * ((2 * radius) + 1)) + (dy + radius);
+		return (visibles[idx >>> 6] & (1L << (idx & 63))) != 0;
+	}
+
+	/** Empties this cache */
+	public void clear() {
+		cache.clear();
+		bytes = 0;
+	}
+
+	/** @return The number of entries in this cache. */
+	public int size() {
+		return cache.size();
+	}
+
+	/** @return The resistance at (x, y), as in {@link ShadowCastingObjectFOV}. */
+	protected abstract double getResistance(int x, int y);
+
+	private long[] compute(int x, int y, int radius_) {
+		final int radius = Math.max(0, radius_);
+		final int side = (2 * radius) + 1;
+		current = new long[((side * side) + 63) >>> 6];
+		eye.x = x;
+		eye.y = y;
+		eye.radius = radius;
+		fov.calculateFOV(eye);
+		final long[] result = current;
+		current = null;
+		return result;
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<Key, long[]>> it = cache.entrySet().iterator();
+		while (maxBytes < bytes && it.hasNext()) {
+			final long[] evicted = it.next().getValue();
+			bytes -= (evicted.length * 8) + ENTRY_OVERHEAD;
+			it.remove();
+		}
+	}
+
+	/**
+	 * @author smelC
+	 */
+	private static final class Key {
+
+		private final int x;
+		private final int y;
+		private final int radius;
+		private final int version;
+
+		Key(int x, int y, int radius, int version) {
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+			this.version = version;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = x;
+			result = (31 * result) + y;
+			result = (31 * result) + radius;
+			result = (31 * result) + version;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return x == other.x && y == other.y && radius == other.radius && version == other.version;
+		}
+	}
+
+	/**
+	 * The viewer, as a light source.
+	 * 
+	 * @author smelC
+	 */
+	private static final class Eye implements ILightSource, Positioned {
+
+		int x;
+		int y;
+		int radius;
+
+		Eye() {
+		}
+
+		@Override
+		public IColor getLightColor() {
+			return null;
+		}
+
+		@Override
+		public int getLightIntensity() {
+			return radius;
+		}
+
+		@Override
+		public int getX() {
+			return x;
+		}
+
+		@Override
+		public int getY() {
+			return y;
+		}
+
+		@Override
+		public boolean setX(int x_) {
+			this.x = x_;
+			return true;
+		}
+
+		@Override
+		public boolean setY(int y_) {
+			this.y = y_;
+			return true;
+		}
+
+		@Override
+		public boolean ensureCoord(int x_, int y_) {
+			final boolean result = x == x_ && y == y_;
+			this.x = x_;
+			this.y = y_;
+			return result;
+		}
+	}
+
+}
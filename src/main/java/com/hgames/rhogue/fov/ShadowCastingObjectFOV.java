@@ -23,7 +23,11 @@ import squidpony.squidgrid.Direction;
  */
 public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned, T extends IFOVCell<U>> {
 
-	/** Can only be null if {@link #lightMap} is non-null and non shallow */
+	/**
+	 * Can only be null if {@link #lightMap} is non-null and non shallow, or if
+	 * {@link #light(ILightSource, double, int, int)} is overridden not to use
+	 * {@link #lightMap}.
+	 */
 	protected final /* @Nullable */ ArrayBuilder<T> ab;
 	/* Maybe lazily allocated and possibly shallow */
 	protected /* @Nullable */ T[][] lightMap;
@@ -67,6 +71,20 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 		this.lightMap = lightMap;
 	}
 
+	/**
+	 * Constructor for subclasses that override
+	 * {@link #light(ILightSource, double, int, int)} and hence don't need a light
+	 * map.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	protected ShadowCastingObjectFOV(int width, int height) {
+		this.ab = null;
+		this.width = width;
+		this.height = height;
+	}
+
 	/**
 	 * Computes the FOV of {@code sources}.
 	 * 
@@ -114,6 +132,39 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 		return 0 <= x && x < width && 0 <= y && y < height;
 	}
 
+	/**
+	 * Callback done when {@code source} lights the cell at (x, y). This
+	 * implementation allocates the cell in {@link #lightMap} if needed and calls
+	 * {@link #unionLight(ILightSource, IFOVCell, double, int, int)}.
+	 * 
+	 * @param source
+	 * @param v
+	 *            The value of the light emitted by {@code source}.
+	 * @param x
+	 * @param y
+	 * @return Whether the cell changed.
+	 */
+	/*
+	 * Subclassers that don't need cells may override this method, in which case
+	 * the light map is never allocated (see the protected constructor).
+	 */
+	protected boolean light(U source, double v, int x, int y) {
+		/* Allocate lightMap enough if needed */
+		if (lightMap == null)
+			lightMap = ab.build(width, height, true);
+		T ys[] = lightMap[x];
+		if (ys == null) {
+			ys = ab.build(height);
+			lightMap[x] = ys;
+		}
+		T t = lightMap[x][y];
+		if (t == null) {
+			t = buildCell();
+			lightMap[x][y] = t;
+		}
+		return unionLight(source, t, v, x, y);
+	}
+
 	/**
 	 * @param source
 	 * @param cell
@@ -143,31 +194,26 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 	protected void calculateFOV(U source) {
 		final int srcX = source.getX();
 		final int srcY = source.getY();
-		/* Allocate lightMap enough if needed */
-		if (lightMap == null)
-			lightMap = ab.build(width, height, true);
-		T[] ys = lightMap[srcX];
-		if (ys == null) {
-			ys = ab.build(height);
-			lightMap[srcX] = ys;
-		}
-		T start = lightMap[srcX][srcY];
-		if (start == null) {
-			start = buildCell();
-			lightMap[srcX][srcY] = start;
-		}
-		unionLight(source, start, 1.0d, srcX, srcY);
+		light(source, 1.0d, srcX, srcY);
 
 		final int radius = source.getLightIntensity();
+		if (radius <= 0)
+			return;
+		final ShadowCastingTables tables = ShadowCastingTables.get(radius);
+		final float[] brightnesses = tables.getBrightnesses(radius);
 		for (Direction d : Direction.DIAGONALS) {
-			castLight(source, 1, 1.0f, 0.0f, 0, d.deltaX, d.deltaY, 0, radius);
-			castLight(source, 1, 1.0f, 0.0f, d.deltaX, 0, 0, d.deltaY, radius);
+			castLight(source, tables, brightnesses, 1, 1.0f, 0.0f, 0, d.deltaX, d.deltaY, 0, radius);
+			castLight(source, tables, brightnesses, 1, 1.0f, 0.0f, d.deltaX, 0, 0, d.deltaY, radius);
 		}
 	}
 
 	/**
 	 * @param source
 	 *            The light's emitter
+	 * @param tables
+	 *            Tables supporting at least {@code radius}.
+	 * @param brightnesses
+	 *            {@code tables}' brightnesses for {@code radius}.
 	 * @param row
 	 * @param start_
 	 *            The maximum light
@@ -180,19 +226,25 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 	 * @param radius
 	 *            The caster's radius.
 	 */
-	private void castLight(U source, int row, float start_, float end, int xx, int xy, int yx, int yy, int radius) {
+	private void castLight(U source, ShadowCastingTables tables, float[] brightnesses, int row, float start_, float end,
+			int xx, int xy, int yx, int yy, int radius) {
 		float start = start_;
 		if (start < end)
 			return;
 		final int srcX = source.getX();
 		final int srcY = source.getY();
+		final float[] leftSlopes = tables.leftSlopes;
+		final float[] rightSlopes = tables.rightSlopes;
+		final double[] distances = tables.distances;
 		float newStart = 0.0f;
 		boolean blocked = false;
 		for (int distance = row; distance <= radius && !blocked; distance++) {
 			final int deltaY = -distance;
-			for (int deltaX = -distance; deltaX <= 0; deltaX++) {
-				final float leftSlope = (deltaX - 0.5f) / (deltaY + 0.5f);
-				final float rightSlope = (deltaX + 0.5f) / (deltaY - 0.5f);
+			/* The index of (deltaX, deltaY) in 'tables' */
+			int idx = ShadowCastingTables.index(distance, -distance);
+			for (int deltaX = -distance; deltaX <= 0; deltaX++, idx++) {
+				final float leftSlope = leftSlopes[idx];
+				final float rightSlope = rightSlopes[idx];
 
 				final int curX = srcX + (deltaX * xx) + (deltaY * xy);
 				final int curY = srcY + (deltaX * yx) + (deltaY * yy);
@@ -202,22 +254,8 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 					break;
 
 				// check if it's within the lightable area and light if needed
-				if (radiusOf(deltaX, deltaY) <= radius) {
-					final float bright = (float) (1 - (radiusOf(deltaX, deltaY) / radius));
-					/* Allocate lightMap enough if needed */
-					if (lightMap == null)
-						lightMap = ab.build(width, height, true);
-					T ys[] = lightMap[curX];
-					if (ys == null) {
-						ys = ab.build(height);
-						lightMap[curX] = ys;
-					}
-					T t = lightMap[curX][curY];
-					if (t == null) {
-						t = buildCell();
-						lightMap[curX][curY] = t;
-					}
-					unionLight(source, t, bright, curX, curY);
+				if (distances[idx] <= radius) {
+					light(source, brightnesses[idx], curX, curY);
 				}
 
 				if (blocked) {
@@ -233,16 +271,11 @@ public abstract class ShadowCastingObjectFOV<U extends ILightSource & Positioned
 				} else if (getResistance(curX, curY) >= 1 && distance < radius) {
 					// hit a wall within sight line
 					blocked = true;
-					castLight(source, distance + 1, start, leftSlope, xx, xy, yx, yy, radius);
+					castLight(source, tables, brightnesses, distance + 1, start, leftSlope, xx, xy, yx, yy, radius);
 					newStart = rightSlope;
 				}
 			}
 		}
 	}
 
-	private static double radiusOf(double dx, double dy) {
-		// A sphere's radius
-		return Math.sqrt(dx * dx + dy * dy);
-	}
-
 }
@@ -0,0 +1,139 @@
+package com.hgames.rhogue.fov;
+
+/**
+ * Tables used by {@link ShadowCastingObjectFOV} to avoid recomputing slopes,
+ * distances and brightnesses in every octant of every source. Tables are shared
+ * among all FOVs and grown lazily (see {@link #get(int)}) up to the biggest
+ * radius ever requested.
+ * 
+ * <p>
+ * Instances are immutable once built: growing builds a new instance, that is
+ * published through a volatile field. Hence FOVs of different threads can
+ * share tables.
+ * </p>
+ * 
+ * <p>
+ * Cells of an octant are indexed by their distance {@code d} to the source (in
+ * [1, radius]) and by their {@code deltaX} (in [-d, 0]) (see
+ * {@link #index(int, int)}).
+ * </p>
+ * 
+ * @author smelC
+ */
+final class ShadowCastingTables {
+
+	/** The biggest radius that this instance supports */
+	final int radius;
+
+	/** The left slope of the cell at a given index */
+	final float[] leftSlopes;
+	/** The right slope of the cell at a given index */
+	final float[] rightSlopes;
+	/** The distance to the source of the cell at a given index */
+	final double[] distances;
+	/**
+	 * {@code brightnesses[r]} is the brightness of cells when the radius is
+	 * {@code r}. Rows are built by the constructor, or taken from the previous
+	 * instance.
+	 */
+	private final float[][] brightnesses;
+
+	/** The largest instance built so far */
+	private static volatile ShadowCastingTables INSTANCE = new ShadowCastingTables(0, null);
+
+	/**
+	 * @param radius
+	 * @param previous
+	 *            An instance whose brightnesses can be reused, or null.
+	 */
+	private ShadowCastingTables(int radius, /* @Nullable */ ShadowCastingTables previous) {
+		this.radius = radius;
+		final int sz = size(radius);
+		this.leftSlopes = new float[sz];
+		this.rightSlopes = new float[sz];
+		this.distances = new double[sz];
+		for (int distance = 1; distance <= radius; distance++) {
+			final int deltaY = -distance;
+			for (int deltaX = -distance; deltaX <= 0; deltaX++) {
+				final int idx = index(distance, deltaX);
+				leftSlopes[idx] = (deltaX - 0.5f) / (deltaY + 0.5f);
+				rightSlopes[idx] = (deltaX + 0.5f) / (deltaY - 0.5f);
+				distances[idx] = radiusOf(deltaX, deltaY);
+			}
+		}
+		this.brightnesses = new float[radius + 1][];
+		final int start;
+		if (previous == null)
+			start = 1;
+		else {
+			/* Keep the brightnesses computed so far */
+			System.arraycopy(previous.brightnesses, 0, brightnesses, 0, previous.brightnesses.length);
+			start = previous.radius + 1;
+		}
+		for (int r = start; r <= radius; r++)
+			brightnesses[r] = computeBrightnesses(r);
+	}
+
+	/**
+	 * @param radius
+	 * @return Tables that support radiuses up to {@code radius} (included).
+	 */
+	static ShadowCastingTables get(int radius) {
+		final ShadowCastingTables current = INSTANCE;
+		if (radius <= current.radius)
+			return current;
+		/*
+		 * If two threads grow concurrently, one of the instances is lost. That is
+		 * harmless: both are complete.
+		 */
+		final ShadowCastingTables result = new ShadowCastingTables(radius, current);
+		INSTANCE = result;
+		return result;
+	}
+
+	/**
+	 * @param r
+	 *            A radius in [1, {@link #radius}].
+	 * @return The brightness of cells when the source's radius is {@code r}.
+	 */
+	float[] getBrightnesses(int r) {
+		return brightnesses[r];
+	}
+
+	private float[] computeBrightnesses(int r) {
+		final float[] result = new float[size(r)];
+		for (int i = 0; i < result.length; i++) {
+			final double dist = distances[i];
+			/* Unused if the cell is out of the radius */
+			result[i] = dist <= r ? (float) (1 - (dist / r)) : 0f;
+		}
+		return result;
+	}
+
+	/**
+	 * @param distance
+	 *            The distance to the source, in [1, radius].
+	 * @param deltaX
+	 *            In [-distance, 0].
+	 * @return The index of the cell at {@code (deltaX, -distance)} in the octant.
+	 */
+	static int index(int distance, int deltaX) {
+		assert 1 <= distance;
+		assert -distance <= deltaX && deltaX <= 0;
+		return (((distance - 1) * (distance + 2)) / 2) + deltaX + distance;
+	}
+
+	/**
+	 * @param radius
+	 * @return The number of cells of an octant of radius {@code radius}.
+	 */
+	private static int size(int radius) {
+		return (radius * (radius + 3)) / 2;
+	}
+
+	private static double radiusOf(double dx, double dy) {
+		// A sphere's radius
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+}
@@ -10,7 +10,7 @@ public interface IDungeonDrawer {
 	/**
 	 * @param dungeon
 	 *            The dungeon to draw. Symbols can be null, in which case they
-	 *            should be considered as walls.
+	 *            should be considered as walls. It must not be modified.
 	 */
 	public void draw(DungeonSymbol[][] dungeon);
 
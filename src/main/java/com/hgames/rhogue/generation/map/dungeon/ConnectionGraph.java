@@ -0,0 +1,200 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hgames.rhogue.zone.Zone;
+
+/**
+ * The graph of {@link Dungeon#connections}, where rooms and corridors have
+ * dense ids and adjacency is stored as bitsets (one row of {@code long}s per
+ * zone). Ids of removed zones are reused.
+ * 
+ * <p>
+ * Built lazily by {@link Dungeons#areConnected(Dungeon, Zone, Zone, int)} and
+ * then maintained by {@link DungeonBuilder}: ids are assigned when zones are
+ * added. Queries don't allocate: they use the buffers of this instance.
+ * </p>
+ * 
+ * @author smelC
+ */
+class ConnectionGraph {
+
+	private final Map<Zone, Integer> ids;
+	/** The adjacency, by id */
+	private long[][] rows;
+	/** The number of {@code long}s in a row */
+	private int words;
+	/** The number of ids used, including free ones */
+	private int nbIds;
+	/** Ids of removed zones, to be reused */
+	private int[] frees;
+	private int nbFrees;
+
+	/* Buffers of areConnected */
+	private long[] reached;
+	private long[] frontier;
+	private long[] next;
+
+	ConnectionGraph() {
+		this.ids = new HashMap<Zone, Integer>();
+		this.words = 1;
+		this.rows = new long[64][words];
+		this.frees = new int[16];
+		this.reached = new long[words];
+		this.frontier = new long[words];
+		this.next = new long[words];
+	}
+
+	/**
+	 * @param dungeon
+	 * @return The graph of {@code dungeon}'s rooms, corridors and connections.
+	 */
+	static ConnectionGraph build(Dungeon dungeon) {
+		final ConnectionGraph result = new ConnectionGraph();
+		for (Zone z : dungeon.rooms)
+			result.addZone(z);
+		for (Zone z : dungeon.corridors)
+			result.addZone(z);
+		for (Map.Entry<Zone, List<Zone>> entry : dungeon.connections.entrySet()) {
+			for (Zone dest : entry.getValue())
+				result.addConnection(entry.getKey(), dest);
+		}
+		return result;
+	}
+
+	/**
+	 * Assigns an id to {@code z}.
+	 * 
+	 * @param z
+	 */
+	void addZone(Zone z) {
+		if (ids.containsKey(z))
+			throw new IllegalStateException(z + " was recorded already");
+		final int id;
+		if (0 < nbFrees)
+			id = frees[--nbFrees];
+		else {
+			id = nbIds++;
+			if (rows.length < nbIds)
+				rows = Arrays.copyOf(rows, rows.length * 2);
+			if (words * 64 < nbIds)
+				grow();
+			if (rows[id] == null)
+				rows[id] = new long[words];
+		}
+		ids.put(z, Integer.valueOf(id));
+	}
+
+	/**
+	 * Records that {@code z1} and {@code z2} are connected, in both directions.
+	 * Does nothing if one of them doesn't have an id.
+	 * 
+	 * @param z1
+	 * @param z2
+	 */
+	void addConnection(Zone z1, Zone z2) {
+		final int id1 = getId(z1);
+		final int id2 = getId(z2);
+		if (id1 < 0 || id2 < 0)
+			return;
+		set(rows[id1], id2);
+		set(rows[id2], id1);
+	}
+
+	/**
+	 * Removes {@code z} and its connections, its id can then be reused.
+	 * 
+	 * @param z
+	 */
+	void removeZone(Zone z) {
+		final Integer boxed = ids.remove(z);
+		if (boxed == null)
+			return;
+		final int id = boxed.intValue();
+		final long[] row = rows[id];
+		for (int w = 0; w < words; w++) {
+			long bits = row[w];
+			while (bits != 0) {
+				final int other = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				rows[other][id >>> 6] &= ~(1L << id);
+			}
+			row[w] = 0;
+		}
+		if (nbFrees == frees.length)
+			frees = Arrays.copyOf(frees, nbFrees * 2);
+		frees[nbFrees++] = id;
+	}
+
+	/**
+	 * @param z0
+	 * @param z1
+	 * @param intermediates
+	 *            A bound on the allowed intermediates. 1 is the minimum (a
+	 *            connection between the two zones).
+	 * @return Whether {@code z1} can be reached from {@code z0} by following
+	 *         at most {@code intermediates} connections.
+	 */
+	boolean areConnected(Zone z0, Zone z1, int intermediates) {
+		final int id0 = getId(z0);
+		final int id1 = getId(z1);
+		if (id0 < 0 || id1 < 0 || intermediates < 1)
+			return false;
+		final int hword = id1 >>> 6;
+		final long hbit = 1L << id1;
+		System.arraycopy(rows[id0], 0, reached, 0, words);
+		System.arraycopy(rows[id0], 0, frontier, 0, words);
+		for (int steps = 1; true; steps++) {
+			if ((reached[hword] & hbit) != 0)
+				return true;
+			if (steps == intermediates)
+				return false;
+			/* Zones at 'steps + 1' connections of z0 that weren't reached yet */
+			Arrays.fill(next, 0);
+			boolean empty = true;
+			for (int w = 0; w < words; w++) {
+				long bits = frontier[w];
+				while (bits != 0) {
+					final long[] row = rows[(w << 6) + Long.numberOfTrailingZeros(bits)];
+					bits &= bits - 1;
+					for (int v = 0; v < words; v++)
+						next[v] |= row[v];
+				}
+			}
+			for (int w = 0; w < words; w++) {
+				final long fresh = next[w] & ~reached[w];
+				frontier[w] = fresh;
+				reached[w] |= fresh;
+				empty &= fresh == 0;
+			}
+			if (empty)
+				return false;
+		}
+	}
+
+	/** @return The id of {@code z}, or -1 if it has none */
+	private int getId(Zone z) {
+		final Integer result = ids.get(z);
+		return result == null ? -1 : result.intValue();
+	}
+
+	/** Doubles the number of {@code long}s in a row */
+	private void grow() {
+		words *= 2;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i] != null)
+				rows[i] = Arrays.copyOf(rows[i], words);
+		}
+		reached = new long[words];
+		frontier = new long[words];
+		next = new long[words];
+	}
+
+	private static void set(long[] row, int id) {
+		row[id >>> 6] |= 1L << id;
+	}
+
+}
@@ -1,24 +1,23 @@
 package com.hgames.rhogue.generation.map.dungeon;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumSet;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import com.hgames.lib.choice.DoublePriorityCell;
 import com.hgames.lib.choice.PriorityCell3;
 import com.hgames.lib.collection.list.Lists;
-import com.hgames.lib.collection.pair.Pair;
 import com.hgames.lib.collection.set.Sets;
 import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.GenerationData;
 import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.ICorridorControl;
 import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.ZoneType;
 import com.hgames.rhogue.generation.map.dungeon.corridor.ICorridorBuilder;
+import com.hgames.rhogue.grid.PointGrid;
+import com.hgames.rhogue.rng.DefaultRNG;
 import com.hgames.rhogue.zone.Rectangle;
 import com.hgames.rhogue.zone.SingleCellZone;
 import com.hgames.rhogue.zone.Zone;
@@ -44,12 +43,32 @@ public class CorridorsComponent extends SkeletalComponent {
 
 	private static final PriorityCell3<Zone, Coord, Coord> ZCC_CELL = PriorityCell3.createEmpty();
 	private static final DoublePriorityCell<Coord> DP_CELL = DoublePriorityCell.createEmpty();
-	private static final Comparator<Pair<Double, Zone>> ORDERER = new Comparator<Pair<Double, Zone>>() {
-		@Override
-		public int compare(Pair<Double, Zone> o1, Pair<Double, Zone> o2) {
-			return Double.compare(o1.getFst().doubleValue(), o2.getFst().doubleValue());
-		}
-	};
+	/** The side of the buckets of the index of destinations */
+	private static final int DESTS_BUCKET_SIZE = 8;
+
+	/**
+	 * The rng given to {@link ICorridorBuilder}, reseeded for every pair of
+	 * endpoints (see {@link #generateCorridor0(List, List, Coord[], long)}).
+	 * {@link IRNG} cannot be reseeded, hence this is a {@link DefaultRNG}
+	 * whatever the rng of the generator, which only provides the seeds.
+	 */
+	private final DefaultRNG pairRNG = new DefaultRNG();
+	/**
+	 * The pairs of endpoints tried by {@link #generateCorridor0(List, List, Coord[], long)},
+	 * as {@code (lower bound << 32) | pair}.
+	 */
+	private long[] pairs = new long[64];
+	/**
+	 * The pairs of endpoints (see {@link #toKey(Coord, Coord)}) for which no
+	 * corridor could be built, during the current call to
+	 * {@link #generateCorridor(DungeonGenerator, GenerationData, Zone, Zone, List, List, Coord[])}.
+	 * An open addressing hash set, whose free slots are {@link #NO_KEY}.
+	 */
+	private long[] blocked = newBlocked(64);
+	/** The number of keys in {@link #blocked} */
+	private int nbBlocked;
+	/** A value that {@link #toKey(Coord, Coord)} never returns */
+	private static final long NO_KEY = -1L;
 
 	/**
 	 * @param rooms
@@ -69,40 +88,32 @@ public class CorridorsComponent extends SkeletalComponent {
 		final int lenLimit = control.getLengthLimit();
 		final Dungeon dungeon = gdata.dungeon;
 		final DungeonBuilder builder = dungeon.getBuilder();
-		final int nbr = rooms.size();
-		/* A Zone, to the other zones; ordered by the distance of the centers */
-		final Map<Zone, List<Pair<Double, Zone>>> zoneToOtherZones = new LinkedHashMap<Zone, List<Pair<Double, Zone>>>(
-				nbr);
+		/*
+		 * The destinations that accept a connection, indexed by their centers.
+		 * Accepting a connection is checked again before connecting, as it
+		 * changes when corridors are built.
+		 */
+		final PointGrid<Zone> destsIndex = new PointGrid<Zone>(dungeon.width, dungeon.height, DESTS_BUCKET_SIZE);
 		final int nbd = dests.size();
-		boolean someChance = false;
+		for (int j = 0; j < nbd; j++) {
+			final Zone other = dests.get(j);
+			if (!acceptsOneMoreConnection(gen, dungeon, other))
+				continue;
+			assert Dungeons.isRoom(dungeon, other);
+			final Coord oc = other.getCenter();
+			destsIndex.add(oc.x, oc.y, other);
+		}
+		/* The rooms that have a destination not too far away */
+		final List<Zone> sources = new ArrayList<Zone>(rooms.size());
 		for (Zone z : rooms) {
 			assert Dungeons.isRoom(dungeon, z);
 			if (!acceptsOneMoreConnection(gen, dungeon, z))
 				continue;
 			final Coord zc = z.getCenter();
-			assert !zoneToOtherZones.keySet().contains(z);
-			final List<Pair<Double, Zone>> otherZones = new ArrayList<Pair<Double, Zone>>(Math.max(0, nbr - 1));
-			for (int j = 0; j < nbd; j++) {
-				final Zone other = dests.get(j);
-				if (!acceptsOneMoreConnection(gen, dungeon, other))
-					continue;
-				assert Dungeons.isRoom(dungeon, other);
-				if (other == z)
-					continue;
-				final Coord oc = other.getCenter();
-				final double dist = zc.distance(oc);
-				if (lenLimit < dist) {
-					/* Too far away */
-					continue;
-				}
-				otherZones.add(Pair.<Double, Zone>of(Double.valueOf(dist), other));
-			}
-			if (!otherZones.isEmpty()) {
-				zoneToOtherZones.put(z, otherZones);
-				someChance |= true;
-			}
+			if (nextDestination(destsIndex.nearest(zc.x, zc.y, lenLimit), z) != null)
+				sources.add(z);
 		}
-		if (!someChance)
+		if (sources.isEmpty())
 			return false;
 		final boolean perfect = control.getPerfect();
 		boolean needWaterPoolsCleanup = false;
@@ -111,16 +122,16 @@ public class CorridorsComponent extends SkeletalComponent {
 		final Coord[] startEndBuffer = new Coord[2];
 		final List<Coord> buf1 = Lists.newArrayList();
 		final List<Coord> buf2 = Lists.newArrayList();
-		for (Zone z : zoneToOtherZones.keySet()) {
-			final List<Pair<Double, Zone>> candidateDests = zoneToOtherZones.get(z);
-			if (candidateDests == null)
-				continue;
-			final int nbcd = candidateDests.size();
-			Collections.sort(candidateDests, ORDERER);
+		for (Zone z : sources) {
+			/* Destinations, ordered by the distance of the centers */
+			final Coord zc = z.getCenter();
+			final Iterator<Zone> candidateDests = destsIndex.nearest(zc.x, zc.y, lenLimit);
 			int connections = dungeon.getNeighbors(z).size();
 			final int maxConnections = gen.getRoomGenerator(dungeon, z).getMaxConnections();
-			for (int j = 0; j < nbcd && connections < maxConnections; j++) {
-				final Zone dest = candidateDests.get(j).getSnd();
+			while (connections < maxConnections) {
+				final Zone dest = nextDestination(candidateDests, z);
+				if (dest == null)
+					break;
 				if (!acceptsOneMoreConnection(gen, dungeon, dest))
 					continue;
 				if (Dungeons.areConnected(dungeon, z, dest, 6))
@@ -186,6 +197,21 @@ public class CorridorsComponent extends SkeletalComponent {
 		return 0 < result;
 	}
 
+	/**
+	 * @param dests
+	 * @param z
+	 * @return The next member of {@code dests} that isn't {@code z}, or null if
+	 *         none.
+	 */
+	private static /* @Nullable */ Zone nextDestination(Iterator<Zone> dests, Zone z) {
+		while (dests.hasNext()) {
+			final Zone next = dests.next();
+			if (next != z)
+				return next;
+		}
+		return null;
+	}
+
 	/**
 	 * @param gen
 	 * @param gdata
@@ -237,7 +263,13 @@ public class CorridorsComponent extends SkeletalComponent {
 		if (!found)
 			return false;
 		assert !buf1.isEmpty() && !buf2.isEmpty();
-		generateCorridor0(gen, buf1, buf2, startEndBuffer);
+		/* Corridors between the same endpoints are the same in both tries */
+		final long seed = gen.rng.nextLong();
+		if (0 < nbBlocked) {
+			Arrays.fill(blocked, NO_KEY);
+			nbBlocked = 0;
+		}
+		generateCorridor0(buf1, buf2, startEndBuffer, seed);
 		Zone result = ZCC_CELL.get1();
 		if (result == null && alternativeAvailable) {
 			/* Alternative endpoints weren't try before. Try them now. */
@@ -245,46 +277,173 @@ public class CorridorsComponent extends SkeletalComponent {
 			alternativeAvailable = false;
 			if (found) {
 				assert !buf1.isEmpty() && !buf2.isEmpty();
-				generateCorridor0(gen, buf1, buf2, startEndBuffer);
+				generateCorridor0(buf1, buf2, startEndBuffer, seed);
 				result = ZCC_CELL.get1();
 			}
 		}
 		return result != null;
 	}
 
-	/** Result is in {@link #ZCC_CELL}. */
-	private void generateCorridor0(DungeonGenerator gen, List<Coord> connections1, List<Coord> connections2,
-			Coord[] startEndBuffer) {
+	/**
+	 * Searches the smallest corridor between a member of {@code connections1}
+	 * and a member of {@code connections2}. Pairs of endpoints are tried by
+	 * increasing lower bound of the corridor's priority, so that the search
+	 * stops as soon as the remaining pairs cannot beat the best corridor found.
+	 * 
+	 * <p>
+	 * The result is the one of trying all pairs in order: as the builder gets
+	 * an rng that depends only on {@code seed} and on the endpoints, the
+	 * corridor built for a pair doesn't depend on the pairs tried before. Ties
+	 * are broken by the position of pairs in the lists, like in a search
+	 * trying all pairs. This also allows to remember the pairs for which
+	 * building failed, in {@link #blocked}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Result is in {@link #ZCC_CELL}.
+	 * </p>
+	 */
+	private void generateCorridor0(List<Coord> connections1, List<Coord> connections2, Coord[] startEndBuffer,
+			long seed) {
 		assert !connections1.isEmpty() && !connections2.isEmpty();
 		ZCC_CELL.clear();
 		final ICorridorBuilder builder = control.getBuilder();
 		final int limit = control.getLengthLimit();
 		final int b1sz = connections1.size();
 		final int b2sz = connections2.size();
+		final int nbPairs = b1sz * b2sz;
+		if (pairs.length < nbPairs)
+			pairs = new long[Math.max(nbPairs, pairs.length * 2)];
+		int pairIdx = 0;
 		for (int k = 0; k < b1sz; k++) {
 			final Coord zEndpoint = connections1.get(k);
 			for (int l = 0; l < b2sz; l++) {
 				final Coord destEndpoint = connections2.get(l);
-				final Zone built = builder.build(gen.rng, zEndpoint, destEndpoint, startEndBuffer);
-				if (built == null) {
-					// builder.setSymbol(zEndpoint, DungeonSymbol.HIGH_GRASS);
-					// builder.setSymbol(destEndpoint, DungeonSymbol.HIGH_GRASS);
-					continue;
-				}
-				if (limit < Integer.MAX_VALUE && limit < built.size())
-					continue;
-				assert !built.contains(zEndpoint);
-				assert !built.contains(destEndpoint);
-				final Coord cStart = startEndBuffer[0];
-				final Coord cEnd = startEndBuffer[1];
-				assert built.contains(cStart) : "Corridor built: " + built + " doesn't contain corridor doorway: "
-						+ cStart;
-				assert built.contains(cEnd) : "Corridor built: " + built + " doesn't contain corridor endway: " + cEnd;
-				/* Favor turnless corridors */
-				final int prio = ((built instanceof Rectangle || built.size() == 1) ? 1 : 2) * built.size();
-				ZCC_CELL.union(built, cStart, cEnd, prio);
+				final long lowerBound = getPriorityLowerBound(zEndpoint, destEndpoint);
+				pairs[pairIdx] = (lowerBound << 32) | pairIdx;
+				pairIdx++;
+			}
+		}
+		Arrays.sort(pairs, 0, nbPairs);
+		Zone best = null;
+		Coord bestStart = null;
+		Coord bestEnd = null;
+		int bestPrio = Integer.MAX_VALUE;
+		int bestIdx = Integer.MAX_VALUE;
+		for (int i = 0; i < nbPairs; i++) {
+			final long pair = pairs[i];
+			if (bestPrio < (int) (pair >>> 32))
+				/* No remaining pair can do better */
+				break;
+			final int idx = (int) pair;
+			final Coord zEndpoint = connections1.get(idx / b2sz);
+			final Coord destEndpoint = connections2.get(idx % b2sz);
+			final long key = toKey(zEndpoint, destEndpoint);
+			if (isBlocked(key))
+				continue;
+			pairRNG.setSeed(seed ^ (key * 0x9E3779B97F4A7C15L));
+			final Zone built = builder.build(pairRNG, zEndpoint, destEndpoint, startEndBuffer);
+			if (built == null || (limit < Integer.MAX_VALUE && limit < built.size())) {
+				// builder.setSymbol(zEndpoint, DungeonSymbol.HIGH_GRASS);
+				// builder.setSymbol(destEndpoint, DungeonSymbol.HIGH_GRASS);
+				block(key);
+				continue;
+			}
+			assert !built.contains(zEndpoint);
+			assert !built.contains(destEndpoint);
+			final Coord cStart = startEndBuffer[0];
+			final Coord cEnd = startEndBuffer[1];
+			assert built.contains(cStart) : "Corridor built: " + built + " doesn't contain corridor doorway: "
+					+ cStart;
+			assert built.contains(cEnd) : "Corridor built: " + built + " doesn't contain corridor endway: " + cEnd;
+			/* Favor turnless corridors */
+			final int prio = ((built instanceof Rectangle || built.size() == 1) ? 1 : 2) * built.size();
+			assert (int) (pair >>> 32) <= prio;
+			if (prio < bestPrio || (prio == bestPrio && idx < bestIdx)) {
+				best = built;
+				bestStart = cStart;
+				bestEnd = cEnd;
+				bestPrio = prio;
+				bestIdx = idx;
+			}
+		}
+		if (best != null)
+			ZCC_CELL.union(best, bestStart, bestEnd, bestPrio);
+	}
+
+	/** @return Whether {@code key} is in {@link #blocked} */
+	private boolean isBlocked(long key) {
+		final int mask = blocked.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final long k = blocked[i];
+			if (k == key)
+				return true;
+			if (k == NO_KEY)
+				return false;
+		}
+	}
+
+	/** Records {@code key} in {@link #blocked}, which must not contain it */
+	private void block(long key) {
+		if (blocked.length <= 2 * (nbBlocked + 1)) {
+			/* Keep the load factor below 1/2 */
+			final long[] old = blocked;
+			blocked = newBlocked(old.length * 2);
+			nbBlocked = 0;
+			for (long k : old) {
+				if (k != NO_KEY)
+					block(k);
 			}
 		}
+		final int mask = blocked.length - 1;
+		int i = hash(key) & mask;
+		while (blocked[i] != NO_KEY)
+			i = (i + 1) & mask;
+		blocked[i] = key;
+		nbBlocked++;
+	}
+
+	private static int hash(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	/** @return An empty {@link #blocked}, of size {@code size} (a power of 2) */
+	private static long[] newBlocked(int size) {
+		final long[] result = new long[size];
+		Arrays.fill(result, NO_KEY);
+		return result;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return A lower bound of the priority of corridors from {@code start} to
+	 *         {@code end}, whatever the {@link ICorridorBuilder} used.
+	 */
+	private static int getPriorityLowerBound(Coord start, Coord end) {
+		final int dx = Math.abs(start.x - end.x);
+		final int dy = Math.abs(start.y - end.y);
+		/*
+		 * A corridor is cardinally walkable and excludes its endpoints, hence
+		 * its size is at least the manhattan distance minus one.
+		 */
+		final int size = Math.max(1, dx + dy - 1);
+		if (size == 1)
+			return 1;
+		/* A rectangle adjacent to both endpoints spans (almost) their box */
+		final int rectangle = Math.max(size, Math.max(1, dx - 1) * Math.max(1, dy - 1));
+		/* Other corridors have a double priority */
+		return Math.min(rectangle, 2 * size);
+	}
+
+	/**
+	 * @return A key identifying the pair {@code (start, end)}, in the
+	 *         dungeon's bounds. Never {@link #NO_KEY}, as dungeons are smaller
+	 *         than 65535x65535.
+	 */
+	private static long toKey(Coord start, Coord end) {
+		return ((long) (start.x & 0xFFFF) << 48) | ((long) (start.y & 0xFFFF) << 32) | ((long) (end.x & 0xFFFF) << 16)
+				| (end.y & 0xFFFF);
 	}
 
 	/**
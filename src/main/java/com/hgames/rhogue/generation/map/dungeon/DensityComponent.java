@@ -152,12 +152,14 @@ public class DensityComponent implements GeneratorComponent {
 			final int discNow = dungeon.getDisconnectedRooms().size();
 			final int discObj = gen.disconnectedRoomsObjective;
 			if (discNow + csz <= discObj) {
-				logger.infoLog(Tags.GENERATION, "Using it to fill the disconnected rooms objective");
+				if (logger != null && logger.isInfoEnabled())
+					logger.infoLog(Tags.GENERATION, "Using it to fill the disconnected rooms objective");
 				for (int i = 0; i < csz; i++)
 					builder.addDisconnectedRoom(component.get(i));
 			} else {
-				logger.infoLog(Tags.GENERATION,
-						"Wallifying it, despite above the wallification bound; as it's the only option");
+				if (logger != null && logger.isInfoEnabled())
+					logger.infoLog(Tags.GENERATION,
+							"Wallifying it, despite above the wallification bound; as it's the only option");
 				wallifyAll(gen, gdata, component);
 			}
 			return 0;
@@ -0,0 +1,318 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Distance maps over a {@link Dungeon}: the distance of every cell to the
+ * closest cell of a set of seeds, where paths go through cells whose symbols
+ * are walkable. Seeds are at distance 0 whatever their symbol. Distances are
+ * computed with a breadth first search when all walkable symbols cost 1 and
+ * with Dijkstra's algorithm otherwise (see {@link #setCost(DungeonSymbol, int)}).
+ * 
+ * <p>
+ * Distances are stored in a reusable {@code int[]}, the distance of (x, y)
+ * being at {@code x * height + y}. Instances remember the
+ * {@link Dungeon#getVersion() version} of the dungeon and the seed of the
+ * last computation, so that {@link #compute(Coord)} is free when called
+ * again with the same parameters on an unchanged dungeon. This allows the
+ * components of a stage to share a single field.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class DistanceField {
+
+	/** The distance of cells that cannot be reached */
+	public static final int UNREACHED = Integer.MAX_VALUE;
+
+	protected final Dungeon dungeon;
+	protected final int width;
+	protected final int height;
+
+	/** The distances, (x, y) being at {@code x * height + y} */
+	protected final int[] distances;
+
+	/** The cost of entering a cell, by {@link DungeonSymbol#ordinal()}. 0 if not walkable. */
+	private final int[] costs;
+	private boolean considerDiagonals;
+	/** Whether a cost isn't 1 */
+	private boolean weighted;
+
+	/**
+	 * A FIFO of cells in BFS mode, a binary heap of
+	 * {@code (distance << 32) | cell} in Dijkstra mode.
+	 */
+	private long[] queue;
+
+	/* The state of the last computation, to avoid redoing it */
+	private /* @Nullable */ Coord lastSeed;
+	private int lastVersion;
+
+	private static final DungeonSymbol[] SYMBOLS = DungeonSymbol.values();
+
+	/**
+	 * A fresh field, where no symbol is walkable.
+	 * 
+	 * @param dungeon
+	 */
+	public DistanceField(Dungeon dungeon) {
+		this.dungeon = dungeon;
+		this.width = dungeon.width;
+		this.height = dungeon.height;
+		this.distances = new int[width * height];
+		this.costs = new int[SYMBOLS.length];
+		this.queue = new long[Math.max(16, width * height)];
+		Arrays.fill(distances, UNREACHED);
+	}
+
+	/**
+	 * @param walkables
+	 *            The symbols that paths can go through, with a cost of 1. Other
+	 *            symbols are not walkable.
+	 * @return {@code this}
+	 */
+	public DistanceField setWalkables(EnumSet<DungeonSymbol> walkables) {
+		for (DungeonSymbol sym : SYMBOLS)
+			setCost(sym, walkables.contains(sym) ? 1 : 0);
+		return this;
+	}
+
+	/**
+	 * @param sym
+	 * @param cost
+	 *            The cost of entering a cell whose symbol is {@code sym}, or 0
+	 *            to make {@code sym} not walkable.
+	 * @return {@code this}
+	 */
+	public DistanceField setCost(DungeonSymbol sym, int cost) {
+		if (cost < 0)
+			throw new IllegalStateException("Cost of " + sym + " must be >= 0. Received: " + cost);
+		if (costs[sym.ordinal()] == cost)
+			return this;
+		costs[sym.ordinal()] = cost;
+		weighted = false;
+		for (int c : costs)
+			weighted |= 1 < c;
+		lastSeed = null;
+		return this;
+	}
+
+	/**
+	 * @param value
+	 *            Whether paths can go diagonally (8-connectivity) or not
+	 *            (4-connectivity).
+	 * @return {@code this}
+	 */
+	public DistanceField setConsiderDiagonals(boolean value) {
+		if (considerDiagonals != value)
+			lastSeed = null;
+		this.considerDiagonals = value;
+		return this;
+	}
+
+	/**
+	 * Computes the distances to {@code seed}, unless they were computed with
+	 * the same parameters already and the dungeon didn't change since then.
+	 * 
+	 * @param seed
+	 * @return The distances, (x, y) being at {@code x * height + y}. It is a
+	 *         reference to this field's inner state, do not modify it.
+	 */
+	public int[] compute(Coord seed) {
+		if (seed.equals(lastSeed) && lastVersion == dungeon.getVersion())
+			return distances;
+		compute0(Collections.singletonList(seed));
+		lastSeed = seed;
+		return distances;
+	}
+
+	/**
+	 * Computes the distances to the closest member of {@code seeds}.
+	 * 
+	 * @param seeds
+	 * @return The distances, (x, y) being at {@code x * height + y}. It is a
+	 *         reference to this field's inner state, do not modify it.
+	 */
+	public int[] compute(Collection<Coord> seeds) {
+		compute0(seeds);
+		lastSeed = null;
+		return distances;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The distance of {@code (x, y)} as of the last computation, or
+	 *         {@link #UNREACHED}.
+	 */
+	public int getDistance(int x, int y) {
+		if (x < 0 || width <= x || y < 0 || height <= y)
+			return UNREACHED;
+		return distances[(x * height) + y];
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return Whether a path ends on {@code (x, y)}, i.e. whether it has been
+	 *         reached or is adjacent to a reached cell. This differs from
+	 *         {@code getDistance(x, y) != UNREACHED} for cells that are not
+	 *         walkable.
+	 */
+	public boolean isReachable(int x, int y) {
+		if (getDistance(x, y) != UNREACHED)
+			return true;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				if ((dx == 0 && dy == 0) || (!considerDiagonals && dx != 0 && dy != 0))
+					continue;
+				if (getDistance(x + dx, y + dy) != UNREACHED)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private void compute0(Collection<Coord> seeds) {
+		Arrays.fill(distances, UNREACHED);
+		lastVersion = dungeon.getVersion();
+		if (weighted)
+			dijkstra(seeds);
+		else
+			bfs(seeds);
+	}
+
+	private void bfs(Collection<Coord> seeds) {
+		int head = 0;
+		int tail = 0;
+		for (Coord seed : seeds) {
+			final int idx = toIndex(seed);
+			if (idx < 0 || distances[idx] == 0)
+				continue;
+			distances[idx] = 0;
+			queue[tail++] = idx;
+		}
+		while (head < tail) {
+			final int idx = (int) queue[head++];
+			final int x = idx / height;
+			final int y = idx - (x * height);
+			final int next = distances[idx] + 1;
+			for (int dx = -1; dx <= 1; dx++) {
+				final int nx = x + dx;
+				if (nx < 0 || width <= nx)
+					continue;
+				for (int dy = -1; dy <= 1; dy++) {
+					if ((dx == 0 && dy == 0) || (!considerDiagonals && dx != 0 && dy != 0))
+						continue;
+					final int ny = y + dy;
+					if (ny < 0 || height <= ny)
+						continue;
+					final int nidx = (nx * height) + ny;
+					if (distances[nidx] != UNREACHED || getCost(nx, ny) == 0)
+						continue;
+					/* Marked when queued, each cell is queued at most once */
+					distances[nidx] = next;
+					queue[tail++] = nidx;
+				}
+			}
+		}
+	}
+
+	private void dijkstra(Collection<Coord> seeds) {
+		int size = 0;
+		for (Coord seed : seeds) {
+			final int idx = toIndex(seed);
+			if (idx < 0 || distances[idx] == 0)
+				continue;
+			distances[idx] = 0;
+			size = push(size, 0, idx);
+		}
+		while (0 < size) {
+			final long top = queue[0];
+			size = pop(size);
+			final int dist = (int) (top >>> 32);
+			final int idx = (int) top;
+			if (distances[idx] < dist)
+				/* Stale entry */
+				continue;
+			final int x = idx / height;
+			final int y = idx - (x * height);
+			for (int dx = -1; dx <= 1; dx++) {
+				final int nx = x + dx;
+				if (nx < 0 || width <= nx)
+					continue;
+				for (int dy = -1; dy <= 1; dy++) {
+					if ((dx == 0 && dy == 0) || (!considerDiagonals && dx != 0 && dy != 0))
+						continue;
+					final int ny = y + dy;
+					if (ny < 0 || height <= ny)
+						continue;
+					final int cost = getCost(nx, ny);
+					if (cost == 0)
+						continue;
+					final int nidx = (nx * height) + ny;
+					final int next = dist + cost;
+					if (next < distances[nidx]) {
+						distances[nidx] = next;
+						size = push(size, next, nidx);
+					}
+				}
+			}
+		}
+	}
+
+	/** @return The new size of the heap */
+	private int push(int size, int dist, int idx) {
+		if (size == queue.length)
+			queue = Arrays.copyOf(queue, size * 2);
+		final long entry = ((long) dist << 32) | idx;
+		int i = size;
+		while (0 < i) {
+			final int parent = (i - 1) >>> 1;
+			if (queue[parent] <= entry)
+				break;
+			queue[i] = queue[parent];
+			i = parent;
+		}
+		queue[i] = entry;
+		return size + 1;
+	}
+
+	/** @return The new size of the heap, whose minimum has been removed */
+	private int pop(int size) {
+		final int last = size - 1;
+		final long entry = queue[last];
+		int i = 0;
+		while (true) {
+			int child = (2 * i) + 1;
+			if (last <= child)
+				break;
+			if (child + 1 < last && queue[child + 1] < queue[child])
+				child++;
+			if (entry <= queue[child])
+				break;
+			queue[i] = queue[child];
+			i = child;
+		}
+		queue[i] = entry;
+		return last;
+	}
+
+	private int getCost(int x, int y) {
+		final DungeonSymbol sym = dungeon.map[x][y];
+		return sym == null ? 0 : costs[sym.ordinal()];
+	}
+
+	/** @return The index of {@code c}, or -1 if out of bounds */
+	private int toIndex(Coord c) {
+		if (c.x < 0 || width <= c.x || c.y < 0 || height <= c.y)
+			return -1;
+		return (c.x * height) + c.y;
+	}
+
+}
@@ -2,6 +2,7 @@ package com.hgames.rhogue.generation.map.dungeon;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -46,11 +47,28 @@ public class Dungeon implements Serializable {
 	/** The mutation API */
 	protected final DungeonBuilder builder;
 
-	/** A cache from a coordinate, to its enclosing Zone; or null */
-	/* FIXME FILL ME */
-	protected transient Zone[][] coordToZone;
+	/**
+	 * A cache from a coordinate, to its enclosing room or corridor; or null.
+	 * Built by {@link DungeonAdapter}, reset by {@link DungeonBuilder} when
+	 * rooms or corridors change.
+	 */
+	protected transient /* @Nullable */ Zone[][] coordToZone;
 
-	final List<Zone> rooms;
+	/**
+	 * The symbols around each cell (see {@link NeighborMasks}), or null if not
+	 * built yet. Built by {@link Dungeons#getNeighborMask(Dungeon, int, int, boolean)},
+	 * maintained by {@link DungeonBuilder}.
+	 */
+	transient /* @Nullable */ int[] neighborMasks;
+
+	/**
+	 * {@link #connections} as a bitset graph, or null if not built yet. Built
+	 * by {@link Dungeons#areConnected(Dungeon, Zone, Zone, int)}, maintained
+	 * by {@link DungeonBuilder}.
+	 */
+	transient /* @Nullable */ ConnectionGraph connectionGraph;
+
+	List<Zone> rooms;
 	/**
 	 * Map whose keys are {@link #rooms} and whose values wrap the keys. It can be
 	 * used for example to quickly rule out zones when searching which zone contains
@@ -63,9 +81,9 @@ public class Dungeon implements Serializable {
 	 * corridors do not have a {@link Rectangle} bounding box (see tag
 	 * (NO_CORRIDOR_BBOX) for that).
 	 */
-	final Map<Zone, Rectangle> boundingBoxes;
+	Map<Zone, Rectangle> boundingBoxes;
 	/** Doors between adjacent rooms are in there (and are zones of size 1). */
-	final List<Zone> corridors;
+	List<Zone> corridors;
 
 	/** Members of {@link #rooms} that aren't connected to the stairs. */
 	/* @Nullable */ List<Zone> disconnectedRooms;
@@ -77,7 +95,7 @@ public class Dungeon implements Serializable {
 	 * The zones to which a zone is directly connected. Keys and values belong both
 	 * to {@link #rooms} and {@link #corridors}.
 	 */
-	final Map<Zone, List<Zone>> connections;
+	Map<Zone, List<Zone>> connections;
 
 	Coord upwardStair;
 	Coord downwardStair;
@@ -93,6 +111,39 @@ public class Dungeon implements Serializable {
 	/** Deep water */
 	/* @Nullable */ List<ListZone> waterPools;
 
+	/**
+	 * Incremented every time {@link #builder} mutates {@code this}. See
+	 * {@link #getVersion()}.
+	 */
+	int version;
+
+	/**
+	 * The members of {@code this} that are shared with another dungeon (see
+	 * {@link #snapshot()}), as a mask of {@code SHARED_*} flags.
+	 * {@link DungeonBuilder} copies them (see {@link #unshare(int)}) before
+	 * mutating them.
+	 */
+	transient int shared;
+	/**
+	 * The columns of {@link #map} that are shared with another dungeon, by x; or
+	 * null if none is shared. {@link DungeonBuilder} copies a column (see
+	 * {@link #unshareColumn(int)}) before mutating it.
+	 */
+	transient /* @Nullable */ boolean[] sharedColumns;
+	/** The number of true values in {@link #sharedColumns} */
+	private transient int nbSharedColumns;
+
+	static final int SHARED_ROOMS = 1 << 0;
+	static final int SHARED_BOUNDING_BOXES = 1 << 1;
+	static final int SHARED_CORRIDORS = 1 << 2;
+	static final int SHARED_CONNECTIONS = 1 << 3;
+	static final int SHARED_DISCONNECTED_ROOMS = 1 << 4;
+	static final int SHARED_WATER_ISLANDS = 1 << 5;
+	static final int SHARED_CHASMS = 1 << 6;
+	static final int SHARED_GRASS_POOLS = 1 << 7;
+	static final int SHARED_HIGH_GRASS_POOLS = 1 << 8;
+	private static final int SHARED_ALL = (1 << 9) - 1;
+
 	private static final long serialVersionUID = 993644642092518044L;
 
 	/**
@@ -112,6 +163,62 @@ public class Dungeon implements Serializable {
 		this.connections = new HashMap<Zone, List<Zone>>();
 	}
 
+	/**
+	 * A copy of {@code original}, that shares the columns of its map and its
+	 * lists of zones with {@code original}, until one of the two dungeons mutates
+	 * them. Water pools are copied right away, because they are mutable zones.
+	 * 
+	 * @param original
+	 */
+	private Dungeon(Dungeon original) {
+		this.width = original.width;
+		this.height = original.height;
+		this.map = new DungeonSymbol[width][];
+		System.arraycopy(original.map, 0, map, 0, width);
+		this.builder = new DungeonBuilder(this);
+		/* Never mutated, replaced when zones change */
+		this.coordToZone = original.coordToZone;
+		this.rooms = original.rooms;
+		this.boundingBoxes = original.boundingBoxes;
+		this.corridors = original.corridors;
+		this.disconnectedRooms = original.disconnectedRooms;
+		this.waterIslands = original.waterIslands;
+		this.connections = original.connections;
+		this.upwardStair = original.upwardStair;
+		this.downwardStair = original.downwardStair;
+		this.chasms = original.chasms;
+		this.grassPools = original.grassPools;
+		this.highGrassPools = original.highGrassPools;
+		if (original.waterPools != null) {
+			final int nbPools = original.waterPools.size();
+			this.waterPools = new ArrayList<ListZone>(nbPools);
+			for (int i = 0; i < nbPools; i++)
+				waterPools.add(new ListZone(new ArrayList<Coord>(original.waterPools.get(i).getState())));
+		}
+		this.version = original.version;
+		this.shared = SHARED_ALL;
+		this.sharedColumns = new boolean[width];
+		Arrays.fill(sharedColumns, true);
+		this.nbSharedColumns = width;
+		original.shared = SHARED_ALL;
+		if (original.sharedColumns == null)
+			original.sharedColumns = new boolean[width];
+		Arrays.fill(original.sharedColumns, true);
+		original.nbSharedColumns = width;
+	}
+
+	/**
+	 * @return A copy of {@code this}, that can be mutated with its
+	 *         {@link #getBuilder() builder} without affecting {@code this} (and
+	 *         vice versa). It is cheap: the two dungeons share the columns of
+	 *         their maps and their lists of zones, until one of them mutates a
+	 *         column or a list, which is then copied. Water pools and caches are
+	 *         not shared.
+	 */
+	public Dungeon snapshot() {
+		return new Dungeon(this);
+	}
+
 	/**
 	 * @return The mutation API.
 	 */
@@ -120,9 +227,27 @@ public class Dungeon implements Serializable {
 	}
 
 	/**
+	 * @return A number that changes every time {@code this} is mutated via
+	 *         {@link #getBuilder()}. It is meant to be used as a key by caches of
+	 *         computations done on the map (such as
+	 *         {@link com.hgames.rhogue.fov.FOVCache}), so that invalidation is
+	 *         automatic. Mutations done directly on {@link #getMap()} are not
+	 *         tracked.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Mutating accessor: the caller may write in the result, hence the columns
+	 * that are shared with a {@link #snapshot()} (or with the dungeon this is a
+	 * snapshot of) are copied first. To read the map, prefer
+	 * {@link #getSymbol(int, int)}, which doesn't copy anything.
+	 * 
 	 * @return The underlying map.
 	 */
 	public DungeonSymbol[][] getMap() {
+		unshareMap();
 		return map;
 	}
 
@@ -255,6 +380,79 @@ public class Dungeon implements Serializable {
 	public /* @Nullable */ Zone findRoomOrCorridorContaining(Coord c) {
 		return Dungeons.findRoomOrCorridorContaining(this, c.x, c.y);
 	}
+
+	/**
+	 * Copies the members of {@code this} identified by {@code what} (a
+	 * {@code SHARED_*} flag), if they are shared with another dungeon.
+	 * 
+	 * @param what
+	 */
+	void unshare(int what) {
+		if ((shared & what) == 0)
+			return;
+		shared &= ~what;
+		switch (what) {
+		case SHARED_ROOMS:
+			rooms = new ArrayList<Zone>(rooms);
+			return;
+		case SHARED_BOUNDING_BOXES:
+			boundingBoxes = new HashMap<Zone, Rectangle>(boundingBoxes);
+			return;
+		case SHARED_CORRIDORS:
+			corridors = new ArrayList<Zone>(corridors);
+			return;
+		case SHARED_CONNECTIONS: {
+			final Map<Zone, List<Zone>> copy = new HashMap<Zone, List<Zone>>(connections.size());
+			for (Map.Entry<Zone, List<Zone>> entry : connections.entrySet())
+				copy.put(entry.getKey(), new ArrayList<Zone>(entry.getValue()));
+			connections = copy;
+			return;
+		}
+		case SHARED_DISCONNECTED_ROOMS:
+			disconnectedRooms = copy(disconnectedRooms);
+			return;
+		case SHARED_WATER_ISLANDS:
+			waterIslands = copy(waterIslands);
+			return;
+		case SHARED_CHASMS:
+			chasms = copy(chasms);
+			return;
+		case SHARED_GRASS_POOLS:
+			grassPools = copy(grassPools);
+			return;
+		case SHARED_HIGH_GRASS_POOLS:
+			highGrassPools = copy(highGrassPools);
+			return;
+		}
+		throw new IllegalStateException("Unexpected flag: " + what);
+	}
+
+	/**
+	 * Copies the column {@code x} of {@link #map}, if it is shared with another
+	 * dungeon.
+	 * 
+	 * @param x
+	 */
+	void unshareColumn(int x) {
+		if (sharedColumns == null || !sharedColumns[x])
+			return;
+		map[x] = Arrays.copyOf(map[x], height);
+		sharedColumns[x] = false;
+		nbSharedColumns--;
+		if (nbSharedColumns == 0)
+			sharedColumns = null;
+	}
+
+	/** Copies the columns of {@link #map} that are shared with another dungeon */
+	void unshareMap() {
+		for (int x = 0; sharedColumns != null && x < width; x++)
+			unshareColumn(x);
+	}
+
+	private static /* @Nullable */ List<Zone> copy(/* @Nullable */ List<Zone> list) {
+		return list == null ? null : new ArrayList<Zone>(list);
+	}
+
 	/** @return The number of cells in this dungeon */
 	public int size() {
 		return width * height;
@@ -1,14 +1,13 @@
 package com.hgames.rhogue.generation.map.dungeon;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 import com.hgames.lib.Exceptions;
+import com.hgames.rhogue.zone.LabeledZone;
 import com.hgames.rhogue.zone.ListZone;
+import com.hgames.rhogue.zone.Zone;
 
 import squidpony.squidgrid.Direction;
 import squidpony.squidmath.Coord;
@@ -49,35 +48,31 @@ public class DungeonAdapter {
 		final int height = width == 0 ? 0 : map[0].length;
 		final Dungeon result = new Dungeon(map);
 		final DungeonBuilder builder = result.getBuilder();
+		/* The component of (x, y) is at x * height + y, or -1 if not tracked */
+		final int[] labels = new int[width * height];
+		final int nbComponents = label(labels);
+		final List<List<Coord>> components = new ArrayList<List<Coord>>(nbComponents);
+		/* The queue of spill(...), allocated once for all components */
+		final int[] todos = new int[width * height];
 		for (int x = 0; x < width; x++) {
 			for (int y = 0; y < height; y++) {
 				final DungeonSymbol sym = map[x][y];
 				switch (sym) {
 				case CHASM:
-					if (!interpreted[x][y])
-						builder.addChasm(new ListZone(spill(x, y, EnumSet.of(sym))));
-					continue;
 				case DEEP_WATER:
-					if (!interpreted[x][y])
-						builder.addWaterPool(new ListZone(spill(x, y, EnumSet.of(sym))));
+				case FLOOR:
+				case GRASS:
+				case HIGH_GRASS:
+					if (!interpreted[x][y]) {
+						/* Components are met in the order of their labels */
+						assert labels[(x * height) + y] == components.size();
+						components.add(spill(labels, x, y, todos));
+					}
 					continue;
 				case SHALLOW_WATER:
 				case DOOR:
 					assert false : sym + " is disallowed in text maps";
 					continue;
-				case FLOOR:
-					if (!interpreted[x][y])
-						/* null: we cannot provide a meaningful bounding box */
-						builder.addZone(new ListZone(spill(x, y, EnumSet.of(sym))), null, true);
-					continue;
-				case GRASS:
-					if (!interpreted[x][y])
-						builder.addGrassPool(new ListZone(spill(x, y, EnumSet.of(sym))), EnumSet.of(sym));
-					continue;
-				case HIGH_GRASS:
-					if (!interpreted[x][y])
-						builder.addHighGrassPool(new ListZone(spill(x, y, EnumSet.of(sym))));
-					continue;
 				case STAIR_DOWN:
 					assert !interpreted[x][y];
 					builder.setStair(x, y, false);
@@ -95,52 +90,172 @@ public class DungeonAdapter {
 				throw Exceptions.newUnmatchedISE(sym);
 			}
 		}
+		assert components.size() == nbComponents;
+		final Zone[][] coordToZone = new Zone[width][height];
+		for (int i = 0; i < nbComponents; i++) {
+			final List<Coord> component = components.get(i);
+			final Coord first = component.get(0);
+			final DungeonSymbol sym = map[first.x][first.y];
+			switch (sym) {
+			case CHASM:
+				builder.addChasm(new LabeledZone(labels, width, height, i, component));
+				continue;
+			case DEEP_WATER:
+				/* ListZone, because the lists of water pools get muted */
+				builder.addWaterPool(new ListZone(component));
+				continue;
+			case FLOOR: {
+				final Zone zone = new LabeledZone(labels, width, height, i, component);
+				/* null: we cannot provide a meaningful bounding box */
+				builder.addZone(zone, null, true);
+				for (Coord c : component)
+					coordToZone[c.x][c.y] = zone;
+				continue;
+			}
+			case GRASS:
+				builder.addGrassPool(new LabeledZone(labels, width, height, i, component), EnumSet.of(sym));
+				continue;
+			case HIGH_GRASS:
+				builder.addHighGrassPool(new ListZone(component));
+				continue;
+			case DOOR:
+			case SHALLOW_WATER:
+			case STAIR_DOWN:
+			case STAIR_UP:
+			case WALL:
+				break;
+			}
+			throw Exceptions.newUnmatchedISE(sym);
+		}
+		/* After the builder's calls, as they reset it */
+		result.coordToZone = coordToZone;
 		return result;
 	}
 
 	/**
-	 * Spill from {@code (x_, y_)} on cells whose symbol is in {@code syms} and that
-	 * haven't been interpreted yet.
+	 * Spills from {@code (x0, y0)} on the cells of its component. This lists
+	 * cells in breadth first order, visiting neighbors in the order of
+	 * {@link Direction#CARDINALS}; so that zones list their cells in the same
+	 * order as when they were built by flooding the map.
 	 * 
-	 * @param x_
-	 * @param y_
-	 * @param syms
-	 *            The symbols to spill on.
+	 * @param labels
+	 *            The labels computed by {@link #label(int[])}.
+	 * @param todos
+	 *            A buffer of size {@code width * height}.
+	 * @return The cells of the component of {@code (x0, y0)}.
 	 */
-	private List<Coord> spill(int x_, int y_, EnumSet<DungeonSymbol> syms) {
+	private List<Coord> spill(int[] labels, int x0, int y0, int[] todos) {
+		final int width = map.length;
+		final int height = map[0].length;
+		final int label = labels[(x0 * height) + y0];
 		final List<Coord> result = new ArrayList<Coord>();
-		assert syms.contains(map[x_][y_]);
-		final Queue<Coord> todos = new LinkedList<Coord>();
-		todos.add(Coord.get(x_, y_));
-		while (!todos.isEmpty()) {
-			final Coord c = todos.remove();
-			final int x = c.x;
-			final int y = c.y;
-			if (interpreted[x][y])
-				continue;
-			final DungeonSymbol sym = map[x][y];
-			assert syms.contains(sym);
-			assert !result.contains(c);
-			result.add(c);
-			interpreted[x][y] = true;
+		int head = 0;
+		int tail = 0;
+		todos[tail++] = (x0 * height) + y0;
+		interpreted[x0][y0] = true;
+		while (head < tail) {
+			final int i = todos[head++];
+			final int x = i / height;
+			final int y = i % height;
+			result.add(Coord.get(x, y));
 			for (Direction dir : Direction.CARDINALS) {
-				final Coord d = c.translate(dir);
-				if (!interpreted[d.x][d.y] && syms.contains(map[d.x][d.y]))
-					todos.add(d);
+				final int nx = x + dir.deltaX;
+				final int ny = y + dir.deltaY;
+				if (nx < 0 || width <= nx || ny < 0 || height <= ny || interpreted[nx][ny])
+					continue;
+				final int j = (nx * height) + ny;
+				if (labels[j] == label) {
+					interpreted[nx][ny] = true;
+					todos[tail++] = j;
+				}
 			}
 		}
-		assert containsAll(syms, result);
 		return result;
 	}
 
-	private boolean containsAll(EnumSet<DungeonSymbol> syms, Collection<Coord> coords) {
-		for (Coord coord : coords) {
-			if (!syms.contains(map[coord.x][coord.y])) {
-				assert false : coord + "'s symbol (" + map[coord.x][coord.y] + ") doesn't belong to " + syms;
-				return false;
+	/**
+	 * Labels the components of {@link #map}: cardinally connected cells that
+	 * have the same symbol, for the symbols that are tracked. This is done in
+	 * two passes over the map with a union-find structure, whose roots are the
+	 * first cells of components (in the order of iteration of the map).
+	 * 
+	 * @param labels
+	 *            Where to store the labels, {@code labels[x * height + y]}
+	 *            being the label of (x, y) or -1 if (x, y) isn't tracked.
+	 * @return The number of components. Labels are in [0, result), in the order
+	 *         in which components' first cell is encountered.
+	 */
+	private int label(int[] labels) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		final int[] parents = new int[width * height];
+		/* First pass: union cells with their predecessors */
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final int i = (x * height) + y;
+				final DungeonSymbol sym = map[x][y];
+				if (!isLabeled(sym)) {
+					parents[i] = -1;
+					continue;
+				}
+				parents[i] = i;
+				if (0 < x && map[x - 1][y] == sym)
+					union(parents, i - height, i);
+				if (0 < y && map[x][y - 1] == sym)
+					union(parents, i - 1, i);
+			}
+		}
+		/* Second pass: give dense labels to roots */
+		int result = 0;
+		for (int i = 0; i < parents.length; i++) {
+			if (parents[i] < 0) {
+				labels[i] = -1;
+				continue;
 			}
+			final int root = find(parents, i);
+			/* Roots are the smallest members of their component */
+			assert root <= i;
+			labels[i] = root == i ? result++ : labels[root];
+		}
+		return result;
+	}
+
+	private static boolean isLabeled(DungeonSymbol sym) {
+		switch (sym) {
+		case CHASM:
+		case DEEP_WATER:
+		case FLOOR:
+		case GRASS:
+		case HIGH_GRASS:
+			return true;
+		case DOOR:
+		case SHALLOW_WATER:
+		case STAIR_DOWN:
+		case STAIR_UP:
+		case WALL:
+			return false;
 		}
-		return true;
+		throw Exceptions.newUnmatchedISE(sym);
+	}
+
+	/** @return The root of {@code i}, halving paths along the way */
+	private static int find(int[] parents, int i_) {
+		int i = i_;
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	/** Unions the sets of {@code i} and {@code j}, keeping the smallest root */
+	private static void union(int[] parents, int i, int j) {
+		final int ri = find(parents, i);
+		final int rj = find(parents, j);
+		if (ri < rj)
+			parents[rj] = ri;
+		else if (rj < ri)
+			parents[ri] = rj;
 	}
 
 }
@@ -16,7 +16,9 @@ import squidpony.squidmath.Coord;
 
 /**
  * API to mutate a {@link Dungeon}. Methods in this file are sorted, keep it
- * that way.
+ * that way. Every mutation changes {@link Dungeon#getVersion()}, keep it that
+ * way too. Members shared with another dungeon are copied before being mutated
+ * (see {@link Dungeon#unshare(int)}), keep it that way as well.
  * 
  * @author smelC
  * @see Dungeons The API for querying dungeons
@@ -39,21 +41,27 @@ public class DungeonBuilder implements Serializable {
 	 * @param z2
 	 */
 	public void addConnection(Zone z1, Zone z2) {
+		dungeon.version++;
 		assert z1 != z2;
 		if (z1 == z2)
 			throw new IllegalStateException("A zone should not be connected to itself");
+		dungeon.unshare(Dungeon.SHARED_CONNECTIONS);
 		assert Dungeons.hasRoomOrCorridor(dungeon, z1);
 		assert Dungeons.hasRoomOrCorridor(dungeon, z2);
 		Multimaps.addToArrayListMultimapIfAbsent(dungeon.connections, z1, z2);
 		Multimaps.addToArrayListMultimapIfAbsent(dungeon.connections, z2, z1);
+		if (dungeon.connectionGraph != null)
+			dungeon.connectionGraph.addConnection(z1, z2);
 	}
 
 	/**
 	 * @param z
 	 */
 	public void addChasm(Zone z) {
+		dungeon.version++;
 		assert !z.isEmpty();
 		assert !Dungeons.hasZone(dungeon, z);
+		dungeon.unshare(Dungeon.SHARED_CHASMS);
 		if (dungeon.chasms == null)
 			dungeon.chasms = new ArrayList<Zone>();
 		dungeon.chasms.add(z);
@@ -63,8 +71,10 @@ public class DungeonBuilder implements Serializable {
 	 * @param z
 	 */
 	public void addDisconnectedRoom(Zone z) {
+		dungeon.version++;
 		assert !z.isEmpty();
 		assert !Dungeons.hasZone(dungeon, z);
+		dungeon.unshare(Dungeon.SHARED_DISCONNECTED_ROOMS);
 		if (dungeon.disconnectedRooms == null)
 			dungeon.disconnectedRooms = new ArrayList<Zone>();
 		dungeon.disconnectedRooms.add(z);
@@ -78,11 +88,13 @@ public class DungeonBuilder implements Serializable {
 	 *            generated something else. For debug only.
 	 */
 	public void addGrassPool(Zone pool, /* @Nullable */ EnumSet<DungeonSymbol> replaceds) {
+		dungeon.version++;
 		assert !Dungeons.hasZone(dungeon, pool);
 		assert !pool.isEmpty();
 		assert replaceds == null || replaceds.containsAll(Dungeons.getSymbols(dungeon, pool)) : "Pool of grass " + pool
 				+ " contains an invalid symbol: " + Dungeons.getSymbols(dungeon, pool) + ". Only allowed symbol is "
 				+ replaceds + ")";
+		dungeon.unshare(Dungeon.SHARED_GRASS_POOLS);
 		if (dungeon.grassPools == null)
 			dungeon.grassPools = new ArrayList<Zone>();
 		else
@@ -95,8 +107,10 @@ public class DungeonBuilder implements Serializable {
 	 *            The pool to add.
 	 */
 	public void addHighGrassPool(ListZone pool) {
+		dungeon.version++;
 		assert !Dungeons.hasZone(dungeon, pool);
 		assert !pool.isEmpty();
+		dungeon.unshare(Dungeon.SHARED_HIGH_GRASS_POOLS);
 		if (dungeon.highGrassPools == null)
 			dungeon.highGrassPools = new ArrayList<Zone>();
 		else
@@ -108,7 +122,9 @@ public class DungeonBuilder implements Serializable {
 	 * @param z
 	 */
 	public void addWaterIsland(Zone z) {
+		dungeon.version++;
 		assert dungeon.getRooms().contains(z);
+		dungeon.unshare(Dungeon.SHARED_WATER_ISLANDS);
 		if (dungeon.waterIslands == null)
 			dungeon.waterIslands = new ArrayList<Zone>();
 		dungeon.waterIslands.add(z);
@@ -119,6 +135,7 @@ public class DungeonBuilder implements Serializable {
 	 *            The pool to add.
 	 */
 	public void addWaterPool(ListZone pool) {
+		dungeon.version++;
 		assert !Dungeons.hasZone(dungeon, pool);
 		assert !pool.isEmpty();
 		if (dungeon.waterPools == null)
@@ -137,6 +154,8 @@ public class DungeonBuilder implements Serializable {
 	 *            Whether {@code z} is a room or a corridor.
 	 */
 	public void addZone(Zone z, /* @Nullable */ Rectangle boundingBox, boolean roomOrCorridor) {
+		dungeon.version++;
+		dungeon.coordToZone = null;
 		/* Zone should not intersect with existing zones */
 		assert Dungeons.findIntersectingZones(dungeon, z, true, true, true) == null : ("Cannot add zone " + z
 				+ ". It overlaps with an existing zone: "
@@ -145,15 +164,19 @@ public class DungeonBuilder implements Serializable {
 		assert boundingBox == null || boundingBox.contains(z) : "Zone " + z + " isn't in its bounding box: "
 				+ boundingBox;
 		// System.out.println("Adding zone: " + z);
+		dungeon.unshare(roomOrCorridor ? Dungeon.SHARED_ROOMS : Dungeon.SHARED_CORRIDORS);
 		if (roomOrCorridor)
 			dungeon.rooms.add(z);
 		else
 			dungeon.corridors.add(z);
 		if (boundingBox != null) {
+			dungeon.unshare(Dungeon.SHARED_BOUNDING_BOXES);
 			final Rectangle prev = dungeon.boundingBoxes.put(z, boundingBox);
 			if (prev != null)
 				throw new IllegalStateException(z + " was recorded already");
 		}
+		if (dungeon.connectionGraph != null)
+			dungeon.connectionGraph.addZone(z);
 	}
 
 	/**
@@ -165,6 +188,7 @@ public class DungeonBuilder implements Serializable {
 	 * @return Whether something was indeed removed.
 	 */
 	public boolean removeFromWaterPools(Zone z, /* @Nullable */ Collection<Coord> acc) {
+		dungeon.version++;
 		if (dungeon.waterPools == null)
 			return false;
 		boolean result = false;
@@ -189,7 +213,13 @@ public class DungeonBuilder implements Serializable {
 	 * @return true if {@code z} was a zone, false if a corridor.
 	 */
 	public boolean removeRoomOrCorridor(Zone z) {
+		dungeon.version++;
+		dungeon.coordToZone = null;
 		assert Dungeons.hasRoomOrCorridor(dungeon, z);
+		dungeon.unshare(Dungeon.SHARED_ROOMS);
+		dungeon.unshare(Dungeon.SHARED_CORRIDORS);
+		dungeon.unshare(Dungeon.SHARED_BOUNDING_BOXES);
+		dungeon.unshare(Dungeon.SHARED_CONNECTIONS);
 		boolean done = dungeon.rooms.remove(z);
 		final boolean result = done;
 		if (!done)
@@ -200,6 +230,8 @@ public class DungeonBuilder implements Serializable {
 		dungeon.connections.remove(z);
 		for (List<Zone> destinations : dungeon.connections.values())
 			destinations.remove(z);
+		if (dungeon.connectionGraph != null)
+			dungeon.connectionGraph.removeZone(z);
 		return result;
 	}
 
@@ -209,6 +241,8 @@ public class DungeonBuilder implements Serializable {
 	 * @param sym
 	 */
 	public void setAllSymbols(DungeonSymbol sym) {
+		dungeon.version++;
+		dungeon.unshareMap();
 		final int width = dungeon.getWidth();
 		final int height = dungeon.getHeight();
 		for (int x = 0; x < width; x++) {
@@ -216,6 +250,7 @@ public class DungeonBuilder implements Serializable {
 				dungeon.map[x][y] = sym;
 			}
 		}
+		dungeon.neighborMasks = null;
 	}
 
 	/**
@@ -249,13 +284,14 @@ public class DungeonBuilder implements Serializable {
 
 	/**
 	 * Prefer this method over direct mutations, it eases debugging.
-	 *
+	 * 
 	 * @param x
 	 * @param y
 	 * @param sym
 	 */
 	public void setSymbol(int x, int y, DungeonSymbol sym) {
-		dungeon.map[x][y] = sym;
+		dungeon.version++;
+		setSymbol0(x, y, sym);
 	}
 
 	/**
@@ -265,9 +301,10 @@ public class DungeonBuilder implements Serializable {
 	 * @param sym
 	 */
 	public void setSymbols(Iterator<Coord> it, DungeonSymbol sym) {
+		dungeon.version++;
 		while (it.hasNext()) {
 			final Coord c = it.next();
-			dungeon.map[c.x][c.y] = sym;
+			setSymbol0(c.x, c.y, sym);
 		}
 	}
 
@@ -280,11 +317,21 @@ public class DungeonBuilder implements Serializable {
 	 * @param except
 	 */
 	public void setSymbolsExcept(Iterator<Coord> it, DungeonSymbol sym, EnumSet<DungeonSymbol> except) {
+		dungeon.version++;
 		while (it.hasNext()) {
 			final Coord c = it.next();
 			if (!except.contains(dungeon.getSymbol(c)))
-				dungeon.map[c.x][c.y] = sym;
+				setSymbol0(c.x, c.y, sym);
 		}
 	}
 
+	/** Sets {@code sym} at {@code (x, y)}, keeping derived data up to date */
+	private void setSymbol0(int x, int y, DungeonSymbol sym) {
+		dungeon.unshareColumn(x);
+		final DungeonSymbol old = dungeon.map[x][y];
+		dungeon.map[x][y] = sym;
+		if (dungeon.neighborMasks != null)
+			NeighborMasks.update(dungeon.neighborMasks, dungeon.map, x, y, old);
+	}
+
 }
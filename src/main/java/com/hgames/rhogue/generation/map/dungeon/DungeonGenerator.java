@@ -4,9 +4,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -24,7 +25,8 @@ import com.hgames.rhogue.generation.map.draw.ConsoleDungeonDrawer;
 import com.hgames.rhogue.generation.map.draw.IDungeonDrawer;
 import com.hgames.rhogue.generation.map.dungeon.corridor.CorridorBuilders;
 import com.hgames.rhogue.generation.map.dungeon.corridor.ICorridorBuilder;
-import com.hgames.rhogue.generation.map.dungeon.flood.IFloodObjective;
+import com.hgames.rhogue.generation.map.dungeon.corridor.SequencedCorridorBuilder;
+import com.hgames.rhogue.generation.map.dungeon.flood.IFloodSpanObjective;
 import com.hgames.rhogue.generation.map.dungeon.stair.SkeletalStairGenerator;
 import com.hgames.rhogue.generation.map.lifetime.Lifetime;
 import com.hgames.rhogue.generation.map.lifetime.SomeShots;
@@ -107,6 +109,8 @@ public class DungeonGenerator {
 	protected final Map<Zone, IRoomGenerator> roomToGenerator;
 	/** The domain of this map is {@link #roomGenerators} */
 	protected final Map<IRoomGenerator, Lifetime> rgLifetimes;
+	/** The statistics of room generators, for the last generation */
+	protected final Map<IRoomGenerator, RoomGeneratorStats> rgStats;
 
 	protected int minRoomWidth = 3;
 	protected int maxRoomWidth;
@@ -130,6 +134,24 @@ public class DungeonGenerator {
 	 */
 	protected boolean allowWidthOrHeightOneRooms = false;
 
+	/**
+	 * Whether to keep placing rooms in the largest free areas once random
+	 * placement gives up. This makes dungeons denser.
+	 */
+	protected boolean fillFreeSpace = false;
+
+	/**
+	 * Whether water pools and grass patches are flooded a vertical run at a
+	 * time, instead of a cell at a time.
+	 */
+	protected boolean scanlineFloods = false;
+
+	/**
+	 * The number of failures in a row after which the weight of a room generator
+	 * is halved (for the current generation), or 0 to keep weights unchanged.
+	 */
+	protected int roomGeneratorFailureBudget = 0;
+
 	/** Whether shallow water can be generated */
 	protected boolean allowShallowWater = true;
 
@@ -174,7 +196,13 @@ public class DungeonGenerator {
 	 * A fresh generator.
 	 * 
 	 * @param rng
-	 *            The seed to use.
+	 *            The seed to use. Corridor builders don't draw from it directly:
+	 *            they are given a {@link com.hgames.rhogue.rng.DefaultRNG}
+	 *            reseeded, for every pair of endpoints tried, from a value drawn
+	 *            from {@code rng}. So generation is still determined by
+	 *            {@code rng}, but corridors' shapes come from
+	 *            {@link java.util.Random}'s sequences whatever {@code rng}'s
+	 *            implementation.
 	 * @param width
 	 *            The desired map's width.
 	 * @param height
@@ -191,6 +219,7 @@ public class DungeonGenerator {
 		this.roomGenerators = ProbabilityTable.create();
 		this.rgLifetimes = new HashMap<IRoomGenerator, Lifetime>();
 		this.roomToGenerator = new HashMap<Zone, IRoomGenerator>();
+		this.rgStats = new LinkedHashMap<IRoomGenerator, RoomGeneratorStats>();
 	}
 
 	/**
@@ -241,6 +270,42 @@ public class DungeonGenerator {
 		this.allowWidthOrHeightOneRooms = value;
 	}
 
+	/**
+	 * @param value
+	 *            Whether to keep placing rooms in the maximal free rectangles
+	 *            once random placement gives up, to have denser dungeons. False
+	 *            by default.
+	 */
+	public void setFillFreeSpace(boolean value) {
+		this.fillFreeSpace = value;
+	}
+
+	/**
+	 * @param value
+	 *            Whether to flood water pools and grass patches with
+	 *            {@link com.hgames.rhogue.generation.map.dungeon.flood.FloodFill#floodSpans(IRNG, int, int, IFloodSpanObjective, boolean, int[])}
+	 *            . This is cheaper on large open maps (such as caves), but
+	 *            yields more elongated pools and patches. False by default.
+	 */
+	public void setScanlineFloods(boolean value) {
+		this.scanlineFloods = value;
+	}
+
+	/**
+	 * @param budget
+	 *            The number of failures in a row (see {@link RoomGeneratorStats})
+	 *            after which the weight of a room generator is halved, for the
+	 *            remainder of the generation. This avoids picking generators
+	 *            that don't fit in the remaining space. 0 (the default) to keep
+	 *            the weights given to
+	 *            {@link #installRoomGenerator(IRoomGenerator, int, Lifetime)}.
+	 */
+	public void setRoomGeneratorFailureBudget(int budget) {
+		if (budget < 0)
+			throw new IllegalStateException("Failure budget must be >= 0. Received: " + budget);
+		this.roomGeneratorFailureBudget = budget;
+	}
+
 	/**
 	 * The complexity controls the maximum width/height of rooms. More complex
 	 * dungeons (many rooms, many corridors) use a smaller maximum size.
@@ -406,6 +471,112 @@ public class DungeonGenerator {
 
 	/** @return A fresh dungeon or null if it could not be generated. */
 	public Dungeon generate() {
+		final GenerationData gdata = start();
+		if (gdata == null)
+			return null;
+		final Dungeon dungeon = gdata.dungeon;
+		if (width == 0 || height == 0)
+			// Nothing to do
+			return dungeon;
+		if (!doStages(gdata, Stage.INIT, null))
+			return null;
+		return finish(gdata);
+	}
+
+	/**
+	 * Generates a dungeon up to {@code stage} included, to later finish it
+	 * (possibly several times) with {@link #generate(Checkpoint)}. This allows to
+	 * try different settings for the remaining stages, without redoing the stages
+	 * done.
+	 * 
+	 * <p>
+	 * If water is done before rooms (see
+	 * {@link #setWaterObjective(boolean, int, int, int)}), it is part of the
+	 * checkpoint. To try different water settings on the same rooms, call
+	 * {@code setWaterObjective(false, ...)} before this method.
+	 * </p>
+	 * 
+	 * @param stage
+	 *            {@link Stage#ROOMS}, {@link Stage#CORRIDORS}, or
+	 *            {@link Stage#STAIRS}.
+	 * @return The state of generation after {@code stage}, or null if the dungeon
+	 *         could not be generated.
+	 */
+	public /* @Nullable */ Checkpoint generateUntil(Stage stage) {
+		switch (stage) {
+		case ROOMS:
+		case CORRIDORS:
+		case STAIRS:
+			break;
+		case INIT:
+		case WATER_START:
+		case PASSAGES_IN_ALMOST_ADJACENT_ROOMS:
+		case ENSURE_DENSITY:
+		case WATER:
+		case GRASS:
+			throw new IllegalStateException("Checkpoints are only supported after stages " + Stage.ROOMS + ", "
+					+ Stage.CORRIDORS + ", and " + Stage.STAIRS + ". Received: " + stage);
+		}
+		final GenerationData gdata = start();
+		if (gdata == null)
+			return null;
+		/* Like in 'generate()', there's nothing to do on empty dungeons */
+		if (0 < width && 0 < height && !doStages(gdata, Stage.INIT, stage))
+			return null;
+		gdata.startStage(null); // Record end of last stage
+		gdata.logTimings(logger);
+		return new Checkpoint(stage, startWithWater, gdata, roomToGenerator, rgStats);
+	}
+
+	/**
+	 * Finishes the dungeon of {@code checkpoint}, by doing the stages after
+	 * {@link Checkpoint#getStage()} with the current settings of {@code this}.
+	 * {@code checkpoint} isn't modified, hence this method can be called
+	 * repeatedly on the same checkpoint to obtain different dungeons that share
+	 * their first stages. Unmodified parts of the checkpoint's dungeon are shared
+	 * with the result.
+	 * 
+	 * @param checkpoint
+	 *            A result of {@link #generateUntil(Stage)}, on a generator of the
+	 *            same size, and that does water at the same stage as {@code this}
+	 *            (see {@link Checkpoint#getStartWithWater()}).
+	 * @return A fresh dungeon or null if it could not be generated.
+	 * @throws IllegalStateException
+	 *             If {@code checkpoint} doesn't match {@code this}' size, or
+	 *             {@code this}' {@code startWithWater} setting.
+	 */
+	public /* @Nullable */ Dungeon generate(Checkpoint checkpoint) {
+		final Dungeon original = checkpoint.gdata.dungeon;
+		if (original.width != width || original.height != height)
+			throw new IllegalStateException("Checkpoint of a " + original.width + "x" + original.height
+					+ " dungeon cannot be finished by a " + width + "x" + height + " generator");
+		if (checkpoint.startWithWater != startWithWater)
+			/* Water would be done twice, or not at all */
+			throw new IllegalStateException("Checkpoint made with startWithWater=" + checkpoint.startWithWater
+					+ " cannot be finished by a generator with startWithWater=" + startWithWater);
+		computeMaxRoomSizes();
+		final Stopwatch watch = (logger != null && logger.isInfoEnabled()) ? new Stopwatch() : null;
+		final GenerationData gdata = checkpoint.gdata.fork(this, watch);
+		/* Rooms are immutable, hence the keys are rooms of the fork too */
+		roomToGenerator.clear();
+		roomToGenerator.putAll(checkpoint.roomToGenerator);
+		rgStats.clear();
+		for (Map.Entry<IRoomGenerator, RoomGeneratorStats> entry : checkpoint.rgStats.entrySet())
+			rgStats.put(entry.getKey(), new RoomGeneratorStats(entry.getValue()));
+		if (width == 0 || height == 0)
+			// Nothing to do
+			return gdata.dungeon;
+		if (!doStages(gdata, checkpoint.stage, null))
+			return null;
+		return finish(gdata);
+	}
+
+	/**
+	 * Prepares the generation of a fresh dungeon.
+	 * 
+	 * @return The data of the generation, or null if it cannot be done.
+	 */
+	private /* @Nullable */ GenerationData start() {
 		if (roomGenerators.isEmpty()) {
 			final String msg = "You need to install at least one room generator (using method installRoomGenerator). Cannot generate dungeons.";
 			if (logger != null && logger.isErrEnabled())
@@ -416,6 +587,7 @@ public class DungeonGenerator {
 			return null;
 		}
 		roomToGenerator.clear();
+		rgStats.clear();
 		computeMaxRoomSizes();
 		/*
 		 * /!\ Don't forget to disable assertions when checking performances. Assertions
@@ -425,42 +597,84 @@ public class DungeonGenerator {
 		final DungeonSymbol[][] map = new DungeonSymbol[width][height];
 		final Dungeon dungeon = new Dungeon(map);
 		dungeon.getBuilder().setAllSymbols(DungeonSymbol.WALL);
-		if (width == 0 || height == 0)
-			// Nothing to do
-			return dungeon;
-		final GenerationData gdata = new GenerationData(this, dungeon, watch);
-
-		if (startWithWater)
-			doStage(Stage.WATER_START, new WaterComponent(), gdata);
-
-		doStage(Stage.ROOMS, new RoomComponent(this, gdata), gdata);
-
-		doStage(Stage.PASSAGES_IN_ALMOST_ADJACENT_ROOMS, new PassagesComponent(), gdata);
-		// Done once here instead of at every passage
-		draw(gdata.dungeon);
-
-		gdata.startStage(Stage.CORRIDORS);
-		generateCorridors(gdata, dungeon.rooms, dungeon.rooms,
-				new ICorridorControl.Impl(dungeon, true, false, false, false));
+		return new GenerationData(this, dungeon, watch);
+	}
 
-		gdata.startStage(Stage.STAIRS);
-		/* Must be called before 'generateWater' */
-		final boolean good = doStage(Stage.STAIRS, new StairsComponent(), gdata);
-		if (!good) {
-			if (logger != null && logger.isDebugEnabled())
-				logger.infoLog(Tags.GENERATION, dungeon.dirtyPrint("\n"));
-			return null;
+	/**
+	 * Does the stages after {@code after} (excluded) until {@code until}
+	 * (included).
+	 * 
+	 * @param gdata
+	 * @param after
+	 * @param until
+	 *            The last stage to do, or null to do all remaining stages.
+	 * @return Whether generation succeeded.
+	 */
+	private boolean doStages(GenerationData gdata, Stage after, /* @Nullable */ Stage until) {
+		for (Stage stage : Stage.values()) {
+			if (stage.ordinal() <= after.ordinal())
+				continue;
+			if (!doStage(stage, gdata))
+				return false;
+			if (stage == until)
+				break;
 		}
+		return true;
+	}
 
-		doStage(Stage.ENSURE_DENSITY, new DensityComponent(), gdata);
-
-		if (!startWithWater)
-			doStage(Stage.WATER, new WaterComponent(), gdata);
-
-		if (!doStage(Stage.GRASS, new GrassComponent(), gdata))
-			return null;
+	/** @return Whether generation succeeded */
+	private boolean doStage(Stage stage, GenerationData gdata) {
+		final Dungeon dungeon = gdata.dungeon;
+		switch (stage) {
+		case INIT:
+			return true;
+		case WATER_START:
+			if (startWithWater)
+				doStage(stage, new WaterComponent(), gdata);
+			return true;
+		case ROOMS:
+			doStage(stage, new RoomComponent(this, gdata), gdata);
+			return true;
+		case PASSAGES_IN_ALMOST_ADJACENT_ROOMS:
+			doStage(stage, new PassagesComponent(), gdata);
+			// Done once here instead of at every passage
+			draw(dungeon);
+			return true;
+		case CORRIDORS:
+			gdata.startStage(stage);
+			generateCorridors(gdata, dungeon.rooms, dungeon.rooms,
+					new ICorridorControl.Impl(dungeon, true, false, false, false));
+			return true;
+		case STAIRS:
+			gdata.startStage(stage);
+			/* Must be called before 'generateWater' */
+			final boolean good = doStage(stage, new StairsComponent(), gdata);
+			if (!good) {
+				if (logger != null && logger.isDebugEnabled())
+					logger.infoLog(Tags.GENERATION, dungeon.dirtyPrint("\n"));
+			}
+			return good;
+		case ENSURE_DENSITY:
+			doStage(stage, new DensityComponent(), gdata);
+			return true;
+		case WATER:
+			if (!startWithWater)
+				doStage(stage, new WaterComponent(), gdata);
+			return true;
+		case GRASS:
+			return doStage(stage, new GrassComponent(), gdata);
+		}
+		throw Exceptions.newUnmatchedISE(stage);
+	}
 
+	/** @return The dungeon of {@code gdata}, once all stages are done */
+	private Dungeon finish(GenerationData gdata) {
+		final Dungeon dungeon = gdata.dungeon;
 		if (logger != null) {
+			if (logger.isInfoEnabled()) {
+				for (Map.Entry<IRoomGenerator, RoomGeneratorStats> entry : rgStats.entrySet())
+					logger.infoLog(Tags.GENERATION, "Room generator " + entry.getKey() + ": " + entry.getValue());
+			}
 			for (IRoomGenerator generator : rgLifetimes.keySet()) {
 				final Lifetime lifetime = rgLifetimes.get(generator);
 				if (lifetime == null) {
@@ -500,6 +714,15 @@ public class DungeonGenerator {
 		return roomToGenerator.get(room);
 	}
 
+	/**
+	 * @param rg
+	 * @return The statistics of {@code rg} during the last call to
+	 *         {@link #generate()}, or null if it wasn't picked.
+	 */
+	public /* @Nullable */ RoomGeneratorStats getRoomGeneratorStats(IRoomGenerator rg) {
+		return rgStats.get(rg);
+	}
+
 	/**
 	 * @author smelC
 	 */
@@ -540,10 +763,18 @@ public class DungeonGenerator {
 			protected Impl(Dungeon dungeon, boolean perfect, boolean bresenhamFirst, boolean useSnd, int limit,
 					boolean force) {
 				this.perfect = perfect;
-				this.builder = useSnd ? CorridorBuilders.createCombination(dungeon, perfect, bresenhamFirst)
-						: CorridorBuilders.create(dungeon, perfect, bresenhamFirst);
 				if (limit < 0)
 					throw new IllegalStateException("Limit of length of corridors must be >= 0. Received: " + limit);
+				final ICorridorBuilder straight = useSnd
+						? CorridorBuilders.createCombination(dungeon, perfect, bresenhamFirst)
+						: CorridorBuilders.create(dungeon, perfect, bresenhamFirst);
+				/*
+				 * When trying harder, go around obstacles if straight shapes fail. The
+				 * search allocates its buffers only if it is needed.
+				 */
+				this.builder = force
+						? new SequencedCorridorBuilder(straight, CorridorBuilders.createAStar(dungeon, perfect, limit))
+						: straight;
 				this.limit = limit;
 				this.force = force;
 			}
@@ -707,6 +938,8 @@ public class DungeonGenerator {
 						+ " already. Cannot map it to " + recorded);
 			gdata.cellToEncloser[c.x][c.y] = recorded;
 		}
+		if (ztype == ZoneType.ROOM || ztype == ZoneType.CORRIDOR)
+			gdata.recordDoorCandidates(recorded);
 		gdata.recordRoomOrdering(recorded);
 		return recorded;
 	}
@@ -730,7 +963,8 @@ public class DungeonGenerator {
 
 	protected void draw(Dungeon dungeon) {
 		if (drawer != null) {
-			drawer.draw(dungeon.getMap());
+			/* Not 'getMap()', as drawing doesn't mutate the map */
+			drawer.draw(dungeon.map);
 		}
 	}
 
@@ -830,7 +1064,7 @@ public class DungeonGenerator {
 	/**
 	 * @author smelC
 	 */
-	protected static class FloodFillObjective implements IFloodObjective {
+	protected static class FloodFillObjective implements IFloodSpanObjective {
 
 		/** The underlying dungeon */
 		protected final Dungeon dungeon;
@@ -842,10 +1076,15 @@ public class DungeonGenerator {
 
 		/** See {@link #isMet()} for the relation between all these fields */
 
-		protected Collection<Coord> dones;
+		/** The number of cells recorded (floods record a cell at most once) */
+		protected int size;
 		/** The minimum size that the floodfill should reach */
 		protected int sizeObjective;
 
+		/**
+		 * The number of cells recorded that are cardinally adjacent to a walkable
+		 * cell. Not incremented beyond 3, as {@link #isMet()} doesn't need more.
+		 */
 		protected int walkableNeighbors = 0;
 
 		public FloodFillObjective(Dungeon dungeon, boolean startWithWater) {
@@ -854,25 +1093,21 @@ public class DungeonGenerator {
 		}
 
 		protected void prepare(int szObjective) {
-			if (dones != null)
-				dones.clear();
+			size = 0;
 			this.sizeObjective = szObjective;
 			walkableNeighbors = 0;
 		}
 
 		@Override
 		public void record(Coord c) {
-			if (dones == null)
-				dones = new HashSet<Coord>();
-			dones.add(c);
-			if (!startWithWater && isCardinallyAdjacentToWalkable(c))
+			size++;
+			if (!startWithWater && walkableNeighbors < 3 && isCardinallyAdjacentToWalkable(c.x, c.y))
 				walkableNeighbors++;
 		}
 
 		@Override
 		public boolean isMet() {
-			final int sz = dones == null ? 0 : dones.size();
-			if (sz < sizeObjective)
+			if (size < sizeObjective)
 				/* Size objective isn't met */
 				return false;
 			if (!startWithWater && walkableNeighbors < 3)
@@ -881,29 +1116,57 @@ public class DungeonGenerator {
 			return true;
 		}
 
-		private boolean isCardinallyAdjacentToWalkable(Coord c) {
-			for (Direction dir : Direction.CARDINALS) {
-				final Coord neighbor = c.translate(dir);
-				final DungeonSymbol sym = Arrays.getIfValid(dungeon.map, neighbor.x, neighbor.y);
-				if (sym == null)
-					continue;
-				switch (sym) {
-				case CHASM:
-				case DEEP_WATER:
-				case STAIR_DOWN:
-				case STAIR_UP:
-				case WALL:
-					continue;
-				case DOOR:
-				case FLOOR:
-				case GRASS:
-				case HIGH_GRASS:
-				case SHALLOW_WATER:
-					return true;
+		@Override
+		public int getSpanLimit() {
+			/* Once the size is reached, go cell by cell to find walkable neighbors */
+			return Math.max(1, sizeObjective - size);
+		}
+
+		@Override
+		public void recordSpan(int x, int yStart, int yEnd) {
+			size += (yEnd - yStart) + 1;
+			if (startWithWater || 3 <= walkableNeighbors)
+				/* Neighbors don't matter */
+				return;
+			/* Read each cell of the column once, sliding over the span */
+			boolean above = isWalkable(x, yStart - 1);
+			boolean cell = isWalkable(x, yStart);
+			for (int y = yStart; y <= yEnd; y++) {
+				final boolean below = isWalkable(x, y + 1);
+				if (above || below || isWalkable(x - 1, y) || isWalkable(x + 1, y)) {
+					walkableNeighbors++;
+					if (3 <= walkableNeighbors)
+						return;
 				}
-				throw Exceptions.newUnmatchedISE(sym);
+				above = cell;
+				cell = below;
 			}
-			return false;
+		}
+
+		private boolean isCardinallyAdjacentToWalkable(int x, int y) {
+			return isWalkable(x, y - 1) || isWalkable(x, y + 1) || isWalkable(x - 1, y) || isWalkable(x + 1, y);
+		}
+
+		/** @return Whether {@code (x, y)} is in the dungeon and walkable */
+		private boolean isWalkable(int x, int y) {
+			final DungeonSymbol sym = Arrays.getIfValid(dungeon.map, x, y);
+			if (sym == null)
+				return false;
+			switch (sym) {
+			case CHASM:
+			case DEEP_WATER:
+			case STAIR_DOWN:
+			case STAIR_UP:
+			case WALL:
+				return false;
+			case DOOR:
+			case FLOOR:
+			case GRASS:
+			case HIGH_GRASS:
+			case SHALLOW_WATER:
+				return true;
+			}
+			throw Exceptions.newUnmatchedISE(sym);
 		}
 
 	}
@@ -935,8 +1198,24 @@ public class DungeonGenerator {
 		/** A buffer of size {@link Dungeon#width} and{@link Dungeon#height} */
 		private boolean buf[][];
 
+		/**
+		 * Shared by components, see {@link #getWalkableComponents(boolean, boolean)}.
+		 * One instance per configuration, so that callers can keep them.
+		 */
+		private final WalkableComponents[] components = new WalkableComponents[4];
+
 		private /* @Nullable */ Set<Coord> waterFillStartCandidates;
 
+		/**
+		 * Marks of the cells between a room or corridor and another zone, i.e.
+		 * of the possible doors (see {@link #recordDoorCandidates(Zone)}),
+		 * {@code (x, y)} being at {@code x * height + y}. Null once consumed
+		 * by {@link #takeDoorCandidates()}.
+		 */
+		private /* @Nullable */ boolean[] doorCandidates;
+		/** The number of marked members of {@link #doorCandidates} */
+		private int nbDoorCandidates;
+
 		private int nextRoomIndex = 0;
 
 		/** Current stage is the stage whose value is -1 */
@@ -947,11 +1226,68 @@ public class DungeonGenerator {
 			this.dgen = dgen;
 			this.dungeon = dungeon;
 			this.cellToEncloser = new Zone[dungeon.width][dungeon.height];
+			this.doorCandidates = new boolean[dungeon.width * dungeon.height];
 			this.timings = new EnumMap<Stage, Long>(Stage.class);
 			this.timings.put(Stage.INIT, Long.valueOf(-1l));
 			this.watch = watch;
 		}
 
+		/**
+		 * A copy of {@code original}, whose dungeon is a copy of
+		 * {@code original}'s dungeon (see {@link Dungeon#snapshot()}).
+		 * Caches are not copied.
+		 */
+		private GenerationData(GenerationData original, DungeonGenerator dgen, /* @Nullable */ Stopwatch watch) {
+			this.dgen = dgen;
+			this.dungeon = original.dungeon.snapshot();
+			final int width = dungeon.width;
+			this.cellToEncloser = new Zone[width][];
+			for (int x = 0; x < width; x++) {
+				final Zone[] column = original.cellToEncloser[x].clone();
+				for (int y = 0; y < column.length; y++)
+					column[y] = getForked(original, column[y]);
+				cellToEncloser[x] = column;
+			}
+			for (Map.Entry<Zone, Integer> entry : original.zOrder.entrySet())
+				zOrder.put(getForked(original, entry.getKey()), entry.getValue());
+			if (original.waterFillStartCandidates != null)
+				this.waterFillStartCandidates = new LinkedHashSet<Coord>(original.waterFillStartCandidates);
+			if (original.doorCandidates != null)
+				this.doorCandidates = original.doorCandidates.clone();
+			this.nbDoorCandidates = original.nbDoorCandidates;
+			this.nextRoomIndex = original.nextRoomIndex;
+			this.timings = new EnumMap<Stage, Long>(Stage.class);
+			this.timings.put(Stage.INIT, Long.valueOf(-1l));
+			this.watch = watch;
+		}
+
+		/**
+		 * @param dgen
+		 *            The generator that will finish the fork.
+		 * @param watch
+		 * @return A copy of {@code this}, that can be mutated without mutating
+		 *         {@code this}.
+		 */
+		protected GenerationData fork(DungeonGenerator dgen, /* @Nullable */ Stopwatch watch) {
+			return new GenerationData(this, dgen, watch);
+		}
+
+		/**
+		 * @param original
+		 *            The data {@code this} is a fork of.
+		 * @param z
+		 *            A zone of {@code original}.
+		 * @return The zone of {@code this} that corresponds to {@code z}. This is
+		 *         {@code z} itself, except for water pools which are copied by
+		 *         {@link Dungeon#snapshot()}.
+		 */
+		private /* @Nullable */ Zone getForked(GenerationData original, /* @Nullable */ Zone z) {
+			if (z == null || !(z instanceof ListZone) || original.dungeon.waterPools == null)
+				return z;
+			final int idx = original.dungeon.waterPools.indexOf(z);
+			return idx < 0 ? z : dungeon.waterPools.get(idx);
+		}
+
 		protected void startStage(/* @Nullable */ Stage next) {
 			assert invariant();
 
@@ -982,6 +1318,72 @@ public class DungeonGenerator {
 				throw new IllegalStateException("Zone " + z + " is being recorded twice");
 		}
 
+		/**
+		 * Records the cells that are next to {@code z} and that are between
+		 * {@code z} and another zone, i.e. the cells that may become doors
+		 * between {@code z} and another zone. Cells are recorded by the last
+		 * of the two zones added, hence the index is complete.
+		 * 
+		 * @param z
+		 *            A room or corridor, whose cells are in
+		 *            {@link #cellToEncloser}.
+		 */
+		protected void recordDoorCandidates(Zone z) {
+			if (doorCandidates == null)
+				return;
+			final int width = dungeon.width;
+			final int height = dungeon.height;
+			for (Coord c : z) {
+				for (Direction dir : Direction.CARDINALS) {
+					final int x = c.x + dir.deltaX;
+					final int y = c.y + dir.deltaY;
+					/* The cell on the other side of (x, y) */
+					final int ox = x + dir.deltaX;
+					final int oy = y + dir.deltaY;
+					if (ox < 0 || width <= ox || oy < 0 || height <= oy)
+						continue;
+					/*
+					 * (x, y) may be in a zone now (deep water for example), that
+					 * will be removed before doors are punched.
+					 */
+					if (cellToEncloser[x][y] == z || cellToEncloser[ox][oy] == null)
+						continue;
+					final int idx = (x * height) + y;
+					if (doorCandidates[idx])
+						continue;
+					doorCandidates[idx] = true;
+					nbDoorCandidates++;
+				}
+			}
+		}
+
+		/**
+		 * Stops recording door candidates.
+		 * 
+		 * @return The cells recorded by {@link #recordDoorCandidates(Zone)}, by
+		 *         increasing {@code x} and then increasing {@code y}. Or null if
+		 *         this method was called already.
+		 */
+		protected /* @Nullable */ List<Coord> takeDoorCandidates() {
+			if (doorCandidates == null)
+				return null;
+			final int width = dungeon.width;
+			final int height = dungeon.height;
+			final List<Coord> result = new ArrayList<Coord>(nbDoorCandidates);
+			/* Marks are indexed by x and then y, hence no need to sort */
+			for (int x = 0; x < width; x++) {
+				final int offset = x * height;
+				for (int y = 0; y < height; y++) {
+					if (doorCandidates[offset + y])
+						result.add(Coord.get(x, y));
+				}
+			}
+			assert result.size() == nbDoorCandidates;
+			doorCandidates = null;
+			nbDoorCandidates = 0;
+			return result;
+		}
+
 		/**
 		 * Note that this method is designed to return {@code true} when {@code from} or
 		 * {@code to} is a wall accessible from a floor. That's because this method is
@@ -998,53 +1400,48 @@ public class DungeonGenerator {
 		protected boolean pathExists(Coord from, Coord to, boolean considerDiagonals, boolean unsafe) {
 			if (from.equals(to))
 				return true;
-			/* #buf acts as a Set<Coord> dones */
-			prepareBuffer();
-			/* Cells in 'todo' are cells reachable from 'from' */
-			final Queue<Coord> todo = new LinkedList<Coord>();
-			todo.add(from);
-			final Direction[] moves = considerDiagonals ? Direction.OUTWARDS : Direction.CARDINALS;
-			while (!todo.isEmpty()) {
-				final Coord next = todo.remove();
-				if (buf[next.x][next.y])
+			/* Labeling is done once, as long as the dungeon doesn't change */
+			return getWalkableComponents(considerDiagonals, unsafe).pathExists(from, to);
+		}
+
+		/**
+		 * @param considerDiagonals
+		 *            Whether to allow diagonal moves.
+		 * @param unsafe
+		 *            Whether to consider unsafe moves (through deep water).
+		 * @return The components of cells that are walkable according to the
+		 *         parameters, shared by the callers of this method that use the
+		 *         same parameters.
+		 */
+		protected WalkableComponents getWalkableComponents(boolean considerDiagonals, boolean unsafe) {
+			final int idx = (considerDiagonals ? 2 : 0) + (unsafe ? 1 : 0);
+			if (components[idx] != null)
+				return components[idx];
+			final EnumSet<DungeonSymbol> walkables = EnumSet.noneOf(DungeonSymbol.class);
+			for (DungeonSymbol sym : DungeonSymbol.values()) {
+				switch (sym) {
+				case CHASM:
+				case STAIR_DOWN:
+				case STAIR_UP:
+				case WALL:
+					continue;
+				case DEEP_WATER:
+					if (unsafe)
+						walkables.add(sym);
+					continue;
+				case DOOR:
+				case FLOOR:
+				case GRASS:
+				case HIGH_GRASS:
+				case SHALLOW_WATER:
+					walkables.add(sym);
 					continue;
-				assert !to.equals(next);
-				for (Direction dir : moves) {
-					final Coord neighbor = next.translate(dir);
-					if (buf[neighbor.x][neighbor.y]) {
-						assert !to.equals(neighbor);
-						continue;
-					}
-					if (to.equals(neighbor))
-						return true;
-					final DungeonSymbol sym = dungeon.getSymbol(neighbor);
-					if (sym == null)
-						continue;
-					switch (sym) {
-					case CHASM:
-					case STAIR_DOWN:
-					case STAIR_UP:
-					case WALL:
-						continue;
-					case DEEP_WATER:
-						if (!unsafe)
-							continue;
-						//$FALL-THROUGH$
-					case DOOR:
-					case FLOOR:
-					case GRASS:
-					case HIGH_GRASS:
-					case SHALLOW_WATER:
-						todo.add(neighbor);
-						continue;
-					}
-					throw Exceptions.newUnmatchedISE(sym);
 				}
-				assert !buf[next.x][next.y];
-				// Record it was done
-				buf[next.x][next.y] = true;
+				throw Exceptions.newUnmatchedISE(sym);
 			}
-			return false;
+			components[idx] = new WalkableComponents(dungeon).setWalkables(walkables)
+					.setConsiderDiagonals(considerDiagonals);
+			return components[idx];
 		}
 
 		protected List<Zone> zonesConnectedTo(boolean considerRooms, boolean considerCorridors, List<Coord> starts) {
@@ -1228,11 +1625,71 @@ public class DungeonGenerator {
 	}
 
 	/**
-	 * The stages of generation. Used for logging performances.
+	 * The state of the generation of a dungeon, after a given stage. Obtained with
+	 * {@link DungeonGenerator#generateUntil(Stage)} and finished with
+	 * {@link DungeonGenerator#generate(Checkpoint)}. Instances are never mutated.
+	 * 
+	 * @author smelC
+	 */
+	public static final class Checkpoint {
+
+		protected final Stage stage;
+		/** The value of {@link DungeonGenerator#startWithWater} when created */
+		protected final boolean startWithWater;
+		protected final GenerationData gdata;
+		protected final Map<Zone, IRoomGenerator> roomToGenerator;
+		protected final Map<IRoomGenerator, RoomGeneratorStats> rgStats;
+
+		protected Checkpoint(Stage stage, boolean startWithWater, GenerationData gdata,
+				Map<Zone, IRoomGenerator> roomToGenerator, Map<IRoomGenerator, RoomGeneratorStats> rgStats) {
+			this.stage = stage;
+			this.startWithWater = startWithWater;
+			this.gdata = gdata;
+			this.roomToGenerator = new HashMap<Zone, IRoomGenerator>(roomToGenerator);
+			this.rgStats = new LinkedHashMap<IRoomGenerator, RoomGeneratorStats>();
+			for (Map.Entry<IRoomGenerator, RoomGeneratorStats> entry : rgStats.entrySet())
+				this.rgStats.put(entry.getKey(), new RoomGeneratorStats(entry.getValue()));
+		}
+
+		/** @return The last stage done. */
+		public Stage getStage() {
+			return stage;
+		}
+
+		/**
+		 * @return Whether water was done before rooms, in which case it is part of
+		 *         {@link #getDungeon()}. Checkpoints can only be finished by
+		 *         generators with the same setting.
+		 */
+		public boolean getStartWithWater() {
+			return startWithWater;
+		}
+
+		/**
+		 * @return The dungeon after {@link #getStage()}. Do not modify it, use
+		 *         {@link DungeonGenerator#generate(Checkpoint)} to finish it.
+		 */
+		public Dungeon getDungeon() {
+			return gdata.dungeon;
+		}
+
+		/**
+		 * @return The room or corridor that contains a cell of
+		 *         {@link #getDungeon()}, as recorded by generation.
+		 */
+		public ICellToZone getCellToZone() {
+			return gdata;
+		}
+
+	}
+
+	/**
+	 * The stages of generation. Used for logging performances and for
+	 * {@link Checkpoint checkpoints}.
 	 * 
 	 * @author smelC
 	 */
-	private static enum Stage {
+	public static enum Stage {
 		/* In the order in which they are executed */
 		INIT, WATER_START, ROOMS, PASSAGES_IN_ALMOST_ADJACENT_ROOMS, CORRIDORS, STAIRS, ENSURE_DENSITY, WATER, GRASS
 	}
@@ -1,7 +1,6 @@
 package com.hgames.rhogue.generation.map.dungeon;
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.hgames.rhogue.grid.Grids;
@@ -24,34 +23,13 @@ class DungeonGeneratorHelper {
 	 *            An optional callback called on cells removed.
 	 */
 	static void replaceLonelies(ListZone z, /* @Nullable */ CellDoer doer) {
-		final List<Coord> all = z.getState();
-		while (true) {
-			final int effect = replaceLonelies(all, doer);
-			if (effect == 0)
-				break;
+		final List<Coord> removeds = doer == null ? null : new ArrayList<Coord>();
+		Grids.removeLonelies(z.getState(), removeds);
+		if (removeds != null) {
+			final int sz = removeds.size();
+			for (int i = 0; i < sz; i++)
+				doer.doOnCell(removeds.get(i));
 		}
 	}
 
-	/**
-	 * Removes lonelies from {@code coords}.
-	 * 
-	 * @param doer
-	 *            An optional callback called on cells removed.
-	 * @return The number of cells removed
-	 */
-	private static int replaceLonelies(Collection<? extends Coord> coords, /* @Nullable */ CellDoer doer) {
-		final Iterator<? extends Coord> it = coords.iterator();
-		int result = 0;
-		while (it.hasNext()) {
-			final Coord c = it.next();
-			if (Grids.borderness(coords, c) >= 7) {
-				it.remove();
-				result++;
-				if (doer != null)
-					doer.doOnCell(c);
-			}
-		}
-		return result;
-	}
-
 }
@@ -73,7 +73,9 @@ public class Dungeons {
 	 *         {@code intermediates} zones.
 	 */
 	public static boolean areConnected(Dungeon dungeon, Zone z0, Zone z1, int intermediates) {
-		return areConnected(dungeon, z0, z1, intermediates, new HashSet<Zone>());
+		if (dungeon.connectionGraph == null)
+			dungeon.connectionGraph = ConnectionGraph.build(dungeon);
+		return dungeon.connectionGraph.areConnected(z0, z1, intermediates);
 	}
 
 	/**
@@ -200,6 +202,9 @@ public class Dungeons {
 	 *         none.
 	 */
 	public static /* @Nullable */ Zone findRoomOrCorridorContaining(Dungeon dungeon, int x, int y) {
+		final Zone[][] coordToZone = dungeon.coordToZone;
+		if (coordToZone != null)
+			return dungeon.isValid(x, y) ? coordToZone[x][y] : null;
 		Zone result = findZoneContaining(dungeon.rooms, dungeon.boundingBoxes, x, y, true);
 		if (result != null)
 			return result;
@@ -271,6 +276,26 @@ public class Dungeons {
 		return result;
 	}
 
+	/**
+	 * This method doesn't allocate, except the first time it is called on
+	 * {@code dungeon}.
+	 * 
+	 * @param dungeon
+	 * @param x
+	 * @param y
+	 *            A valid cell.
+	 * @param considerDiagonals
+	 *            Whether to consider diagonal neighbors.
+	 * @return The mask of the symbols of the neighbors of {@code (x, y)}, to be
+	 *         queried with {@link NeighborMasks#contains(int, DungeonSymbol)}.
+	 *         Out of bounds neighbors are in the mask, as null symbols.
+	 */
+	public static int getNeighborMask(Dungeon dungeon, int x, int y, boolean considerDiagonals) {
+		if (dungeon.neighborMasks == null)
+			dungeon.neighborMasks = NeighborMasks.build(dungeon.map);
+		return NeighborMasks.get(dungeon.neighborMasks[(x * dungeon.height) + y], considerDiagonals);
+	}
+
 	/**
 	 * @param dungeon
 	 * @param x
@@ -407,6 +432,8 @@ public class Dungeons {
 	 * @return true if {@code c} has {@code sym} as neighbor.
 	 */
 	public static boolean hasNeighbor(Dungeon dungeon, Coord c, DungeonSymbol sym, boolean considerDiagonals) {
+		if (dungeon.isValid(c))
+			return NeighborMasks.contains(getNeighborMask(dungeon, c.x, c.y, considerDiagonals), sym);
 		final Direction[] dirs = considerDiagonals ? Direction.OUTWARDS : Direction.CARDINALS;
 		for (Direction dir : dirs) {
 			if (sym == dungeon.getSymbol(c.translate(dir)))
@@ -528,6 +555,24 @@ public class Dungeons {
 	 *         symols are all in {@code allowed}.
 	 */
 	public static boolean isSurroundedBy(Dungeon dungeon, Zone z, EnumSet<DungeonSymbol> allowed) {
+		{
+			/*
+			 * If z's cells are all allowed, z is surrounded iff its cells'
+			 * neighbors are all allowed.
+			 */
+			final int allowedMask = NeighborMasks.toMask(allowed);
+			final Iterator<Coord> it = z.iterator();
+			int neighbors = 0;
+			boolean allAllowed = true;
+			while (allAllowed && it.hasNext()) {
+				final Coord c = it.next();
+				allAllowed = NeighborMasks.contains(allowedMask, dungeon.getSymbol(c));
+				if (allAllowed)
+					neighbors |= getNeighborMask(dungeon, c.x, c.y, true);
+			}
+			if (allAllowed)
+				return (neighbors & ~allowedMask) == 0;
+		}
 		final List<Coord> extBorder = z.getExternalBorder();
 		final int sz = extBorder.size();
 		for (int i = 0; i < sz; i++) {
@@ -560,24 +605,6 @@ public class Dungeons {
 		return false;
 	}
 
-	private static boolean areConnected(Dungeon dungeon, Zone z0, Zone z1, int intermediates, Set<Zone> z0s) {
-		if (intermediates < 1)
-			return false;
-		final List<Zone> list = dungeon.connections.get(z0);
-		if (list == null)
-			return false;
-		final int nb = list.size();
-		for (int i = 0; i < nb; i++) {
-			final Zone out = list.get(i);
-			if (out.equals(z1))
-				return true;
-			final boolean added = z0s.add(out);
-			if (added && areConnected(dungeon, out, z1, intermediates - 1, z0s))
-				return true;
-		}
-		return false;
-	}
-
 	private static /* @Nullable */ List<Zone> findIntersectingZones(Zone z, List<? extends Zone> others,
 			List<Zone> buf) {
 		List<Zone> result = buf;
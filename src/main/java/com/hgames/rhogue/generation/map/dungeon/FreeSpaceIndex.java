@@ -0,0 +1,195 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.hgames.rhogue.zone.Rectangle;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * A summed-area table of the cells of a {@link Dungeon} that are not free,
+ * i.e. whose symbol doesn't belong to a given set (for example the symbols
+ * that rooms can overwrite). It answers whether a rectangle is free in
+ * constant time and enumerates the maximal free rectangles.
+ * 
+ * <p>
+ * The table is rebuilt lazily when the {@link Dungeon#getVersion() version}
+ * of the dungeon changed, so that an instance can be kept while rooms are
+ * punched.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class FreeSpaceIndex {
+
+	protected final Dungeon dungeon;
+	/** The symbols of free cells */
+	protected final EnumSet<DungeonSymbol> free;
+	protected final int width;
+	protected final int height;
+
+	/**
+	 * The number of cells that aren't free in [0, x) * [0, y), at
+	 * {@code x * (height + 1) + y}.
+	 */
+	private final int[] sums;
+	/** The version of {@link #dungeon} when {@link #sums} was built, or -1 */
+	private int version = -1;
+
+	/* Buffers of getMaximalRectangles */
+	private final int[] heights;
+	private final int[] stackX;
+	private final int[] stackH;
+
+	/**
+	 * @param dungeon
+	 * @param free
+	 *            The symbols of free cells. Cells without symbol are not free.
+	 */
+	public FreeSpaceIndex(Dungeon dungeon, EnumSet<DungeonSymbol> free) {
+		this.dungeon = dungeon;
+		this.free = free;
+		this.width = dungeon.width;
+		this.height = dungeon.height;
+		this.sums = new int[(width + 1) * (height + 1)];
+		this.heights = new int[width];
+		this.stackX = new int[width + 1];
+		this.stackH = new int[width + 1];
+	}
+
+	/** @return The symbols of free cells. Do not modify it. */
+	public EnumSet<DungeonSymbol> getFreeSymbols() {
+		return free;
+	}
+
+	/**
+	 * @param x
+	 *            The smallest x of the rectangle.
+	 * @param y
+	 *            The smallest y of the rectangle.
+	 * @param w
+	 *            The rectangle's width.
+	 * @param h
+	 *            The rectangle's height.
+	 * @return The number of cells of the rectangle that aren't free, cells out
+	 *         of the dungeon being not free.
+	 */
+	public int countBlocked(int x, int y, int w, int h) {
+		if (w <= 0 || h <= 0)
+			return 0;
+		if (version != dungeon.getVersion())
+			build();
+		final int x0 = Math.max(0, x);
+		final int y0 = Math.max(0, y);
+		final int x1 = Math.min(width, x + w);
+		final int y1 = Math.min(height, y + h);
+		final int outside = (w * h) - (Math.max(0, x1 - x0) * Math.max(0, y1 - y0));
+		if (x1 <= x0 || y1 <= y0)
+			return outside;
+		final int stride = height + 1;
+		return outside + sums[(x1 * stride) + y1] - sums[(x0 * stride) + y1] - sums[(x1 * stride) + y0]
+				+ sums[(x0 * stride) + y0];
+	}
+
+	/**
+	 * @param x
+	 *            The smallest x of the rectangle.
+	 * @param y
+	 *            The smallest y of the rectangle.
+	 * @param w
+	 *            The rectangle's width.
+	 * @param h
+	 *            The rectangle's height.
+	 * @return Whether the rectangle is in the dungeon and all its cells are
+	 *         free.
+	 */
+	public boolean isFree(int x, int y, int w, int h) {
+		return countBlocked(x, y, w, h) == 0;
+	}
+
+	/**
+	 * @param r
+	 * @return Whether {@code r} is in the dungeon and all its cells are free.
+	 *         This is {@link Dungeons#isOnly(Dungeon, java.util.Iterator, EnumSet, boolean)}
+	 *         on the cells of {@code r}, in constant time.
+	 */
+	public boolean isFree(Rectangle r) {
+		final Coord bl = r.getBottomLeft();
+		/* + 1, because in SquidLib coordinates the bottom is the largest y */
+		return isFree(bl.x, (bl.y - r.getHeight()) + 1, r.getWidth(), r.getHeight());
+	}
+
+	/**
+	 * @param minWidth
+	 *            The minimum width of rectangles returned.
+	 * @param minHeight
+	 *            The minimum height of rectangles returned.
+	 * @return The free rectangles that are maximal (cannot be extended in any
+	 *         direction without including a cell that isn't free) and that are
+	 *         large enough, by increasing y of their bottom.
+	 */
+	public List<Rectangle> getMaximalRectangles(int minWidth, int minHeight) {
+		if (version != dungeon.getVersion())
+			build();
+		final List<Rectangle> result = new ArrayList<Rectangle>();
+		final int stride = height + 1;
+		for (int x = 0; x < width; x++)
+			heights[x] = 0;
+		for (int y = 0; y < height; y++) {
+			/* The number of consecutive free cells, upward from row y */
+			for (int x = 0; x < width; x++) {
+				final boolean blocked = sums[((x + 1) * stride) + y + 1] - sums[(x * stride) + y + 1]
+						- sums[((x + 1) * stride) + y] + sums[(x * stride) + y] != 0;
+				heights[x] = blocked ? 0 : heights[x] + 1;
+			}
+			/*
+			 * The largest rectangles with bottom y, with a stack of increasing
+			 * heights. Column 'width' is a sentinel of height 0.
+			 */
+			int size = 0;
+			for (int x = 0; x <= width; x++) {
+				final int h = x < width ? heights[x] : 0;
+				int start = x;
+				while (0 < size && h <= stackH[size - 1]) {
+					size--;
+					final int sx = stackX[size];
+					final int sh = stackH[size];
+					start = sx;
+					/*
+					 * If sh == h, the rectangle continues on column x. Otherwise it cannot
+					 * be extended to the left (sx is where it starts), to the right (h <
+					 * sh) nor upward (sh is the smallest height of its columns). Check
+					 * downward.
+					 */
+					if (h < sh && minWidth <= x - sx && minHeight <= sh
+							&& (y == height - 1 || countBlocked(sx, y + 1, x - sx, 1) != 0))
+						result.add(new Rectangle.Impl(Coord.get(sx, y), x - sx, sh));
+				}
+				if (0 < h) {
+					stackX[size] = start;
+					stackH[size] = h;
+					size++;
+				}
+			}
+		}
+		return result;
+	}
+
+	private void build() {
+		final int stride = height + 1;
+		for (int x = 0; x < width; x++) {
+			final DungeonSymbol[] column = dungeon.map[x];
+			int inColumn = 0;
+			for (int y = 0; y < height; y++) {
+				final DungeonSymbol sym = column[y];
+				if (sym == null || !free.contains(sym))
+					inColumn++;
+				sums[((x + 1) * stride) + y + 1] = sums[(x * stride) + y + 1] + inColumn;
+			}
+		}
+		version = dungeon.getVersion();
+	}
+
+}
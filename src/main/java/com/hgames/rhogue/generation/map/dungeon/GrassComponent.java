@@ -2,7 +2,6 @@ package com.hgames.rhogue.generation.map.dungeon;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 
 import com.hgames.lib.log.ILogger;
@@ -10,7 +9,7 @@ import com.hgames.rhogue.Tags;
 import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.GenerationData;
 import com.hgames.rhogue.generation.map.dungeon.flood.DungeonGrassFloodFill;
 import com.hgames.rhogue.generation.map.dungeon.flood.FloodFill;
-import com.hgames.rhogue.generation.map.dungeon.flood.IFloodObjective;
+import com.hgames.rhogue.generation.map.dungeon.flood.IFloodSpanObjective;
 import com.hgames.rhogue.zone.ListZone;
 import com.hgames.rhogue.zone.Zone;
 
@@ -51,7 +50,8 @@ public class GrassComponent implements GeneratorComponent {
 		final List<Zone> rooms = dungeon.getRooms();
 		int frustration = 0;
 		final FloodFill fill = new DungeonGrassFloodFill(dungeon.map);
-		final LinkedHashSet<Coord> buf = new LinkedHashSet<Coord>(patchObjective);
+		/* The cells of a patch, as indexes of 'fill' */
+		final int[] buf = new int[dungeon.size()];
 		nextPool: while (patches < gen.grassPatches && cells < cObjective && frustration < 8) {
 			final Zone src = rng.getRandomElement(rooms);
 			if (src.size() == 1) {
@@ -61,7 +61,7 @@ public class GrassComponent implements GeneratorComponent {
 			}
 			int innerF = 0; /* Inner loop frustration */
 			final List<Coord> all = src.getAll(false);
-			final IFloodObjective objective = new IFloodObjective() {
+			final IFloodSpanObjective objective = new IFloodSpanObjective() {
 				int dones = 0;
 				/*
 				 * A slightly moving objective every roll, to avoid all patches of grass to be
@@ -78,27 +78,38 @@ public class GrassComponent implements GeneratorComponent {
 				public boolean isMet() {
 					return szo <= dones;
 				}
+
+				@Override
+				public int getSpanLimit() {
+					return szo - dones;
+				}
+
+				@Override
+				public void recordSpan(int x, int yStart, int yEnd) {
+					dones += yEnd - yStart + 1;
+				}
 			};
 			while (innerF < 4) {
 				final Coord start = rng.getRandomElement(all);
 				assert dungeon.isValid(start);
-				assert buf.isEmpty();
-				fill.flood(rng, start.x, start.y, objective, false, buf);
-				if (buf.isEmpty()) {
+				final int sz = gen.scanlineFloods ? fill.floodSpans(rng, start.x, start.y, objective, false, buf)
+						: fill.flood(rng, start.x, start.y, objective, false, buf);
+				if (sz == 0) {
 					/* Failure */
 					innerF++;
 				} else {
 					/* Success. Make the variant move. */
 					patches++;
-					cells += buf.size();
-					/* Not using SetZone, as we would need to copy 'buf' anyway */
-					builder.addGrassPool(new ListZone(new ArrayList<Coord>(buf)), EnumSet.of(DungeonSymbol.FLOOR));
+					cells += sz;
+					final List<Coord> patch = new ArrayList<Coord>(sz);
+					for (int i = 0; i < sz; i++)
+						patch.add(fill.toCoord(buf[i]));
+					builder.addGrassPool(new ListZone(patch), EnumSet.of(DungeonSymbol.FLOOR));
 					/*
 					 * Should be done after 'addGrassPool' as it checks that symbols turned into
 					 * grass are valid.
 					 */
-					builder.setSymbols(buf.iterator(), DungeonSymbol.GRASS);
-					buf.clear();
+					builder.setSymbols(patch.iterator(), DungeonSymbol.GRASS);
 					gen.draw(dungeon);
 					continue nextPool;
 				}
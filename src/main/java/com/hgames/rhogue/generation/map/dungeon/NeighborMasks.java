@@ -0,0 +1,154 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import java.util.EnumSet;
+
+/**
+ * A grid of bitmasks telling, for each cell of a {@link Dungeon}, which
+ * symbols appear among its neighbors. The mask of a symbol is
+ * {@code 1 << sym.ordinal()} and the mask of null symbols and out of bounds
+ * cells is {@link #NULL}. Cardinal neighbors are in the lower 16 bits of a
+ * cell's entry, diagonal neighbors in the upper 16 bits.
+ * 
+ * <p>
+ * The grid is built lazily by {@link Dungeons#getNeighborMask(Dungeon, int, int, boolean)}
+ * and then kept up to date by {@link DungeonBuilder}: a change of symbol
+ * updates the entries of the 8 neighbors of the changed cell. Like
+ * {@link Dungeon#getVersion()}, mutations done directly on
+ * {@link Dungeon#getMap()} are not tracked.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class NeighborMasks {
+
+	/** The mask of null symbols and of out of bounds cells */
+	public static final int NULL = 1 << 15;
+
+	private static final int CARDINALS = 0xFFFF;
+
+	/* Neighbors of a cell, in the order of (DX[i], DY[i]) */
+	private static final int[] DX = { 0, 1, 0, -1, -1, 1, 1, -1 };
+	private static final int[] DY = { 1, 0, -1, 0, 1, 1, -1, -1 };
+
+	/**
+	 * @param mask
+	 *            A mask, as returned by
+	 *            {@link Dungeons#getNeighborMask(Dungeon, int, int, boolean)}.
+	 * @param sym
+	 * @return Whether {@code sym} is in {@code mask}.
+	 */
+	public static boolean contains(int mask, /* @Nullable */ DungeonSymbol sym) {
+		return (mask & toMask(sym)) != 0;
+	}
+
+	/**
+	 * @param sym
+	 * @return The mask of {@code sym}.
+	 */
+	public static int toMask(/* @Nullable */ DungeonSymbol sym) {
+		return sym == null ? NULL : 1 << sym.ordinal();
+	}
+
+	/**
+	 * @param syms
+	 * @return The mask of the members of {@code syms}.
+	 */
+	public static int toMask(EnumSet<DungeonSymbol> syms) {
+		int result = 0;
+		for (DungeonSymbol sym : syms)
+			result |= toMask(sym);
+		return result;
+	}
+
+	/**
+	 * @param entry
+	 *            An entry of the grid.
+	 * @param considerDiagonals
+	 * @return The mask of the neighbors recorded in {@code entry}.
+	 */
+	static int get(int entry, boolean considerDiagonals) {
+		final int cardinals = entry & CARDINALS;
+		return considerDiagonals ? cardinals | (entry >>> 16) : cardinals;
+	}
+
+	/**
+	 * @param map
+	 * @return The grid of {@code map}, where the entry of (x, y) is at
+	 *         {@code x * height + y}.
+	 */
+	static int[] build(DungeonSymbol[][] map) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		final int[] result = new int[width * height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int entry = 0;
+				for (int i = 0; i < DX.length; i++) {
+					final int shift = i < 4 ? 0 : 16;
+					entry |= toMask(getSymbol(map, width, height, x + DX[i], y + DY[i])) << shift;
+				}
+				result[(x * height) + y] = entry;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Updates {@code grid} after the symbol of {@code (x, y)} changed from
+	 * {@code old} to {@code map[x][y]}.
+	 * 
+	 * @param grid
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param old
+	 *            The previous symbol of {@code (x, y)}.
+	 */
+	static void update(int[] grid, DungeonSymbol[][] map, int x, int y, /* @Nullable */ DungeonSymbol old) {
+		final DungeonSymbol sym = map[x][y];
+		if (sym == old)
+			return;
+		final int width = map.length;
+		final int height = map[0].length;
+		final int oldMask = toMask(old);
+		final int newMask = toMask(sym);
+		for (int i = 0; i < DX.length; i++) {
+			final int nx = x + DX[i];
+			final int ny = y + DY[i];
+			if (nx < 0 || width <= nx || ny < 0 || height <= ny)
+				continue;
+			/* (x, y) is a neighbor of (nx, ny) in the direction opposite to i */
+			final boolean cardinal = i < 4;
+			final int shift = cardinal ? 0 : 16;
+			final int idx = (nx * height) + ny;
+			int entry = grid[idx] | (newMask << shift);
+			if (!hasOtherNeighbor(map, width, height, nx, ny, x, y, cardinal, old))
+				entry &= ~(oldMask << shift);
+			grid[idx] = entry;
+		}
+	}
+
+	/**
+	 * @return Whether a neighbor of {@code (x, y)} of the given kind, other
+	 *         than {@code (ox, oy)}, has symbol {@code sym}.
+	 */
+	private static boolean hasOtherNeighbor(DungeonSymbol[][] map, int width, int height, int x, int y, int ox,
+			int oy, boolean cardinal, /* @Nullable */ DungeonSymbol sym) {
+		final int start = cardinal ? 0 : 4;
+		for (int i = start; i < start + 4; i++) {
+			final int nx = x + DX[i];
+			final int ny = y + DY[i];
+			if (nx == ox && ny == oy)
+				continue;
+			if (getSymbol(map, width, height, nx, ny) == sym)
+				return true;
+		}
+		return false;
+	}
+
+	private static /* @Nullable */ DungeonSymbol getSymbol(DungeonSymbol[][] map, int width, int height, int x,
+			int y) {
+		return x < 0 || width <= x || y < 0 || height <= y ? null : map[x][y];
+	}
+
+}
@@ -1,6 +1,6 @@
 package com.hgames.rhogue.generation.map.dungeon;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,29 +32,24 @@ public class PassagesComponent extends SkeletalComponent {
 		final int height = gen.height;
 		final Dungeon dungeon = gdata.dungeon;
 		/* Keys in this map are ordered according to GenerationData.zOrder */
-		/* The Lists do not contain doublons */
-		final Map<Pair<Zone, Zone>, List<Coord>> connectedsToCandidates = new HashMap<Pair<Zone, Zone>, List<Coord>>(
+		/*
+		 * The Lists do not contain doublons. The map is linked, so that doors are
+		 * punched in the order of candidates (zones are hashed by identity).
+		 */
+		final Map<Pair<Zone, Zone>, List<Coord>> connectedsToCandidates = new LinkedHashMap<Pair<Zone, Zone>, List<Coord>>(
 				16);
 		final IDungeonGeneratorListener listener = gen.listener;
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				final Coord doorCandidate = Coord.get(x, y);
-				if (!isDoorCandidate(gdata, dungeon, doorCandidate, ZONE_PAIR_BUF))
-					continue;
-				final Zone z0 = ZONE_PAIR_BUF[0];
-				assert z0 != null;
-				final Zone z1 = ZONE_PAIR_BUF[1];
-				assert z1 != null;
-				if (z0 == z1)
-					/* Can happen with weird zones (U shape) */
-					continue;
-				if (!acceptsOneMoreConnection(gen, dungeon, z0) || !acceptsOneMoreConnection(gen, dungeon, z1))
-					/* Connection is disallowed */
-					continue;
-				Multimaps.addToArrayListMultimap(connectedsToCandidates, orderedPair(gdata, z0, z1), doorCandidate);
-				assert Dungeons.findRoomOrCorridorContaining(dungeon, x, y) == null : "Candidate for door: " + doorCandidate
-						+ " should not be in a zone";
+		/* Candidates recorded when rooms were added, in the order of the map's scan */
+		final List<Coord> recorded = gdata.takeDoorCandidates();
+		if (recorded == null) {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++)
+					addCandidate(gen, gdata, Coord.get(x, y), connectedsToCandidates);
 			}
+		} else {
+			final int nbr = recorded.size();
+			for (int i = 0; i < nbr; i++)
+				addCandidate(gen, gdata, recorded.get(i), connectedsToCandidates);
 		}
 		/*
 		 * Look for the door closest to the mean of the zones' centers. That's the ideal
@@ -102,6 +97,30 @@ public class PassagesComponent extends SkeletalComponent {
 		return true;
 	}
 
+	/**
+	 * Records {@code doorCandidate} in {@code connectedsToCandidates} if it is
+	 * a door candidate between two zones that accept one more connection.
+	 */
+	private void addCandidate(DungeonGenerator gen, GenerationData gdata, Coord doorCandidate,
+			Map<Pair<Zone, Zone>, List<Coord>> connectedsToCandidates) {
+		final Dungeon dungeon = gdata.dungeon;
+		if (!isDoorCandidate(gdata, dungeon, doorCandidate, ZONE_PAIR_BUF))
+			return;
+		final Zone z0 = ZONE_PAIR_BUF[0];
+		assert z0 != null;
+		final Zone z1 = ZONE_PAIR_BUF[1];
+		assert z1 != null;
+		if (z0 == z1)
+			/* Can happen with weird zones (U shape) */
+			return;
+		if (!acceptsOneMoreConnection(gen, dungeon, z0) || !acceptsOneMoreConnection(gen, dungeon, z1))
+			/* Connection is disallowed */
+			return;
+		Multimaps.addToArrayListMultimap(connectedsToCandidates, orderedPair(gdata, z0, z1), doorCandidate);
+		assert Dungeons.findRoomOrCorridorContaining(dungeon, doorCandidate.x,
+				doorCandidate.y) == null : "Candidate for door: " + doorCandidate + " should not be in a zone";
+	}
+
 	/** @return Whether a door should be created or a wall should be carved */
 	private boolean doorOrFloor(DungeonGenerator gen, Dungeon dungeon, Zone z0, Zone z1) {
 		if (forceDoors(gen, dungeon, z0) || forceDoors(gen, dungeon, z1))
@@ -3,9 +3,11 @@ package com.hgames.rhogue.generation.map.dungeon;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.hgames.lib.collection.pair.MutablePair;
@@ -47,6 +49,18 @@ public class RoomComponent implements GeneratorComponent {
 	 */
 	private List<IRoomGenerator> roomGenerators;
 
+	/**
+	 * The free space w.r.t. the symbols that rooms can currently overwrite. See
+	 * {@link #getFreeSpace(EnumSet)}.
+	 */
+	private /* @Nullable */ FreeSpaceIndex freeSpace;
+
+	/**
+	 * The number of times the weight of room generators was halved, because
+	 * they exhausted {@link DungeonGenerator#roomGeneratorFailureBudget}.
+	 */
+	private final Map<IRoomGenerator, Integer> halvings = new HashMap<IRoomGenerator, Integer>();
+
 	private static final MutablePair<IRoomGenerator, Zone> RGZ = MutablePair.createEmpty();
 
 	RoomComponent(DungeonGenerator gen, GenerationData gdata) {
@@ -126,7 +140,8 @@ public class RoomComponent implements GeneratorComponent {
 				}
 			};
 			while (true) {
-				final boolean done = generateRoom(overwritten);
+				final boolean done = generateRoom(overwritten)
+						|| (gen.fillFreeSpace && generateRoomInFreeSpace(overwritten));
 				if (!done)
 					/* Cannot place any more room */
 					break;
@@ -178,6 +193,7 @@ public class RoomComponent implements GeneratorComponent {
 		final Dungeon dungeon = gdata.dungeon;
 		final IDungeonGeneratorListener listener = gen.listener;
 		final ProbabilityTable<IRoomGenerator> rgTable = getRoomGeneratorTable(overwritten);
+		final FreeSpaceIndex free = getFreeSpace(overwritten);
 		int frustration = 0;
 		/*
 		 * This bound is quite important. Increasing it makes dungeon generation slower,
@@ -230,8 +246,7 @@ public class RoomComponent implements GeneratorComponent {
 				 * .extend() to avoid generating adjacent rooms. This is a smart trick (as
 				 * opposed to extending the rooms already created).
 				 */
-				if (!Dungeons.isOnly(dungeon, Rectangle.Utils.cells(new Rectangle.Impl(blCandidate, mw, mh).extend()),
-						overwritten, true))
+				if (!free.isFree(new Rectangle.Impl(blCandidate, mw, mh).extend()))
 					continue;
 				assert dungeon.isValid(brCandidate);
 				assert !Dungeons.isOnEdge(dungeon, brCandidate);
@@ -256,6 +271,65 @@ public class RoomComponent implements GeneratorComponent {
 		return false;
 	}
 
+	/**
+	 * Tries to place a room in one of the maximal free rectangles, in a random
+	 * order. Contrary to {@link #generateRoom(EnumSet)}, this only fails if no
+	 * room generator fits in the remaining space.
+	 * 
+	 * @param overwritten
+	 *            The symbols that the rooms can overwrite.
+	 * @return Whether a room could be generated.
+	 */
+	private boolean generateRoomInFreeSpace(EnumSet<DungeonSymbol> overwritten) {
+		final Dungeon dungeon = gdata.dungeon;
+		final IRNG rng = gen.rng;
+		final int minSide = gen.allowWidthOrHeightOneRooms ? 1 : 2;
+		/* +2 to account for the surrounding walls */
+		final List<Rectangle> rects = getFreeSpace(overwritten).getMaximalRectangles(minSide + 2, minSide + 2);
+		if (rects.isEmpty())
+			return false;
+		final ProbabilityTable<IRoomGenerator> rgTable = getRoomGeneratorTable(overwritten);
+		for (int nbRects = rects.size(); 0 < nbRects; nbRects--) {
+			/* Pick a random rectangle among those not tried yet */
+			final int idx = rng.nextInt(nbRects);
+			final Rectangle rect = rects.get(idx);
+			rects.set(idx, rects.get(nbRects - 1));
+			final Coord rectBL = rect.getBottomLeft();
+			/* The top left cell of the room, within the walls and not on the edge */
+			final int tlx = rectBL.x + 1;
+			final int tly = Math.max(1, rectBL.y - rect.getHeight() + 2);
+			/* The same bounds as in generateRoom, to avoid the room to be on the edge */
+			final int mw = Math.min(Math.min(getMaxRoomSideSize(true, false), rect.getWidth() - 2),
+					gen.width - (tlx + 2));
+			final int mh = Math.min(Math.min(getMaxRoomSideSize(false, false), rectBL.y - tly),
+					gen.height - (tly + 2));
+			if (mw < minSide || mh < minSide)
+				continue;
+			final Coord blCandidate = Coord.get(tlx, tly + mh - 1);
+			assert getFreeSpace(overwritten).isFree(new Rectangle.Impl(blCandidate, mw, mh).extend());
+			if (!generateRoomAt(rgTable, blCandidate, mw, mh))
+				continue;
+			final IRoomGenerator rg = RGZ.getFst();
+			final Zone zone = RGZ.getSnd();
+			addZone(rg, zone, new Rectangle.Impl(blCandidate, mw, mh), ZoneType.ROOM, DungeonSymbol.FLOOR);
+			if (gen.listener != null)
+				gen.listener.placedRoom(dungeon, rg, zone);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param overwritten
+	 * @return The free space w.r.t. {@code overwritten}, reusing
+	 *         {@link #freeSpace} if possible.
+	 */
+	private FreeSpaceIndex getFreeSpace(EnumSet<DungeonSymbol> overwritten) {
+		if (freeSpace == null || !freeSpace.getFreeSymbols().equals(overwritten))
+			freeSpace = new FreeSpaceIndex(gdata.dungeon, EnumSet.copyOf(overwritten));
+		return freeSpace;
+	}
+
 	/** @return Whether a room was generated (recorded in {@link #RGZ}) */
 	private boolean generateRoomAt(ProbabilityTable<IRoomGenerator> rgTable, Coord bottomLeft, int maxWidth_,
 			int maxHeight_) {
@@ -265,6 +339,7 @@ public class RoomComponent implements GeneratorComponent {
 		final IRoomGenerator rg = rgTable.get(rng);
 		if (rg == null)
 			return false;
+		final RoomGeneratorStats stats = getStats(rg);
 		// infoLog("Trying " + maxWidth + "x" + maxHeight + " room at " +
 		// bottomLeft);
 
@@ -273,19 +348,25 @@ public class RoomComponent implements GeneratorComponent {
 		{
 			// Check that maxWidth and maxHeight meet the generator's specification
 			final int minw = rg.getMinSideSize(true);
-			if (0 <= minw && maxWidth_ < minw)
+			if (0 <= minw && maxWidth_ < minw) {
 				/*
 				 * The maximum width given by the caller is smaller than the generator's
 				 * minimum. There's no way to meet the constraints.
 				 */
+				stats.recordRejection();
+				checkFailureBudget(rg, stats);
 				return false;
+			}
 			final int minh = rg.getMinSideSize(false);
-			if (0 <= minh && maxHeight_ < minh)
+			if (0 <= minh && maxHeight_ < minh) {
 				/*
 				 * The maximum height given by the caller is smaller than the generator's
 				 * minimum. There's no way to meet the constraints.
 				 */
+				stats.recordRejection();
+				checkFailureBudget(rg, stats);
 				return false;
+			}
 			/*
 			 * Now union the constraints of the caller and of the room generator for the
 			 * maximum sizes.
@@ -296,9 +377,13 @@ public class RoomComponent implements GeneratorComponent {
 			maxHeight = 0 <= rgMaxH ? Math.min(maxHeight_, rgMaxH) : maxHeight_;
 		}
 
+		final long start = System.nanoTime();
 		final Zone zeroZeroZone = rg.generate(rng, this, bottomLeft, maxWidth, maxHeight);
-		if (zeroZeroZone == null)
+		stats.recordGeneration(zeroZeroZone != null, System.nanoTime() - start);
+		if (zeroZeroZone == null) {
+			checkFailureBudget(rg, stats);
 			return false;
+		}
 		final Zone zone = zeroZeroZone.translate(bottomLeft);
 		assert zone.size() == zeroZeroZone.size();
 		assert !Dungeons.anyOnEdge(gdata.dungeon, zone.iterator()) : "Room is on the dungeon's edge: " + zone;
@@ -330,10 +415,45 @@ public class RoomComponent implements GeneratorComponent {
 		return true;
 	}
 
+	private RoomGeneratorStats getStats(IRoomGenerator rg) {
+		RoomGeneratorStats result = gen.rgStats.get(rg);
+		if (result == null) {
+			result = new RoomGeneratorStats();
+			gen.rgStats.put(rg, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Halves the weight of {@code rg} if it failed
+	 * {@link DungeonGenerator#roomGeneratorFailureBudget} times in a row (again).
+	 */
+	private void checkFailureBudget(IRoomGenerator rg, RoomGeneratorStats stats) {
+		final int budget = gen.roomGeneratorFailureBudget;
+		if (budget == 0 || stats.failuresInARow % budget != 0)
+			return;
+		final Integer before = halvings.get(rg);
+		halvings.put(rg, Integer.valueOf(before == null ? 1 : before.intValue() + 1));
+		final ILogger logger = gen.logger;
+		if (logger != null && logger.isInfoEnabled())
+			logger.infoLog(Tags.GENERATION, "Halved weight of room generator " + rg + ", after "
+					+ stats.failuresInARow + " failures in a row");
+	}
+
+	/** @return The weight of {@code rg}, honoring {@link #halvings} */
+	private int getWeight(IRoomGenerator rg) {
+		final int weight = gen.roomGenerators.weight(rg);
+		final Integer nb = halvings.get(rg);
+		if (nb == null || weight == 0)
+			return weight;
+		/* Never drop to 0, the generator may fit again in other places */
+		return Math.max(1, weight >> Math.min(30, nb.intValue()));
+	}
+
 	private ProbabilityTable<IRoomGenerator> getRoomGeneratorTable(EnumSet<DungeonSymbol> overwritten) {
 		final Collection<IRoomGenerator> domain = gen.roomGenerators.getDomain();
 		Iterator<IRoomGenerator> it = domain.iterator();
-		boolean needChange = false;
+		boolean needChange = !halvings.isEmpty();
 		while (it.hasNext() && !needChange) {
 			final IRoomGenerator candidate = it.next();
 			final /* @Nullable */ EnumSet<DungeonSymbol> neighbors = candidate.getAcceptedNeighbors();
@@ -355,7 +475,7 @@ public class RoomComponent implements GeneratorComponent {
 			final /* @Nullable */ EnumSet<DungeonSymbol> neighbors = candidate.getAcceptedNeighbors();
 			if (neighbors == null || neighbors.containsAll(overwritten))
 				/* 'candidate' is compatible with 'overwritten' */
-				result.add(candidate, gen.roomGenerators.weight(candidate));
+				result.add(candidate, getWeight(candidate));
 			/* else skip it */
 		}
 		return result;
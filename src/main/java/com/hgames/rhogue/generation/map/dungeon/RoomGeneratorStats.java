@@ -0,0 +1,109 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import com.hgames.rhogue.generation.map.rgenerator.IRoomGenerator;
+
+/**
+ * What happened to the attempts of an {@link IRoomGenerator} during a
+ * dungeon's generation. An attempt is either rejected (the space available
+ * is smaller than the generator's minimum sizes), null (the generator
+ * returned null), or accepted.
+ * 
+ * @author smelC
+ * @see DungeonGenerator#getRoomGeneratorStats(IRoomGenerator)
+ */
+public class RoomGeneratorStats {
+
+	protected int attempts;
+	protected int rejections;
+	protected int nulls;
+	protected int accepted;
+	/** The time spent in {@link IRoomGenerator#generate}, in nanoseconds */
+	protected long nanos;
+
+	/** The number of attempts that failed since the last accepted one */
+	protected int failuresInARow;
+
+	/** A fresh instance, where nothing happened */
+	public RoomGeneratorStats() {
+		/* Nothing to do */
+	}
+
+	/**
+	 * A copy of {@code original}.
+	 * 
+	 * @param original
+	 */
+	public RoomGeneratorStats(RoomGeneratorStats original) {
+		this.attempts = original.attempts;
+		this.rejections = original.rejections;
+		this.nulls = original.nulls;
+		this.accepted = original.accepted;
+		this.nanos = original.nanos;
+		this.failuresInARow = original.failuresInARow;
+	}
+
+	/** @return The number of times the generator was picked. */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * @return The number of attempts where the space given was too small for
+	 *         the generator's minimum sizes.
+	 */
+	public int getRejections() {
+		return rejections;
+	}
+
+	/** @return The number of attempts where the generator returned null. */
+	public int getNulls() {
+		return nulls;
+	}
+
+	/** @return The number of rooms generated. */
+	public int getAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * @return The time spent in {@link IRoomGenerator#generate}, in
+	 *         nanoseconds.
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/** Records an attempt that was rejected */
+	void recordRejection() {
+		attempts++;
+		rejections++;
+		failuresInARow++;
+	}
+
+	/**
+	 * Records a call to {@link IRoomGenerator#generate}.
+	 * 
+	 * @param success
+	 *            Whether the generator returned a room.
+	 * @param duration
+	 *            The call's duration, in nanoseconds.
+	 */
+	void recordGeneration(boolean success, long duration) {
+		attempts++;
+		nanos += duration;
+		if (success) {
+			accepted++;
+			failuresInARow = 0;
+		} else {
+			nulls++;
+			failuresInARow++;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return attempts + " attempts: " + accepted + " accepted, " + nulls + " nulls, " + rejections
+				+ " rejections, " + (nanos / 1000) + "us";
+	}
+
+}
@@ -1,12 +1,10 @@
 package com.hgames.rhogue.generation.map.dungeon;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import squidpony.squidgrid.Direction;
 import squidpony.squidgrid.mapping.DungeonUtility;
@@ -26,6 +24,9 @@ public class Splash<T extends Enum<T>> {
 
 	protected final EnumSet<T> impassable;
 
+	/** The session used by {@link #spill(IRNG, Enum[][], Coord, int, int)} */
+	private /* @Nullable */ Session session;
+
 	/**
 	 * @param impassable
 	 *            The symbols not be spill on.
@@ -64,44 +65,16 @@ public class Splash<T extends Enum<T>> {
 	public List<Coord> spill(IRNG rng, T[][] level, Coord start, int volume, int drunks) {
 		final int width = level.length;
 		final int height = width == 0 ? 0 : level[0].length;
-		if (!insideLevel(width, height, start.x, start.y) || !passable(level[start.x][start.y]))
+		if (session == null || session.width != width || session.height != height)
+			session = newSession(width, height);
+		final int[] buf = session.getBuffer(volume);
+		final int nb = session.spill0(rng, level, start.x, start.y, volume, buf);
+		if (nb == 0)
 			return Collections.emptyList();
 
 		final List<Coord> result = new ArrayList<Coord>(volume);
-
-		Direction[] dirs = new Direction[Direction.OUTWARDS.length];
-
-		final LinkedList<Coord> toTry = new LinkedList<Coord>();
-		toTry.add(start);
-		final Set<Coord> trieds = new HashSet<Coord>();
-
-		while (!toTry.isEmpty()) {
-			assert result.size() < volume;
-			final Coord current = toTry.removeFirst();
-			assert DungeonUtility.inLevel(level, current);
-			assert passable(level[current.x][current.y]);
-			if (trieds.contains(current))
-				continue;
-			trieds.add(current);
-			/*
-			 * Here it holds that either 'current == start' or there's a Coord in 'result'
-			 * that is adjacent to 'current'.
-			 */
-			result.add(current);
-			if (result.size() == volume)
-				/* We're done */
-				break;
-			/* Now prepare data for next iterations */
-			/* Randomize directions */
-			dirs = rng.shuffle(Direction.OUTWARDS, dirs);
-			for (Direction d : dirs) {
-				final Coord next = current.translate(d);
-				if (insideLevel(width, height, next.x, next.y) && !trieds.contains(next)
-						&& passable(level[next.x][next.y]))
-					/* A valid cell for trying to be spilled on */
-					toTry.add(next);
-			}
-		}
+		for (int i = 0; i < nb; i++)
+			result.add(session.toCoord(buf[i]));
 
 		if (0 < drunks)
 			drunkinize(rng, level, result, DungeonUtility.border(result, null), drunks);
@@ -109,6 +82,18 @@ public class Splash<T extends Enum<T>> {
 		return result;
 	}
 
+	/**
+	 * @param width
+	 *            The width of levels that the session will be used on.
+	 * @param height
+	 *            The height of levels that the session will be used on.
+	 * @return A session to do repeated spills on levels of size
+	 *         {@code width * height} without allocating.
+	 */
+	public Session newSession(int width, int height) {
+		return new Session(width, height);
+	}
+
 	/**
 	 * @param rng
 	 * @param map
@@ -168,6 +153,153 @@ public class Splash<T extends Enum<T>> {
 		}
 	}
 
+	/**
+	 * Buffers to spill repeatedly on levels of a given size, without
+	 * allocating. Spills of sessions consume the RNG exactly like
+	 * {@link Splash#spill(IRNG, Enum[][], Coord, int, int)}, hence they yield
+	 * the same results.
+	 * 
+	 * @author smelC
+	 */
+	public final class Session {
+
+		protected final int width;
+		protected final int height;
+
+		/** The queue of cells to try, each cell being queued at most once */
+		private final int[] todos;
+		/**
+		 * Cells that have been queued during the current spill are marked with
+		 * {@link #stamp}. Stamps avoid clearing the array at every spill.
+		 */
+		private final int[] stamps;
+		private int stamp;
+
+		private Direction[] dirs = new Direction[Direction.OUTWARDS.length];
+
+		/* Only used by Splash:spill */
+		private /* @Nullable */ int[] buf;
+
+		Session(int width, int height) {
+			this.width = width;
+			this.height = height;
+			this.todos = new int[width * height];
+			this.stamps = new int[width * height];
+		}
+
+		/**
+		 * The equivalent of {@link Splash#spill(IRNG, Enum[][], Coord, int, int)}
+		 * without drunks.
+		 * 
+		 * @param rng
+		 * @param level
+		 *            A level of size {@code width * height}.
+		 * @param x
+		 *            Where the spill should start.
+		 * @param y
+		 *            Where the spill should start.
+		 * @param volume
+		 *            The number of cells to spill on.
+		 * @param buf
+		 *            Where to store the spill, as indexes (see
+		 *            {@link #toIndex(int, int)}). Its length must be at least
+		 *            {@code min(volume, width * height)}.
+		 * @return The number of cells stored in {@code buf}, in spill order.
+		 */
+		public int spill(IRNG rng, T[][] level, int x, int y, int volume, int[] buf) {
+			if (level.length != width || (0 < width && level[0].length != height))
+				throw new IllegalStateException("Session of size " + width + "x" + height
+						+ " cannot be used on a level of size " + level.length + "x"
+						+ (level.length == 0 ? 0 : level[0].length));
+			return spill0(rng, level, x, y, volume, buf);
+		}
+
+		/**
+		 * @param x
+		 * @param y
+		 * @return The index of (x, y) in results of
+		 *         {@link #spill(IRNG, Enum[][], int, int, int, int[])}.
+		 */
+		public int toIndex(int x, int y) {
+			return (x * height) + y;
+		}
+
+		/**
+		 * @param index
+		 *            A result of {@link #toIndex(int, int)}.
+		 * @return The cell whose index is {@code index}.
+		 */
+		public Coord toCoord(int index) {
+			return Coord.get(index / height, index % height);
+		}
+
+		/**
+		 * Cells are marked when queued (instead of when dequeued) so that the
+		 * queue doesn't contain duplicates, which doesn't change the spill order.
+		 */
+		int spill0(IRNG rng, T[][] level, int x, int y, int volume, int[] result) {
+			if (!insideLevel(width, height, x, y) || !passable(level[x][y]))
+				return 0;
+
+			nextStamp();
+			int head = 0;
+			int tail = 0;
+			final int start = toIndex(x, y);
+			todos[tail++] = start;
+			stamps[start] = stamp;
+			int nb = 0;
+
+			while (head < tail) {
+				assert nb < volume;
+				final int current = todos[head++];
+				final int cx = current / height;
+				final int cy = current % height;
+				assert passable(level[cx][cy]);
+				/*
+				 * Here it holds that either 'current == start' or there's a cell in
+				 * 'result' that is adjacent to 'current'.
+				 */
+				result[nb++] = current;
+				if (nb == volume)
+					/* We're done */
+					break;
+				/* Now prepare data for next iterations */
+				/* Randomize directions */
+				dirs = rng.shuffle(Direction.OUTWARDS, dirs);
+				for (Direction d : dirs) {
+					final int nx = cx + d.deltaX;
+					final int ny = cy + d.deltaY;
+					if (!insideLevel(width, height, nx, ny))
+						continue;
+					final int next = toIndex(nx, ny);
+					if (stamps[next] != stamp && passable(level[nx][ny])) {
+						/* A valid cell for trying to be spilled on */
+						stamps[next] = stamp;
+						todos[tail++] = next;
+					}
+				}
+			}
+			return nb;
+		}
+
+		int[] getBuffer(int volume) {
+			/* Spills with a volume <= 0 are bounded by the level's size */
+			final int sz = volume <= 0 ? width * height : Math.min(volume, width * height);
+			if (buf == null || buf.length < sz)
+				buf = new int[sz];
+			return buf;
+		}
+
+		private void nextStamp() {
+			stamp++;
+			if (stamp == 0) {
+				/* Wrapped around, stamps of previous spills may collide */
+				Arrays.fill(stamps, 0);
+				stamp = 1;
+			}
+		}
+	}
+
 	private static boolean insideLevel(int width, int height, int x, int y) {
 		if (x <= 0)
 			return false;
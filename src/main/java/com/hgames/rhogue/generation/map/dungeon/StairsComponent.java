@@ -113,6 +113,8 @@ public class StairsComponent implements GeneratorComponent {
 		final StairGenerator result = new StairGenerator(gen.logger, gen.rng, gen, dungeon, objective, upOrDown, gdata, connections);
 		result.setStairValidDirection(gen.stairUpValidDirection, true);
 		result.setStairValidDirection(gen.stairDownValidDirection, false);
+		/* The same as in 'generateStair', to label the dungeon once per stair */
+		result.setWalkableComponents(gdata.getWalkableComponents(false, false));
 		return result;
 	}
 
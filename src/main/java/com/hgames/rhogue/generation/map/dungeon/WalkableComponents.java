@@ -0,0 +1,251 @@
+package com.hgames.rhogue.generation.map.dungeon;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * The connected components of the walkable cells of a {@link Dungeon}, with
+ * their sizes. Once labeled, whether a path exists between two cells and how
+ * many cells can be reached from a cell are answered without searching.
+ * 
+ * <p>
+ * Labels are stored in a reusable {@code int[]}, the label of (x, y) being at
+ * {@code x * height + y}. Like {@link DistanceField}, instances remember the
+ * {@link Dungeon#getVersion() version} of the dungeon: labeling is redone
+ * only if the dungeon or the configuration changed.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class WalkableComponents {
+
+	protected final Dungeon dungeon;
+	protected final int width;
+	protected final int height;
+
+	/** The component of walkable cells ({@code >= 1}), 0 for other cells */
+	private final int[] labels;
+	/** The size of components, by label. Index 0 is unused. */
+	private int[] sizes;
+	private int nbComponents;
+	/** The stack of {@link #label()} */
+	private final int[] todo;
+
+	/** Whether cells are walkable, by {@link DungeonSymbol#ordinal()} */
+	private final boolean[] walkables;
+	private boolean considerDiagonals;
+	/** The version of {@link #dungeon} when {@link #labels} was built, or -1 */
+	private int version = -1;
+
+	/* Buffer of pathExists */
+	private final int[] around = new int[9];
+
+	private static final DungeonSymbol[] SYMBOLS = DungeonSymbol.values();
+
+	/**
+	 * A fresh instance, where no symbol is walkable.
+	 * 
+	 * @param dungeon
+	 */
+	public WalkableComponents(Dungeon dungeon) {
+		this.dungeon = dungeon;
+		this.width = dungeon.width;
+		this.height = dungeon.height;
+		this.labels = new int[width * height];
+		this.sizes = new int[16];
+		this.todo = new int[width * height];
+		this.walkables = new boolean[SYMBOLS.length];
+	}
+
+	/**
+	 * @param syms
+	 *            The walkable symbols.
+	 * @return {@code this}
+	 */
+	public WalkableComponents setWalkables(EnumSet<DungeonSymbol> syms) {
+		for (DungeonSymbol sym : SYMBOLS) {
+			final boolean walkable = syms.contains(sym);
+			if (walkables[sym.ordinal()] != walkable) {
+				walkables[sym.ordinal()] = walkable;
+				version = -1;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @param value
+	 *            Whether components are connected diagonally (8-connectivity)
+	 *            or not (4-connectivity).
+	 * @return {@code this}
+	 */
+	public WalkableComponents setConsiderDiagonals(boolean value) {
+		if (considerDiagonals != value)
+			version = -1;
+		this.considerDiagonals = value;
+		return this;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The component of {@code (x, y)} ({@code >= 1}), or 0 if it isn't
+	 *         walkable or out of bounds.
+	 */
+	public int getComponent(int x, int y) {
+		if (x < 0 || width <= x || y < 0 || height <= y)
+			return 0;
+		if (version != dungeon.getVersion())
+			label();
+		return labels[(x * height) + y];
+	}
+
+	/**
+	 * @param component
+	 *            A result of {@link #getComponent(int, int)}.
+	 * @return The number of cells of {@code component}, 0 if {@code component}
+	 *         is 0.
+	 */
+	public int getSize(int component) {
+		if (version != dungeon.getVersion())
+			label();
+		return component == 0 ? 0 : sizes[component];
+	}
+
+	/**
+	 * @param z
+	 *            A room or a corridor of the dungeon.
+	 * @return The size of the component that contains {@code z}, i.e. the
+	 *         number of cells that can be reached from {@code z}. Rooms and
+	 *         corridors are connected and walkable, so this reads the component
+	 *         of a single cell.
+	 */
+	public int getReachableSize(Zone z) {
+		for (Coord c : z) {
+			final int component = getComponent(c.x, c.y);
+			if (component == 0)
+				/* Not walkable, only possible if 'z' isn't a room or a corridor */
+				continue;
+			final int result = getSize(component);
+			assert result == getLargestReachableSize(z) : z + " is split between components";
+			return result;
+		}
+		return 0;
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return Whether a path goes from {@code from} to {@code to}, where
+	 *         intermediate cells are walkable but the extremities don't need to
+	 *         be. This is what {@link DistanceField#isReachable(int, int)} answers
+	 *         after computing the distances to {@code from}, without the search.
+	 */
+	public boolean pathExists(Coord from, Coord to) {
+		if (from.equals(to) || areNeighbors(from, to))
+			return true;
+		/* The components that can be entered from 'from' */
+		int nb = 0;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				if (!considerDiagonals && dx != 0 && dy != 0)
+					continue;
+				final int component = getComponent(from.x + dx, from.y + dy);
+				if (component != 0)
+					around[nb++] = component;
+			}
+		}
+		/* Whether 'to' is in one of them, or next to one of them */
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				if (!considerDiagonals && dx != 0 && dy != 0)
+					continue;
+				final int component = getComponent(to.x + dx, to.y + dy);
+				if (component == 0)
+					continue;
+				for (int i = 0; i < nb; i++) {
+					if (around[i] == component)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The size of the largest component that contains a cell of
+	 *         {@code z}.
+	 */
+	private int getLargestReachableSize(Zone z) {
+		int result = 0;
+		for (Coord c : z)
+			result = Math.max(result, getSize(getComponent(c.x, c.y)));
+		return result;
+	}
+
+	private boolean areNeighbors(Coord c0, Coord c1) {
+		final int dx = Math.abs(c0.x - c1.x);
+		final int dy = Math.abs(c0.y - c1.y);
+		return considerDiagonals ? (dx <= 1 && dy <= 1) : (dx + dy == 1);
+	}
+
+	private void label() {
+		Arrays.fill(labels, 0);
+		nbComponents = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final int idx = (x * height) + y;
+				if (labels[idx] != 0 || !isWalkable(x, y))
+					continue;
+				nbComponents++;
+				if (nbComponents == sizes.length)
+					sizes = Arrays.copyOf(sizes, nbComponents * 2);
+				sizes[nbComponents] = fill(idx, nbComponents);
+			}
+		}
+		version = dungeon.getVersion();
+	}
+
+	/** @return The size of the component of {@code start} */
+	private int fill(int start, int component) {
+		int result = 1;
+		labels[start] = component;
+		int size = 0;
+		todo[size++] = start;
+		while (0 < size) {
+			final int idx = todo[--size];
+			final int x = idx / height;
+			final int y = idx - (x * height);
+			for (int dx = -1; dx <= 1; dx++) {
+				final int nx = x + dx;
+				if (nx < 0 || width <= nx)
+					continue;
+				for (int dy = -1; dy <= 1; dy++) {
+					if ((dx == 0 && dy == 0) || (!considerDiagonals && dx != 0 && dy != 0))
+						continue;
+					final int ny = y + dy;
+					if (ny < 0 || height <= ny)
+						continue;
+					final int nidx = (nx * height) + ny;
+					if (labels[nidx] != 0 || !isWalkable(nx, ny))
+						continue;
+					/* Marked when pushed, each cell is pushed at most once */
+					labels[nidx] = component;
+					todo[size++] = nidx;
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean isWalkable(int x, int y) {
+		final DungeonSymbol sym = dungeon.map[x][y];
+		return sym != null && walkables[sym.ordinal()];
+	}
+
+}
@@ -2,6 +2,7 @@ package com.hgames.rhogue.generation.map.dungeon;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -63,26 +64,30 @@ public class WaterComponent implements GeneratorComponent {
 		final int poolObjective = totalObjective / gen.waterPools;
 		int poolsDone = 0;
 		final Iterator<Coord> it = candidates.iterator();
-		final LinkedHashSet<Coord> spill = new LinkedHashSet<Coord>();
+		/* The cells of a pool, as indexes of 'fill' */
+		final int[] spill = new int[msz];
 		while (it.hasNext() && poolsDone < gen.waterPools && filled < totalObjective) {
 			/* Prepare iteration */
 			objective.prepare(poolObjective);
-			spill.clear();
 			/* Go */
 			final Coord candidate = it.next();
-			fill.flood(rng, candidate.x, candidate.y, objective, gen.startWithWater, spill);
-			if (spill.isEmpty())
+			final int sz = gen.scanlineFloods
+					? fill.floodSpans(rng, candidate.x, candidate.y, objective, gen.startWithWater, spill)
+					: fill.flood(rng, candidate.x, candidate.y, objective, gen.startWithWater, spill);
+			if (sz == 0)
 				continue;
-			final int sz = spill.size();
-			for (Coord spilt : spill) {
+			final List<Coord> pool = new ArrayList<Coord>(sz);
+			for (int i = 0; i < sz; i++) {
+				final Coord spilt = fill.toCoord(spill[i]);
 				assert Dungeons.findRoomOrCorridorContaining(dungeon, spilt.x,
 						spilt.y) == null : ("Cells spilt on should not belong to a zone. You should fix 'impassable'. Cell spilt on: "
 								+ spilt + " belonging to zone: "
 								+ Dungeons.findRoomOrCorridorContaining(dungeon, spilt.x, spilt.y));
 				builder.setSymbol(spilt, DungeonSymbol.DEEP_WATER);
+				pool.add(spilt);
 				filled++;
 			}
-			gen.addZone(gdata, new ListZone(new ArrayList<Coord>(spill)), null, null, ZoneType.DEEP_WATER);
+			gen.addZone(gdata, new ListZone(pool), null, null, ZoneType.DEEP_WATER);
 			if (gen.logger != null && gen.logger.isInfoEnabled())
 				gen.logger.infoLog(Tags.GENERATION, "Created water pool of size " + sz); // + ": " + spill);
 			gen.draw(dungeon);
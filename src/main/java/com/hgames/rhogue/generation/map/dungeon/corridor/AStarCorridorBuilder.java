@@ -0,0 +1,312 @@
+package com.hgames.rhogue.generation.map.dungeon.corridor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.hgames.lib.collection.Collections;
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.zone.ListZone;
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * A corridor builder that searches the cheapest corridor with A*, on a
+ * {@link CarvingCostGrid}. Contrary to {@link BresenhamCorridorBuilder} and
+ * {@link OneOrTwoLinesCorridorBuilder}, corridors can have any shape: they go
+ * around obstacles, hence this builder succeeds where straight shapes fail.
+ * Turns are penalized, so that corridors stay as straight as possible.
+ * 
+ * <p>
+ * A state of the search is a cell and the direction it was entered from (to
+ * account for turns). Buffers are kept across calls and are not cleared: a
+ * state is considered visited only if it was marked during the current
+ * search. They are allocated by the first search, as this builder is usually
+ * a fallback that isn't called.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class AStarCorridorBuilder extends SkeletalCorridorBuilder {
+
+	/** The cost of a turn */
+	protected final int turnCost;
+	/**
+	 * How much more than the shortest possible corridor searched corridors can
+	 * cost. Bounds the search when no corridor exists.
+	 */
+	protected final int maxDetour;
+	/**
+	 * The maximum length of corridors. Searches don't go through states that
+	 * can only lead to longer corridors.
+	 */
+	protected final int lengthLimit;
+
+	protected final CarvingCostGrid grid;
+
+	/* Cardinal directions. Opposite directions differ by their lowest bit */
+	private static final int[] DX = { 0, 0, -1, 1 };
+	private static final int[] DY = { -1, 1, 0, 0 };
+
+	/*
+	 * States are (cell << 2) | direction, cells being x * height + y. Allocated
+	 * by the first search.
+	 */
+	private int[] costs;
+	/** The number of cells of the corridor ending at a state */
+	private int[] lengths;
+	private int[] parents;
+	private int[] seen;
+	private int[] closed;
+	/** The current search, states are marked with it in {@link #seen} and {@link #closed} */
+	private int search;
+	/** A binary heap of {@code (cost + heuristic) << 32 | state} */
+	private long[] open;
+	/* Buffers of mayBeConnected */
+	private final int[] startComponents = new int[16];
+	private final int[] endComponents = new int[16];
+
+	/**
+	 * @param dungeon
+	 * @param allowedCarvings
+	 * @param allowedNeighbors
+	 * @param waterCost
+	 *            The cost of carving deep water, carving other cells costs 1.
+	 * @param turnCost
+	 *            The cost of a turn.
+	 * @param maxDetour
+	 *            How much more than the shortest possible corridor corridors
+	 *            can cost.
+	 * @param lengthLimit
+	 *            The maximum length of corridors, or {@link Integer#MAX_VALUE}
+	 *            if unbounded.
+	 */
+	public AStarCorridorBuilder(Dungeon dungeon, EnumSet<DungeonSymbol> allowedCarvings,
+			EnumSet<DungeonSymbol> allowedNeighbors, int waterCost, int turnCost, int maxDetour,
+			int lengthLimit) {
+		super(dungeon, allowedCarvings, allowedNeighbors);
+		if (turnCost < 0)
+			throw new IllegalStateException("Cost of turns must be >= 0. Received: " + turnCost);
+		if (maxDetour < 0)
+			throw new IllegalStateException("Maximum detour must be >= 0. Received: " + maxDetour);
+		if (lengthLimit < 0)
+			throw new IllegalStateException("Limit of length of corridors must be >= 0. Received: " + lengthLimit);
+		this.turnCost = turnCost;
+		this.maxDetour = maxDetour;
+		this.lengthLimit = lengthLimit;
+		this.grid = new CarvingCostGrid(dungeon, allowedCarvings, allowedNeighbors, waterCost);
+	}
+
+	@Override
+	protected /* @Nullable */ Zone build(IRNG rng, Coord start, Coord end) {
+		final int width = dungeon.getWidth();
+		final int height = dungeon.getHeight();
+		if (start.equals(end) || !dungeon.isValid(start) || !dungeon.isValid(end))
+			return null;
+		if (lengthLimit < heuristic(start.x, start.y, end))
+			/* Even a straight corridor would be too long */
+			return null;
+		final int[] carvings = grid.get();
+		if (3 < distance(start.x, start.y, end.x, end.y) && !mayBeConnected(carvings, start, end, width, height))
+			/* Don't search the whole budget for nothing */
+			return null;
+		if (costs == null) {
+			final int nbStates = width * height * 4;
+			costs = new int[nbStates];
+			lengths = new int[nbStates];
+			parents = new int[nbStates];
+			seen = new int[nbStates];
+			closed = new int[nbStates];
+			open = new long[64];
+		} else if (search == Integer.MAX_VALUE) {
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			search = 0;
+		}
+		search++;
+		/* Corridors exclude their extremities */
+		final int budget = distance(start.x, start.y, end.x, end.y) - 1 + maxDetour;
+		int size = 0;
+		for (int d = 0; d < 4; d++) {
+			final int x = start.x + DX[d];
+			final int y = start.y + DY[d];
+			if (x < 0 || width <= x || y < 0 || height <= y || (x == end.x && y == end.y))
+				continue;
+			/* The first cell doesn't need to be inner */
+			final int cost = carvings[(x * height) + y] & ~CarvingCostGrid.INNER;
+			if (cost == 0)
+				continue;
+			size = push(size, (((x * height) + y) << 2) | d, -1, cost, 1, heuristic(x, y, end), budget);
+		}
+		while (0 < size) {
+			final int state = (int) open[0];
+			size = pop(size);
+			if (closed[state] == search)
+				continue;
+			closed[state] = search;
+			final int cell = state >>> 2;
+			final int x = cell / height;
+			final int y = cell - (x * height);
+			if (heuristic(x, y, end) == 0)
+				/* Cardinally adjacent to 'end' */
+				return toZone(state, height);
+			final int dir = state & 3;
+			final int cost = costs[state];
+			final int length = lengths[state] + 1;
+			for (int d = 0; d < 4; d++) {
+				if (d == (dir ^ 1))
+					/* Going back */
+					continue;
+				final int nx = x + DX[d];
+				final int ny = y + DY[d];
+				if (nx < 0 || width <= nx || ny < 0 || height <= ny || (nx == end.x && ny == end.y))
+					continue;
+				if (distance(nx, ny, start.x, start.y) <= 1)
+					/* Only the first cell can be adjacent to 'start' */
+					continue;
+				final int ncell = (nx * height) + ny;
+				final int carving = carvings[ncell];
+				final int h = heuristic(nx, ny, end);
+				if (carving == 0 || (h != 0 && (carving & CarvingCostGrid.INNER) == 0))
+					/* Cannot be carved, or cannot be inside the corridor */
+					continue;
+				final int ncost = cost + (carving & ~CarvingCostGrid.INNER) + (d == dir ? 0 : turnCost);
+				size = push(size, (ncell << 2) | d, state, ncost, length, h, budget);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A corridor of more than 2 cells goes through the inside of a component
+	 * of {@link CarvingCostGrid#getComponents()}, from a neighbor of the cell
+	 * next to {@code start} to a neighbor of the cell next to {@code end}.
+	 * 
+	 * @return false if no corridor of more than 2 cells exists between
+	 *         {@code start} and {@code end}.
+	 */
+	private boolean mayBeConnected(int[] carvings, Coord start, Coord end, int width, int height) {
+		final int[] components = grid.getComponents();
+		final int nbStarts = getComponentsAround(carvings, components, start, width, height, startComponents);
+		if (nbStarts == 0)
+			return false;
+		final int nbEnds = getComponentsAround(carvings, components, end, width, height, endComponents);
+		for (int i = 0; i < nbStarts; i++) {
+			for (int j = 0; j < nbEnds; j++) {
+				if (startComponents[i] == endComponents[j])
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fills {@code buf} with the components of the cells that can follow a
+	 * corridor's cell that is cardinally adjacent to {@code c}.
+	 * 
+	 * @return The number of components put in {@code buf}.
+	 */
+	private static int getComponentsAround(int[] carvings, int[] components, Coord c, int width, int height,
+			int[] buf) {
+		int result = 0;
+		for (int d = 0; d < 4; d++) {
+			final int x = c.x + DX[d];
+			final int y = c.y + DY[d];
+			if (x < 0 || width <= x || y < 0 || height <= y || carvings[(x * height) + y] == 0)
+				continue;
+			for (int e = 0; e < 4; e++) {
+				final int nx = x + DX[e];
+				final int ny = y + DY[e];
+				if (nx < 0 || width <= nx || ny < 0 || height <= ny)
+					continue;
+				final int component = components[(nx * height) + ny];
+				if (component != 0)
+					buf[result++] = component;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param length
+	 *            The number of cells of the corridor ending at {@code state}.
+	 * @return The new size of {@link #open}
+	 */
+	private int push(int size, int state, int parent, int cost, int length, int heuristic, int budget) {
+		final int f = cost + heuristic;
+		if (budget < f || lengthLimit - heuristic < length)
+			/* Too costly or too long, the heuristic being a lower bound of both */
+			return size;
+		if (closed[state] == search || (seen[state] == search && costs[state] <= cost))
+			return size;
+		seen[state] = search;
+		costs[state] = cost;
+		lengths[state] = length;
+		parents[state] = parent;
+		if (size == open.length)
+			open = Arrays.copyOf(open, size * 2);
+		final long entry = ((long) f << 32) | state;
+		int i = size;
+		while (0 < i) {
+			final int p = (i - 1) >>> 1;
+			if (open[p] <= entry)
+				break;
+			open[i] = open[p];
+			i = p;
+		}
+		open[i] = entry;
+		return size + 1;
+	}
+
+	/** @return The new size of {@link #open}, whose minimum has been removed */
+	private int pop(int size) {
+		final int last = size - 1;
+		final long entry = open[last];
+		int i = 0;
+		while (true) {
+			int child = (2 * i) + 1;
+			if (last <= child)
+				break;
+			if (child + 1 < last && open[child + 1] < open[child])
+				child++;
+			if (entry <= open[child])
+				break;
+			open[i] = open[child];
+			i = child;
+		}
+		open[i] = entry;
+		return last;
+	}
+
+	private Zone toZone(int state, int height) {
+		int length = 0;
+		for (int s = state; s != -1; s = parents[s])
+			length++;
+		final Coord[] cells = new Coord[length];
+		for (int s = state; s != -1; s = parents[s]) {
+			final int cell = s >>> 2;
+			final int x = cell / height;
+			cells[--length] = Coord.get(x, cell - (x * height));
+		}
+		final List<Coord> result = new ArrayList<Coord>(Arrays.asList(cells));
+		assert Collections.isSet(result);
+		return new ListZone(result);
+	}
+
+	/**
+	 * @return A lower bound of the cost of going from {@code (x, y)} to a cell
+	 *         cardinally adjacent to {@code end}.
+	 */
+	private static int heuristic(int x, int y, Coord end) {
+		return Math.max(0, distance(x, y, end.x, end.y) - 1);
+	}
+
+	private static int distance(int x0, int y0, int x1, int y1) {
+		return Math.abs(x0 - x1) + Math.abs(y0 - y1);
+	}
+
+}
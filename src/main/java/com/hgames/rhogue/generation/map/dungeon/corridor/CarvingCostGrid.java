@@ -0,0 +1,167 @@
+package com.hgames.rhogue.generation.map.dungeon.corridor;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+
+import squidpony.squidgrid.Direction;
+
+/**
+ * The cost of carving every cell of a {@link Dungeon}, for builders that
+ * search corridors (see {@link AStarCorridorBuilder}). The entry of (x, y) is
+ * at {@code x * height + y}: it is 0 if carving (x, y) isn't allowed and the
+ * cost of carving it otherwise, possibly ored with {@link #INNER}.
+ * 
+ * <p>
+ * Cells flagged {@link #INNER} are also labeled by connected component (see
+ * {@link #getComponents()}), so that searches can be skipped when no corridor
+ * can exist.
+ * </p>
+ * 
+ * <p>
+ * The grid is rebuilt lazily when the {@link Dungeon#getVersion() version} of
+ * the dungeon changed, so that builders can keep an instance across calls.
+ * Its buffers are allocated by the first build, so that unused instances are
+ * cheap.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class CarvingCostGrid {
+
+	/**
+	 * The flag of cells whose 8 neighbors are allowed neighbors of corridors,
+	 * i.e. of cells that can be inside a corridor (not at its extremities).
+	 */
+	public static final int INNER = 1 << 30;
+
+	protected final Dungeon dungeon;
+	/** Symbols through which carving is allowed */
+	protected final EnumSet<DungeonSymbol> allowedCarvings;
+	/** Symbols which are acceptable neighbors to carved cells */
+	protected final EnumSet<DungeonSymbol> allowedNeighbors;
+	/** The cost of carving deep water */
+	protected final int waterCost;
+
+	/* Allocated by the first build */
+	private int[] costs;
+	/** The component of {@link #INNER} cells, 0 for other cells */
+	private int[] components;
+	/** The stack of {@link #label()} */
+	private int[] todo;
+	/** The version of {@link #dungeon} when {@link #costs} was built, or -1 */
+	private int version = -1;
+
+	/**
+	 * @param dungeon
+	 * @param allowedCarvings
+	 * @param allowedNeighbors
+	 * @param waterCost
+	 *            The cost of carving {@link DungeonSymbol#DEEP_WATER} cells
+	 *            (if {@code allowedCarvings} contains it), other carvings
+	 *            cost 1.
+	 */
+	public CarvingCostGrid(Dungeon dungeon, EnumSet<DungeonSymbol> allowedCarvings,
+			EnumSet<DungeonSymbol> allowedNeighbors, int waterCost) {
+		if (waterCost <= 0)
+			throw new IllegalStateException("Cost of carving water must be > 0. Received: " + waterCost);
+		this.dungeon = dungeon;
+		this.allowedCarvings = allowedCarvings;
+		this.allowedNeighbors = allowedNeighbors;
+		this.waterCost = waterCost;
+	}
+
+	/**
+	 * @return The grid, up to date w.r.t. {@link #dungeon}. It is a reference
+	 *         to this instance's inner state, do not modify it.
+	 */
+	public int[] get() {
+		if (version != dungeon.getVersion())
+			build();
+		return costs;
+	}
+
+	/**
+	 * @return The connected components (considering cardinal neighbors) of
+	 *         the cells flagged {@link #INNER}, the entry of (x, y) being at
+	 *         {@code x * height + y}. Entries of cells in a component are
+	 *         {@code >= 1}, entries of other cells are 0. It is a reference to
+	 *         this instance's inner state, do not modify it.
+	 */
+	public int[] getComponents() {
+		if (version != dungeon.getVersion())
+			build();
+		return components;
+	}
+
+	private void build() {
+		final int width = dungeon.getWidth();
+		final int height = dungeon.getHeight();
+		if (costs == null) {
+			costs = new int[width * height];
+			components = new int[costs.length];
+			todo = new int[costs.length];
+		}
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final DungeonSymbol sym = dungeon.getSymbol(x, y);
+				int entry = 0;
+				if (sym != null && allowedCarvings.contains(sym)) {
+					entry = sym == DungeonSymbol.DEEP_WATER ? waterCost : 1;
+					if (isInner(x, y))
+						entry |= INNER;
+				}
+				costs[(x * height) + y] = entry;
+			}
+		}
+		label(width, height);
+		version = dungeon.getVersion();
+	}
+
+	private void label(int width, int height) {
+		final int sz = costs.length;
+		Arrays.fill(components, 0);
+		int component = 0;
+		for (int i = 0; i < sz; i++) {
+			if (components[i] != 0 || (costs[i] & INNER) == 0)
+				continue;
+			component++;
+			components[i] = component;
+			int size = 0;
+			todo[size++] = i;
+			while (0 < size) {
+				final int idx = todo[--size];
+				final int x = idx / height;
+				final int y = idx - (x * height);
+				for (Direction dir : Direction.CARDINALS) {
+					final int nx = x + dir.deltaX;
+					final int ny = y + dir.deltaY;
+					if (nx < 0 || width <= nx || ny < 0 || height <= ny)
+						continue;
+					final int nidx = (nx * height) + ny;
+					if (components[nidx] != 0 || (costs[nidx] & INNER) == 0)
+						continue;
+					/* Marked when pushed, each cell is pushed at most once */
+					components[nidx] = component;
+					todo[size++] = nidx;
+				}
+			}
+		}
+	}
+
+	private boolean isInner(int x, int y) {
+		for (Direction out : Direction.OUTWARDS) {
+			final int nx = x + out.deltaX;
+			final int ny = y + out.deltaY;
+			if (!dungeon.isValid(nx, ny))
+				return false;
+			final DungeonSymbol sym = dungeon.getSymbol(nx, ny);
+			if (sym == null || !allowedNeighbors.contains(sym))
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -20,6 +20,10 @@ public final class CorridorBuilders {
 	private static final EnumSet<DungeonSymbol> IMPERFECT_NEIGHBORS;
 	private static final boolean ALLOW_A_TURN = true;
 
+	/* Costs of AStarCorridorBuilder, carving a wall costs 1 */
+	private static final int WATER_COST = 3;
+	private static final int TURN_COST = 2;
+
 	static {
 		IMPERFECT_CARVING = EnumSet.noneOf(DungeonSymbol.class);
 		for (DungeonSymbol sym : DungeonSymbol.values()) {
@@ -112,6 +116,38 @@ public final class CorridorBuilders {
 		return new SequencedCorridorBuilder(array);
 	}
 
+	/**
+	 * @param dungeon
+	 * @param perfect
+	 *            Whether to use {@link #PERFECT_CARVING} and
+	 *            {@link #PERFECT_NEIGHBORS} or {@link #IMPERFECT_CARVING} and
+	 *            {@link #IMPERFECT_NEIGHBORS}.
+	 * @return An instance of {@link AStarCorridorBuilder}, that can build
+	 *         corridors that don't follow straight lines.
+	 */
+	public static ICorridorBuilder createAStar(Dungeon dungeon, boolean perfect) {
+		return createAStar(dungeon, perfect, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param dungeon
+	 * @param perfect
+	 *            Whether to use {@link #PERFECT_CARVING} and
+	 *            {@link #PERFECT_NEIGHBORS} or {@link #IMPERFECT_CARVING} and
+	 *            {@link #IMPERFECT_NEIGHBORS}.
+	 * @param lengthLimit
+	 *            The maximum length of corridors, or {@link Integer#MAX_VALUE}
+	 *            if unbounded.
+	 * @return An instance of {@link AStarCorridorBuilder}, that can build
+	 *         corridors that don't follow straight lines.
+	 */
+	public static ICorridorBuilder createAStar(Dungeon dungeon, boolean perfect, int lengthLimit) {
+		/* Allow corridors to go around obstacles as big as a quarter of the map */
+		final int maxDetour = (dungeon.getWidth() + dungeon.getHeight()) / 4;
+		return new AStarCorridorBuilder(dungeon, getCarvings(perfect), getNeighbors(perfect), WATER_COST, TURN_COST,
+				maxDetour, lengthLimit);
+	}
+
 	private static EnumSet<DungeonSymbol> getCarvings(boolean perfect) {
 		return perfect ? PERFECT_CARVING : IMPERFECT_CARVING;
 	}
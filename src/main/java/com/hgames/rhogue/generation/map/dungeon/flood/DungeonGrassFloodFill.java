@@ -24,7 +24,12 @@ public class DungeonGrassFloodFill extends FloodFill {
 
 	@Override
 	protected boolean canBeFloodOn(Coord c) {
-		final DungeonSymbol sym = map[c.x][c.y];
+		return canBeFloodOn(c.x, c.y);
+	}
+
+	@Override
+	protected boolean canBeFloodOn(int x, int y) {
+		final DungeonSymbol sym = map[x][y];
 		switch (sym) {
 		case CHASM:
 		case DEEP_WATER:
@@ -31,7 +31,12 @@ public class DungeonWaterStartFloodFill extends FloodFill {
 
 	@Override
 	protected boolean canBeFloodOn(Coord c) {
-		final DungeonSymbol sym = map[c.x][c.y];
+		return canBeFloodOn(c.x, c.y);
+	}
+
+	@Override
+	protected boolean canBeFloodOn(int x, int y) {
+		final DungeonSymbol sym = map[x][y];
 		switch (sym) {
 		case CHASM:
 		case DEEP_WATER:
@@ -44,15 +49,14 @@ public class DungeonWaterStartFloodFill extends FloodFill {
 		case STAIR_UP:
 			return false;
 		case WALL:
-			return isValidFloodNeighbor(c);
+			return isValidFloodNeighbor(x, y);
 		}
 		throw Exceptions.newUnmatchedISE(sym);
 	}
 
-	private boolean isValidFloodNeighbor(Coord c) {
+	private boolean isValidFloodNeighbor(int x, int y) {
 		for (Direction dir : Direction.OUTWARDS) {
-			final Coord neighbor = c.translate(dir);
-			final DungeonSymbol sym = Arrays.getIfValid(map, neighbor.x, neighbor.y);
+			final DungeonSymbol sym = Arrays.getIfValid(map, x + dir.deltaX, y + dir.deltaY);
 			if (sym == null)
 				/* oob */
 				continue;
@@ -1,13 +1,10 @@
 package com.hgames.rhogue.generation.map.dungeon.flood;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
 import com.hgames.rhogue.grid.DoerInACircle;
@@ -29,6 +26,21 @@ public abstract class FloodFill {
 	protected final int width;
 	protected final int height;
 
+	/*
+	 * Buffers of the flood, allocated lazily and reused across calls. 'todos' is
+	 * the queue of cells to flood (a stack of seeds in scanline mode), 'dones' is
+	 * the bitset of cells that have been queued (flooded in scanline mode),
+	 * 'cells' stores the result of the Coord-based variant. Once the flood is
+	 * done, the index variant of postprocess reuses 'todos' as a worklist and
+	 * 'dones' as the bitset of the result's members.
+	 */
+	private /* @Nullable */ int[] todos;
+	private /* @Nullable */ long[] dones;
+	private /* @Nullable */ int[] cells;
+	/* The number of neighbors of members, used by removeLonelies */
+	private /* @Nullable */ byte[] neighbors;
+	private /* @Nullable */ CellsEater eater;
+
 	/**
 	 * A fresh instance.
 	 * 
@@ -61,36 +73,258 @@ public abstract class FloodFill {
 	 */
 	public /* @Nullable */ LinkedHashSet<Coord> flood(IRNG rng, int x, int y, IFloodObjective objective,
 			boolean eatBorders, /* @Nullable */ LinkedHashSet<Coord> buf) {
-		final Coord start = Coord.get(x, y);
-		if (!canBeFloodOn_(start))
+		if (!canBeFloodOn_(x, y))
 			return buf;
-		final LinkedList<Coord> todos = new LinkedList<Coord>();
-		final Set<Coord> dones = new HashSet<Coord>();
+		final int[] cells = getCells();
+		final int nb = flood0(x, y, objective, cells);
 		final LinkedHashSet<Coord> result = buf == null ? new LinkedHashSet<Coord>() : buf;
-		todos.add(start);
+		for (int i = 0; i < nb; i++)
+			result.add(toCoord(cells[i]));
+		postprocess(rng, result, eatBorders);
+		return result;
+	}
+
+	/**
+	 * A variant of
+	 * {@link #flood(IRNG, int, int, IFloodObjective, boolean, LinkedHashSet)}
+	 * that stores the result as cell indexes (see {@link #toIndex(int, int)}),
+	 * so that callers don't need to allocate anything. It calls
+	 * {@code objective} exactly like the other variant, and {@code rng} too if
+	 * its {@code getRandomElement(List)} draws {@code nextInt(size)} (as
+	 * {@link com.hgames.rhogue.rng.AbstractRNG} does). Postprocessing is done
+	 * on the indexes, hence overrides of
+	 * {@link #postprocess(IRNG, Collection, boolean)},
+	 * {@link #eatBorders(IRNG, Collection)},
+	 * {@link #removeLonelies(Collection)}, and
+	 * {@link #removeLonelies0(Collection)} are not called.
+	 * 
+	 * @param rng
+	 * @param x
+	 *            Where to start.
+	 * @param y
+	 *            Where to start.
+	 * @param objective
+	 *            How to control when to stop the floodfill.
+	 * @param eatBorders
+	 *            See
+	 *            {@link #flood(IRNG, int, int, IFloodObjective, boolean, LinkedHashSet)}
+	 * @param buf
+	 *            Where to store the result. Its length should be at least
+	 *            {@code width * height}.
+	 * @return The number of cells stored in {@code buf}, in flood order.
+	 */
+	public int flood(IRNG rng, int x, int y, IFloodObjective objective, boolean eatBorders, int[] buf) {
+		if (!canBeFloodOn_(x, y))
+			return 0;
+		final int nb = flood0(x, y, objective, buf);
+		return postprocess(rng, buf, nb, eatBorders);
+	}
+
+	/**
+	 * A scanline variant of
+	 * {@link #flood(IRNG, int, int, IFloodObjective, boolean, int[])}, that
+	 * floods vertical runs of cells at once instead of single cells. It is
+	 * faster on big open areas, but the order in which cells are flooded
+	 * differs: if {@code objective} stops the flood before it's complete, the
+	 * result differs from the cell-by-cell variants.
+	 * 
+	 * @param rng
+	 * @param x
+	 *            Where to start.
+	 * @param y
+	 *            Where to start.
+	 * @param objective
+	 *            How to control when to stop the floodfill.
+	 * @param eatBorders
+	 *            See
+	 *            {@link #flood(IRNG, int, int, IFloodObjective, boolean, LinkedHashSet)}
+	 * @param buf
+	 *            Where to store the result. Its length should be at least
+	 *            {@code width * height}.
+	 * @return The number of cells stored in {@code buf}.
+	 */
+	public int floodSpans(IRNG rng, int x, int y, IFloodSpanObjective objective, boolean eatBorders, int[] buf) {
+		if (!canBeFloodOn_(x, y))
+			return 0;
+		final int nb = floodSpans0(x, y, objective, buf);
+		return postprocess(rng, buf, nb, eatBorders);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The index of (x, y) in the results of
+	 *         {@link #flood(IRNG, int, int, IFloodObjective, boolean, int[])}.
+	 */
+	public final int toIndex(int x, int y) {
+		return (x * height) + y;
+	}
+
+	/**
+	 * @param index
+	 *            A result of {@link #toIndex(int, int)}.
+	 * @return The cell whose index is {@code index}.
+	 */
+	public final Coord toCoord(int index) {
+		return Coord.get(index / height, index % height);
+	}
+
+	/**
+	 * The flood itself, in breadth-first order. Cells are marked when queued
+	 * (instead of when dequeued) so that the queue doesn't contain duplicates,
+	 * which doesn't change the order in which cells are flooded.
+	 * 
+	 * @return The number of cells stored in {@code buf}.
+	 */
+	private int flood0(int x, int y, IFloodObjective objective, int[] buf) {
+		final int sz = width * height;
+		if (todos == null || todos.length < sz) {
+			todos = new int[sz];
+			dones = new long[(sz + 63) >>> 6];
+		} else
+			Arrays.fill(dones, 0);
+		int head = 0;
+		int tail = 0;
+		final int start = toIndex(x, y);
+		todos[tail++] = start;
+		dones[start >>> 6] |= 1L << (start & 63);
+		int result = 0;
 		final Direction[] outwards = getOutwards();
-		while (!todos.isEmpty() && !objective.isMet()) {
-			final Coord head = todos.remove();
-			if (!dones.add(head))
-				continue;
-			assert canBeFloodOn_(head);
-			result.add(head);
-			objective.record(head);
+		while (head < tail && !objective.isMet()) {
+			final int cell = todos[head++];
+			final int cx = cell / height;
+			final int cy = cell % height;
+			assert canBeFloodOn_(cx, cy);
+			buf[result++] = cell;
+			objective.record(Coord.get(cx, cy));
 			if (!objective.isMet()) {
 				for (Direction dir : outwards) {
-					final Coord neighbor = head.translate(dir);
-					if (canBeFloodOn_(neighbor) && !dones.contains(neighbor))
-						todos.add(neighbor);
+					final int nx = cx + dir.deltaX;
+					final int ny = cy + dir.deltaY;
+					if (!canBeFloodOn_(nx, ny))
+						continue;
+					final int neighbor = toIndex(nx, ny);
+					final long mask = 1L << (neighbor & 63);
+					if ((dones[neighbor >>> 6] & mask) == 0) {
+						dones[neighbor >>> 6] |= mask;
+						todos[tail++] = neighbor;
+					}
 				}
 			}
 		}
-		if (result != null)
-			postprocess(rng, result, eatBorders);
 		return result;
 	}
 
-	private final boolean canBeFloodOn_(Coord c) {
-		return validInDungeon(c) && canBeFloodOn(c);
+	/**
+	 * The scanline flood. {@link #todos} is used as a stack of seeds, that may
+	 * contain duplicates; {@link #dones} is the bitset of flooded cells.
+	 * 
+	 * @return The number of cells stored in {@code buf}.
+	 */
+	private int floodSpans0(int x, int y, IFloodSpanObjective objective, int[] buf) {
+		final int sz = width * height;
+		if (todos == null || todos.length < sz) {
+			todos = new int[sz];
+			dones = new long[(sz + 63) >>> 6];
+		} else
+			Arrays.fill(dones, 0);
+		/* Whether runs must be extended by one to find neighbors */
+		boolean diagonals = false;
+		for (Direction dir : getOutwards())
+			diagonals |= dir.deltaX != 0 && dir.deltaY != 0;
+		int top = 0;
+		todos[top++] = toIndex(x, y);
+		int result = 0;
+		while (0 < top && !objective.isMet()) {
+			final int seed = todos[--top];
+			if (isDone(seed))
+				continue;
+			final int sx = seed / height;
+			final int sy = seed % height;
+			assert canBeFloodOn_(sx, sy);
+			/* Extend the run containing the seed */
+			int yStart = sy;
+			while (canBeFloodOn_(sx, yStart - 1) && !isDone(toIndex(sx, yStart - 1)))
+				yStart--;
+			int yEnd = sy;
+			while (canBeFloodOn_(sx, yEnd + 1) && !isDone(toIndex(sx, yEnd + 1)))
+				yEnd++;
+			final int limit = objective.getSpanLimit();
+			assert 0 < limit;
+			if (limit <= yEnd - yStart) {
+				/* Shrink the run around the seed; leave the rest for later */
+				final int runStart = yStart;
+				final int runEnd = yEnd;
+				yStart = Math.min(sy, Math.max(runStart, runEnd - limit + 1));
+				yEnd = yStart + limit - 1;
+				if (runStart < yStart)
+					top = push(top, toIndex(sx, yStart - 1));
+				if (yEnd < runEnd)
+					top = push(top, toIndex(sx, yEnd + 1));
+			}
+			for (int yy = yStart; yy <= yEnd; yy++) {
+				final int cell = toIndex(sx, yy);
+				dones[cell >>> 6] |= 1L << (cell & 63);
+				buf[result++] = cell;
+			}
+			objective.recordSpan(sx, yStart, yEnd);
+			if (objective.isMet())
+				break;
+			/* Seed the runs of the neighboring columns */
+			final int from = diagonals ? yStart - 1 : yStart;
+			final int to = diagonals ? yEnd + 1 : yEnd;
+			for (int nx = sx - 1; nx <= sx + 1; nx += 2) {
+				boolean inRun = false;
+				for (int yy = from; yy <= to; yy++) {
+					final boolean floodable = canBeFloodOn_(nx, yy) && !isDone(toIndex(nx, yy));
+					if (floodable && !inRun)
+						top = push(top, toIndex(nx, yy));
+					inRun = floodable;
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean isDone(int cell) {
+		return (dones[cell >>> 6] & (1L << (cell & 63))) != 0;
+	}
+
+	/** @return The new top of {@link #todos} */
+	private int push(int top, int cell) {
+		if (top == todos.length) {
+			/* Seeds may be duplicated, hence the stack may outgrow the map */
+			final int[] grown = new int[todos.length * 2];
+			System.arraycopy(todos, 0, grown, 0, top);
+			todos = grown;
+		}
+		todos[top] = cell;
+		return top + 1;
+	}
+
+	private int[] getCells() {
+		final int sz = width * height;
+		if (cells == null || cells.length < sz)
+			cells = new int[sz];
+		return cells;
+	}
+
+	private final boolean canBeFloodOn_(int x, int y) {
+		return validInDungeon(x, y) && canBeFloodOn(x, y);
+	}
+
+	/**
+	 * The callers guarantees that {@link #validInDungeon(int, int)} holds for
+	 * {@code (x, y)}. This implementation delegates to
+	 * {@link #canBeFloodOn(Coord)}, override it to avoid going through
+	 * {@link Coord}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return Whether (x, y) can be flooded on.
+	 */
+	protected boolean canBeFloodOn(int x, int y) {
+		return canBeFloodOn(Coord.get(x, y));
 	}
 
 	/**
@@ -133,6 +367,117 @@ public abstract class FloodFill {
 		return 9;
 	}
 
+	/**
+	 * {@link #postprocess(IRNG, Collection, boolean)} on the first {@code nb}
+	 * indexes of {@code cells}, without going through {@link Coord}s. Must be
+	 * called right after the flood, as it reuses its buffers.
+	 * 
+	 * @return The number of cells remaining in {@code cells}, whose order is
+	 *         kept.
+	 */
+	private int postprocess(IRNG rng, int[] cells, int nb, boolean eatBorders) {
+		final long[] members = dones;
+		Arrays.fill(members, 0);
+		for (int i = 0; i < nb; i++)
+			members[cells[i] >>> 6] |= 1L << (cells[i] & 63);
+		if (eatBorders)
+			eatBorders(rng, cells, nb, members);
+		removeLonelies(cells, nb, members);
+		int result = 0;
+		for (int i = 0; i < nb; i++) {
+			final int cell = cells[i];
+			if ((members[cell >>> 6] & (1L << (cell & 63))) != 0)
+				cells[result++] = cell;
+		}
+		if (result < getMinFloodSize())
+			/* Not a valid fill */
+			return 0;
+		return result;
+	}
+
+	/**
+	 * {@link #eatBorders(IRNG, Collection)} on the members of {@code cells}
+	 * (which are all in {@code members} initially), removing eaten cells from
+	 * {@code members}.
+	 */
+	private void eatBorders(IRNG rng, int[] cells, int nb, long[] members) {
+		int eaters = (nb / 24) + 1;
+		/* The internal border, in the order of cells (like Zone.getInternalBorder) */
+		final int[] border = todos;
+		int nbBorder = 0;
+		final Direction[] outwards = Direction.OUTWARDS;
+		for (int i = 0; i < nb; i++) {
+			final int cell = cells[i];
+			for (Direction dir : outwards) {
+				final int neighbor = cell + (dir.deltaX * height) + dir.deltaY;
+				if ((members[neighbor >>> 6] & (1L << (neighbor & 63))) == 0) {
+					border[nbBorder++] = cell;
+					break;
+				}
+			}
+		}
+		if (nbBorder == 0)
+			return;
+		if (eater == null)
+			eater = new CellsEater();
+		eater.members = members;
+		eater.size = nb;
+		while (0 < eaters) {
+			/* Like getRandomElement(List) */
+			final int eatCenter = border[rng.nextInt(nbBorder)];
+			eater.init(eatCenter / height, eatCenter % height, 2);
+			eater.doOnCells();
+			eaters--;
+		}
+	}
+
+	/**
+	 * {@link #removeLonelies(Collection)} on the members of {@code cells} that
+	 * are in {@code members}, removing lonely cells from {@code members}. Like
+	 * {@link Grids#removeLonelies(Collection, List)}, neighbors are counted once
+	 * and only the neighbors of removed cells are examined again.
+	 */
+	private void removeLonelies(int[] cells, int nb, long[] members) {
+		final int sz = width * height;
+		if (neighbors == null || neighbors.length < sz)
+			neighbors = new byte[sz];
+		final Direction[] outwards = Direction.OUTWARDS;
+		final int[] todo = todos;
+		int top = 0;
+		for (int i = 0; i < nb; i++) {
+			final int cell = cells[i];
+			if ((members[cell >>> 6] & (1L << (cell & 63))) == 0)
+				continue;
+			int nbs = 0;
+			/* Flooded cells aren't on the dungeon's edges, hence neighbors are valid */
+			for (Direction dir : outwards) {
+				final int neighbor = cell + (dir.deltaX * height) + dir.deltaY;
+				if ((members[neighbor >>> 6] & (1L << (neighbor & 63))) != 0)
+					nbs++;
+			}
+			neighbors[cell] = (byte) nbs;
+			if (nbs <= 1)
+				todo[top++] = cell;
+		}
+		while (0 < top) {
+			final int cell = todo[--top];
+			final long mask = 1L << (cell & 63);
+			if ((members[cell >>> 6] & mask) == 0)
+				/* Already removed */
+				continue;
+			members[cell >>> 6] &= ~mask;
+			for (Direction dir : outwards) {
+				final int neighbor = cell + (dir.deltaX * height) + dir.deltaY;
+				if ((members[neighbor >>> 6] & (1L << (neighbor & 63))) == 0)
+					continue;
+				neighbors[neighbor]--;
+				/* Becoming lonely now, hence pushed at most once */
+				if (neighbors[neighbor] == 1)
+					todo[top++] = neighbor;
+			}
+		}
+	}
+
 	protected void eatBorders(IRNG rng, final Collection<? extends Coord> result) {
 		/*
 		 * XXX We should not eat the border if it's connecting it to walkable cells.
@@ -159,6 +504,7 @@ public abstract class FloodFill {
 	}
 
 	protected void removeLonelies(Collection<? extends Coord> result) {
+		/* Overrides of removeLonelies0 may do a single pass */
 		while (true) {
 			final int effect = removeLonelies0(result);
 			if (effect == 0)
@@ -166,25 +512,27 @@ public abstract class FloodFill {
 		}
 	}
 
-	/** @return The number of cells removed */
+	/**
+	 * Removes lonely cells from {@code coords}. This implementation removes
+	 * them until there are none (see {@link Grids#removeLonelies(Collection, List)}),
+	 * overrides may do a single pass: this method is called until it removes
+	 * nothing.
+	 * 
+	 * @return The number of cells removed
+	 */
 	protected int removeLonelies0(Collection<? extends Coord> coords) {
-		final Iterator<? extends Coord> it = coords.iterator();
-		int result = 0;
-		while (it.hasNext()) {
-			final Coord c = it.next();
-			if (Grids.borderness(coords, c) >= 7) {
-				it.remove();
-				result++;
-			}
-		}
-		return result;
+		return Grids.removeLonelies(coords, null);
 	}
 
 	protected boolean validInDungeon(Coord c) {
-		if (c.x <= 0 || c.y <= 0)
+		return validInDungeon(c.x, c.y);
+	}
+
+	protected boolean validInDungeon(int x, int y) {
+		if (x <= 0 || y <= 0)
 			/* On edge or oob */
 			return false;
-		if (width - 1 <= c.x || height - 1 <= c.y)
+		if (width - 1 <= x || height - 1 <= y)
 			/* On edge or oob */
 			return false;
 		return true;
@@ -195,4 +543,31 @@ public abstract class FloodFill {
 		return Direction.CARDINALS;
 	}
 
+	/**
+	 * Removes the cells of a circle from a bitset of cells, for the index variant
+	 * of {@link FloodFill#eatBorders(IRNG, Collection)}.
+	 * 
+	 * @author smelC
+	 */
+	private final class CellsEater extends DoerInACircle {
+
+		long[] members;
+		/** The number of cells in {@link #members} */
+		int size;
+
+		@Override
+		protected boolean doOnACell(int x, int y) {
+			if (0 <= x && x < width && 0 <= y && y < height) {
+				final int cell = toIndex(x, y);
+				final long mask = 1L << (cell & 63);
+				if ((members[cell >>> 6] & mask) != 0) {
+					members[cell >>> 6] &= ~mask;
+					size--;
+				}
+			}
+			return size == 0;
+		}
+
+	}
+
 }
@@ -0,0 +1,29 @@
+package com.hgames.rhogue.generation.map.dungeon.flood;
+
+/**
+ * An objective that accepts whole runs of cells at once, for
+ * {@link FloodFill#floodSpans(squidpony.squidmath.IRNG, int, int, IFloodSpanObjective, boolean, int[])}
+ * . Runs are vertical: they span consecutive {@code y}s of a single {@code x}.
+ *
+ * @author smelC
+ */
+public interface IFloodSpanObjective extends IFloodObjective {
+
+	/**
+	 * @return The maximum number of cells that the next run may contain, or
+	 *         {@link Integer#MAX_VALUE} if unbounded. Must be positive if
+	 *         {@link #isMet()} doesn't hold.
+	 */
+	public int getSpanLimit();
+
+	/**
+	 * @param x
+	 *            The x-coordinate of the cells flooded on.
+	 * @param yStart
+	 *            The y-coordinate of the first cell flooded on.
+	 * @param yEnd
+	 *            The y-coordinate of the last cell flooded on (inclusive).
+	 */
+	public void recordSpan(int x, int yStart, int yEnd);
+
+}
@@ -5,10 +5,10 @@ import java.util.List;
 
 import com.hgames.lib.Exceptions;
 import com.hgames.lib.Objects;
-import com.hgames.lib.collection.multiset.EnumMultiset;
 import com.hgames.rhogue.generation.map.dungeon.Dungeon;
 import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
 import com.hgames.rhogue.generation.map.dungeon.Dungeons;
+import com.hgames.rhogue.generation.map.dungeon.NeighborMasks;
 
 import squidpony.squidgrid.Direction;
 import squidpony.squidmath.Coord;
@@ -74,7 +74,7 @@ public abstract class SkeletalStairGenerator implements IStairGenerator {
 			break;
 		}
 		/* Cardinal neighbors */
-		final EnumMultiset<DungeonSymbol> cneighbors = Dungeons.getNeighbors(dungeon, c.x, c.y, false);
+		final int cneighbors = Dungeons.getNeighborMask(dungeon, c.x, c.y, false);
 		boolean reachable = false;
 		/* This pattern to avoid missing a case */
 		for (DungeonSymbol dsym : DungeonSymbol.values()) {
@@ -86,14 +86,14 @@ public abstract class SkeletalStairGenerator implements IStairGenerator {
 			case GRASS:
 			case SHALLOW_WATER:
 			case FLOOR:
-				if (cneighbors.contains(dsym))
+				if (NeighborMasks.contains(cneighbors, dsym))
 					reachable |= true;
 				continue;
 			case DOOR:
 			case HIGH_GRASS:
 			case STAIR_DOWN:
 			case STAIR_UP:
-				if (cneighbors.contains(dsym))
+				if (NeighborMasks.contains(cneighbors, dsym))
 					/* Stair should not be cardinally adjacent to those */
 					return false;
 				continue;
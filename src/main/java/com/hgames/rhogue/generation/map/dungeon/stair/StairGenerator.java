@@ -17,6 +17,7 @@ import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator;
 import com.hgames.rhogue.generation.map.dungeon.DungeonZonesCrawler;
 import com.hgames.rhogue.generation.map.dungeon.Dungeons;
 import com.hgames.rhogue.generation.map.dungeon.ICellToZone;
+import com.hgames.rhogue.generation.map.dungeon.WalkableComponents;
 import com.hgames.rhogue.generation.map.dungeon.connection.IConnectionFinder;
 import com.hgames.rhogue.generation.map.rgenerator.IRoomGenerator;
 import com.hgames.rhogue.zone.Zone;
@@ -35,6 +36,11 @@ public class StairGenerator extends AbstractStairGenerator {
 	protected final DungeonGenerator gen;
 	protected final ICellToZone containerFinder;
 	protected final IConnectionFinder connections;
+	/**
+	 * The components of cells from which stairs can be reached, or null to
+	 * crawl zones instead.
+	 */
+	protected /* @Nullable */ WalkableComponents components;
 
 	private static final DoublePriorityCell<Zone> DP_CELL = DoublePriorityCell.createEmptyInverted();
 
@@ -57,6 +63,17 @@ public class StairGenerator extends AbstractStairGenerator {
 		this.connections = connections;
 	}
 
+	/**
+	 * @param components
+	 *            The components of cells from which stairs can be reached, to
+	 *            check the size of the area around stairs without crawling
+	 *            zones. They should be shared by calls during a stage, to label
+	 *            the dungeon once.
+	 */
+	public void setWalkableComponents(/* @Nullable */ WalkableComponents components) {
+		this.components = components;
+	}
+
 	@Override
 	protected Coord getObjective0() {
 		final /* @Nullable */ Coord other = dungeon.getStair(!upOrDown);
@@ -217,6 +234,8 @@ public class StairGenerator extends AbstractStairGenerator {
 	 *         {@code z}.
 	 */
 	private boolean reachesAtLeast(Zone z, int objective) {
+		if (components != null)
+			return objective <= components.getReachableSize(z);
 		int result = z.size();
 		if (objective <= result)
 			return true;
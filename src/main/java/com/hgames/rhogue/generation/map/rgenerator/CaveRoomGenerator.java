@@ -1,24 +1,27 @@
 package com.hgames.rhogue.generation.map.rgenerator;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
-import com.hgames.lib.Arrays;
 import com.hgames.rhogue.generation.map.draw.IDungeonDrawer;
 import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
 import com.hgames.rhogue.generation.map.dungeon.RoomComponent;
 import com.hgames.rhogue.zone.Zone;
 import com.hgames.rhogue.zone.Zones;
 
-import squidpony.squidgrid.Direction;
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.IRNG;
 
 /**
  * A room generator that generates caves.
  * 
+ * <p>
+ * Caves are encoded as bitsets: each column {@code x} is stored in
+ * {@code words} consecutive {@code long}s (the bit {@code y & 63} of the word
+ * {@code x * words + (y >>> 6)} is set if {@code (x, y)} is a floor), so that
+ * the cellular automaton handles 64 cells at once.
+ * </p>
+ * 
  * @author smelC
  */
 public class CaveRoomGenerator extends SkeletalRoomGenerator {
@@ -26,11 +29,13 @@ public class CaveRoomGenerator extends SkeletalRoomGenerator {
 	protected int initialWallProbability = 45;
 	protected int iterations = 5;
 
-	/* A field to minimize allocations */
-	private /*@Nullable*/ Queue<Coord> todos;
+	/** Where to pick caves from, if any */
+	protected /*@Nullable*/ CaveTemplateCache templates;
 
-	private static final boolean WALL = false;
-	private static final boolean FLOOR = !WALL;
+	/* Fields to minimize allocations */
+	private /*@Nullable*/ long[] now;
+	private /*@Nullable*/ long[] after;
+	private /*@Nullable*/ int[] todos;
 
 	static final int MIN_SIDE_SIZE = 5;
 
@@ -43,8 +48,19 @@ public class CaveRoomGenerator extends SkeletalRoomGenerator {
 		setMinSideSize(MIN_SIDE_SIZE, false);
 	}
 
+	/**
+	 * @param templates
+	 *            Where to pick caves from, or null to generate a fresh cave
+	 *            every time (the default).
+	 */
+	public void setTemplates(/*@Nullable*/ CaveTemplateCache templates) {
+		this.templates = templates;
+	}
+
 	@Override
 	public Zone generate(IRNG rng, RoomComponent component, Coord translation, int maxWidth, int maxHeight) {
+		if (templates != null)
+			return templates.get(rng, this, maxWidth, maxHeight);
 		return generate(rng, maxWidth, maxHeight, null);
 	}
 
@@ -62,152 +78,204 @@ public class CaveRoomGenerator extends SkeletalRoomGenerator {
 
 		final boolean boulderizeOpenArea = rng.nextBoolean() && (8 <= maxWidth && 8 <= maxHeight);
 
-		/* Walls are encoded with 'false', floors with 'true' */
-		final boolean[][] now = new boolean[maxWidth][maxHeight];
-		final boolean[][] after = new boolean[maxWidth][maxHeight];
+		final int words = (maxHeight + 63) >>> 6;
+		final int sz = maxWidth * words;
+		if (now == null || now.length < sz) {
+			now = new long[sz];
+			after = new long[sz];
+		}
 
 		/* Initialize */
 		for (int x = 0; x < maxWidth; x++) {
-			for (int y = 0; y < maxHeight; y++) {
-				now[x][y] = !rng.roll(initialWallProbability, 100);
+			for (int i = 0; i < words; i++) {
+				long word = 0;
+				final int ys = Math.min(64, maxHeight - (i << 6));
+				for (int b = 0; b < ys; b++) {
+					if (!rng.roll(initialWallProbability, 100)) word |= 1L << b;
+				}
+				now[(x * words) + i] = word;
 			}
 		}
 
 		// To draw initial state:
-		// if (drawer != null) drawer.draw(toSymbols(now));
+		// if (drawer != null) drawer.draw(toSymbols(now, maxWidth, maxHeight));
 
 		for (int i = 0; i < iterations; i++) {
-			for (int x = 0; x < maxWidth; x++) {
-				for (int y = 0; y < maxHeight; y++) {
-					final int neighborWalls = neighborWalls(now, x, y, true);
-					if (boulderizeOpenArea && neighborWalls == 0)
-						after[x][y] = WALL;
-					else
-						/* It's a floor if neighborWalls < 5 */
-						after[x][y] = neighborWalls < 5;
-				}
-			}
-			pourInto(after, now);
+			step(now, after, maxWidth, maxHeight, boulderizeOpenArea);
+			/* Swap buffers */
+			final long[] tmp = now;
+			now = after;
+			after = tmp;
 			// To dray intermediate states:
-			// if (drawer != null) drawer.draw(toSymbols(now));
+			// if (drawer != null) drawer.draw(toSymbols(now, maxWidth, maxHeight));
 		}
 
-		sanitize(now);
+		sanitize(now, after, maxWidth, maxHeight);
 
-		if (!stronglyConnected(now, after)) return null;
+		if (!stronglyConnected(now, after, maxWidth, maxHeight)) return null;
 
 		final List<Coord> result = new ArrayList<Coord>((maxWidth * maxHeight) / 2);
 		for (int x = 0; x < maxWidth; x++) {
 			for (int y = 0; y < maxHeight; y++) {
-				if (now[x][y] == FLOOR) result.add(Coord.get(x, -y));
+				if (isFloor(now, words, x, y)) result.add(Coord.get(x, -y));
 			}
 		}
 
 		// Draw final state
-		if (drawer != null) drawer.draw(toSymbols(now));
+		if (drawer != null) drawer.draw(toSymbols(now, maxWidth, maxHeight));
 
 		return result.size() < 4 ? null : Zones.build(result);
 	}
 
-	/** @return if all cells of {@code map} are cardinally connected */
-	private boolean stronglyConnected(boolean[][] map, boolean[][] buf) {
-		final int width = map.length;
-		final int height = width == 0 ? 0 : map[0].length;
-	
-		Coord start = null;
-	
-		/* Let's put false everywhere in 'buf', to use it as a reachable marker */
-		/* and look for a starting point in 'map' at the same time */
-	
+	/**
+	 * One iteration of the cellular automaton: a cell becomes a floor if less
+	 * than 5 of its 8 neighbors are walls (out of bounds cells being walls),
+	 * except if {@code boulderize} holds and it has no wall neighbor. The 8
+	 * neighbors of 64 cells are summed at once with bit-sliced adders.
+	 */
+	private static void step(long[] now, long[] after, int width, int height, boolean boulderize) {
+		final int words = (height + 63) >>> 6;
 		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				if (start == null && map[x][y] == FLOOR) start = Coord.get(x, y);
-				buf[x][y] = false;
-			}
-		}
-	
-		if (start == null) return false;
-	
-		if (todos == null) todos = new LinkedList<Coord>();
-		else if (!todos.isEmpty()) { assert false; todos.clear(); }
-
-		todos.add(start);
-		while (!todos.isEmpty()) {
-			final Coord todo = todos.remove();
-			if (buf[todo.x][todo.y]) continue;
-			buf[todo.x][todo.y] = FLOOR;
-			for (Direction dir : Direction.CARDINALS) {
-				final Coord neighbor = todo.translate(dir);
-				if (!Arrays.isValid(map, neighbor.x, neighbor.y)) continue;
-				if (map[neighbor.x][neighbor.y] == FLOOR && !buf[neighbor.x][neighbor.y])
-					/* Go to a walkable neighbor */
-					todos.add(neighbor);
+			for (int i = 0; i < words; i++) {
+				/* The bits of the number of walls around each cell */
+				long c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+				for (int dx = -1; dx <= 1; dx++) {
+					final long w = walls(now, width, words, x + dx, i);
+					final long below = walls(now, width, words, x + dx, i - 1);
+					final long above = walls(now, width, words, x + dx, i + 1);
+					/* The bit y of yMinus is the bit y-1 of the column */
+					final long yMinus = (w << 1) | (below >>> 63);
+					final long yPlus = (w >>> 1) | (above << 63);
+					long carry;
+					/* Add yMinus */
+					carry = c0 & yMinus; c0 ^= yMinus;
+					long t = c1 & carry; c1 ^= carry; carry = t;
+					t = c2 & carry; c2 ^= carry; c3 |= t;
+					/* Add yPlus */
+					carry = c0 & yPlus; c0 ^= yPlus;
+					t = c1 & carry; c1 ^= carry; carry = t;
+					t = c2 & carry; c2 ^= carry; c3 |= t;
+					if (dx != 0) {
+						/* Add w */
+						carry = c0 & w; c0 ^= w;
+						t = c1 & carry; c1 ^= carry; carry = t;
+						t = c2 & carry; c2 ^= carry; c3 |= t;
+					}
+				}
+				/* It's a floor if neighborWalls < 5 */
+				long floors = ~(c3 | (c2 & (c1 | c0)));
+				if (boulderize)
+					/* Cells without wall neighbors become walls */
+					floors &= c0 | c1 | c2 | c3;
+				after[(x * words) + i] = floors & validBits(height, i);
 			}
 		}
+	}
 
-		todos.clear();
-	
-		/* Now check that map's entirety has been visited */
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++)
-				if (map[x][y] == FLOOR && buf[x][y] != FLOOR) return false;
-		}
-	
-		return true;
+	/**
+	 * @return The walls of the {@code i}-th word of column {@code x}. Out of
+	 *         bounds cells are walls.
+	 */
+	private static long walls(long[] map, int width, int words, int x, int i) {
+		if (x < 0 || width <= x || i < 0 || words <= i) return -1L;
+		/* Bits beyond the height are 0 in 'map', hence walls here */
+		return ~map[(x * words) + i];
+	}
+
+	/** @return The bits of the {@code i}-th word of a column that are in the map */
+	private static long validBits(int height, int i) {
+		final int ys = height - (i << 6);
+		return 64 <= ys ? -1L : (1L << ys) - 1;
+	}
+
+	private static boolean isFloor(long[] map, int words, int x, int y) {
+		return (map[(x * words) + (y >>> 6)] & (1L << (y & 63))) != 0;
 	}
 
-	private static int neighborWalls(boolean[][] map, int x, int y, boolean oobCounts) {
-		int result = 0;
-		for (Direction dir : Direction.OUTWARDS) {
-			final int xprime = x + dir.deltaX;
-			final int yprime = y + dir.deltaY;
-			if (!Arrays.isValid(map, xprime, yprime)) { 
-				if (oobCounts) result++;
-				continue;
+	/** @return if all cells of {@code map} are cardinally connected */
+	private boolean stronglyConnected(long[] map, long[] buf, int width, int height) {
+		final int words = (height + 63) >>> 6;
+		final int sz = width * words;
+
+		/* Let's put 0 everywhere in 'buf', to use it as a reachable marker */
+		/* and look for a starting point in 'map' at the same time */
+		int start = -1;
+		for (int j = 0; j < sz; j++) {
+			if (start < 0 && map[j] != 0) start = j;
+			buf[j] = 0;
+		}
+
+		if (start < 0) return false;
+
+		if (todos == null || todos.length < width * height) todos = new int[width * height];
+
+		/* Cells are encoded as x * height + y */
+		final int sx = start / words;
+		final int sy = ((start % words) << 6) + Long.numberOfTrailingZeros(map[start]);
+		int top = 0;
+		todos[top++] = (sx * height) + sy;
+		buf[start] |= 1L << (sy & 63);
+		while (0 < top) {
+			final int todo = todos[--top];
+			final int x = todo / height;
+			final int y = todo % height;
+			for (int d = 0; d < 4; d++) {
+				/* Cardinal neighbors */
+				final int nx = d == 0 ? x - 1 : (d == 1 ? x + 1 : x);
+				final int ny = d == 2 ? y - 1 : (d == 3 ? y + 1 : y);
+				if (nx < 0 || width <= nx || ny < 0 || height <= ny) continue;
+				final int j = (nx * words) + (ny >>> 6);
+				final long bit = 1L << (ny & 63);
+				if ((map[j] & bit) != 0 && (buf[j] & bit) == 0) {
+					/* Go to a walkable neighbor */
+					buf[j] |= bit;
+					todos[top++] = (nx * height) + ny;
+				}
 			}
-			if (map[xprime][yprime] == WALL) result++;
 		}
-		return result;
-	}
 
-	private static void pourInto(boolean[][] a1, boolean[][] a2) {
-		for (int x = 0; x < a1.length; x++) {
-			final boolean[] ys = a1[x];
-			for (int y = 0; y < ys.length; y++)
-				a2[x][y] = a1[x][y];
+		/* Now check that map's entirety has been visited */
+		for (int j = 0; j < sz; j++) {
+			if (map[j] != buf[j]) return false;
 		}
+
+		return true;
 	}
 
-	private static void sanitize(boolean[][] map) {
-		final int width = map.length;
-		final int height = width == 0 ? 0 : map[0].length;
+	/**
+	 * Inverts cells that don't have enough cardinal neighbors of their type, in
+	 * passes over the map until nothing changes. Cells are inverted in place,
+	 * in the order of a pass: a cell sees the changes made to the cells before
+	 * it. To preserve this order while not examining every cell, a pass visits
+	 * the insane cells of {@code insanes}, that is updated when cells are
+	 * inverted.
+	 * 
+	 * @param insanes
+	 *            A buffer.
+	 */
+	private static void sanitize(long[] map, long[] insanes, int width, int height) {
+		final int words = (height + 63) >>> 6;
 		int roll = 0;
 		while (roll < 64) {
 			boolean change = false;
+			computeInsanes(map, insanes, width, height);
 			for (int x = 0; x < width; x++) {
-				for (int y = 0; y < height; y++) {
-					final boolean cell = map[x][y] == FLOOR;
-					/* Check that cell has a cardinal neighbor of same type */
-					boolean sane = false;
-					int nbNeighborsOfSameType = 0;
-					for (Direction dir : Direction.CARDINALS) {
-						final int xprime = x + dir.deltaX;
-						final int yprime = y + dir.deltaY;
-						if (Arrays.isValid(map, xprime, yprime) &&
-								map[xprime][yprime] == cell) {
-							nbNeighborsOfSameType++;
-							if (!cell || nbNeighborsOfSameType >= 2) {
-								/* Wall needs a single cardinal neighbor to be sane */
-								/* Floor needs two cardinal neighbors to be sane (for convexity) */
-								sane = true;
-								break;
-							}
-						}
-					}
-					if (!sane) {
+				for (int i = 0; i < words; i++) {
+					final int j = (x * words) + i;
+					int from = 0;
+					while (from < 64) {
+						/* Read it again every time, inverting a cell may change it */
+						final long candidates = insanes[j] & (-1L << from);
+						if (candidates == 0) break;
+						final int b = Long.numberOfTrailingZeros(candidates);
+						final int y = (i << 6) + b;
 						/* Invert */
-						map[x][y] = !cell;
+						map[j] ^= 1L << b;
 						change = true;
+						/* Update the cells after this one (the ones before are recomputed at next pass) */
+						if (y + 1 < height) setInsane(map, insanes, width, height, x, y + 1);
+						if (x + 1 < width) setInsane(map, insanes, width, height, x + 1, y);
+						from = b + 1;
 					}
 				}
 			}
@@ -218,13 +286,58 @@ public class CaveRoomGenerator extends SkeletalRoomGenerator {
 			System.err.println("Emergency exit in " + CaveRoomGenerator.class.getSimpleName() + "::sanitize");
 	}
 
-	private static DungeonSymbol[][] toSymbols(boolean[][] map) {
-		final int width = map.length;
-		final int height = width == 0 ? 0 : map[0].length;
+	/**
+	 * Sets the bits of the cells of {@code map} that aren't sane in
+	 * {@code insanes}: walls need a single cardinal neighbor of the same type,
+	 * floors need two (for convexity).
+	 */
+	private static void computeInsanes(long[] map, long[] insanes, int width, int height) {
+		final int words = (height + 63) >>> 6;
+		for (int x = 0; x < width; x++) {
+			for (int i = 0; i < words; i++) {
+				final int j = (x * words) + i;
+				final long cells = map[j];
+				final long valid = validBits(height, i);
+				final long prev = 0 < i ? map[j - 1] : 0;
+				final long next = i + 1 < words ? map[j + 1] : 0;
+				/* Whether the neighbor in a direction exists and is of the same type */
+				final long up = (cells << 1) | (prev >>> 63);
+				final long sameUp = valid & (i == 0 ? ~1L : -1L) & ~(cells ^ up);
+				final long down = (cells >>> 1) | (next << 63);
+				final long downValid = (valid >>> 1) | (i + 1 < words ? Long.MIN_VALUE : 0);
+				final long sameDown = valid & downValid & ~(cells ^ down);
+				final long sameLeft = 0 < x ? valid & ~(cells ^ map[j - words]) : 0;
+				final long sameRight = x + 1 < width ? valid & ~(cells ^ map[j + words]) : 0;
+				final long any = sameUp | sameDown | sameLeft | sameRight;
+				final long two = (sameUp & (sameDown | sameLeft | sameRight)) | (sameDown & (sameLeft | sameRight))
+						| (sameLeft & sameRight);
+				insanes[j] = valid & ((~cells & ~any) | (cells & ~two));
+			}
+		}
+	}
+
+	/** Sets the bit of (x, y) in {@code insanes}, as in {@link #computeInsanes} */
+	private static void setInsane(long[] map, long[] insanes, int width, int height, int x, int y) {
+		final int words = (height + 63) >>> 6;
+		final boolean cell = isFloor(map, words, x, y);
+		int nbNeighborsOfSameType = 0;
+		if (0 < x && isFloor(map, words, x - 1, y) == cell) nbNeighborsOfSameType++;
+		if (x + 1 < width && isFloor(map, words, x + 1, y) == cell) nbNeighborsOfSameType++;
+		if (0 < y && isFloor(map, words, x, y - 1) == cell) nbNeighborsOfSameType++;
+		if (y + 1 < height && isFloor(map, words, x, y + 1) == cell) nbNeighborsOfSameType++;
+		final boolean sane = nbNeighborsOfSameType >= (cell ? 2 : 1);
+		final int j = (x * words) + (y >>> 6);
+		final long bit = 1L << (y & 63);
+		if (sane) insanes[j] &= ~bit;
+		else insanes[j] |= bit;
+	}
+
+	private static DungeonSymbol[][] toSymbols(long[] map, int width, int height) {
+		final int words = (height + 63) >>> 6;
 		final DungeonSymbol[][] syms = new DungeonSymbol[width][height];
 		for (int x = 0; x < width ; x++) {
 			for (int y = 0; y < height; y++) {
-				syms[x][y] = map[x][y] == FLOOR ? DungeonSymbol.FLOOR : DungeonSymbol.WALL;
+				syms[x][y] = isFloor(map, words, x, y) ? DungeonSymbol.FLOOR : DungeonSymbol.WALL;
 			}
 		}
 		return syms;
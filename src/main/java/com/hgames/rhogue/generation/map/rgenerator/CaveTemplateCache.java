@@ -0,0 +1,189 @@
+package com.hgames.rhogue.generation.map.rgenerator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * A pool of caves generated by {@link CaveRoomGenerator}, bucketed by
+ * {@code (maxWidth, maxHeight)} rounded down to a multiple of
+ * {@link #GRANULARITY}. Only caves that passed the generator's validation
+ * (connectivity, minimum size) are pooled. Once buckets are full, placement
+ * attempts that {@link com.hgames.rhogue.generation.map.dungeon.RoomComponent}
+ * rejects (because the cave doesn't fit, or isn't connected to the dungeon)
+ * cost a lookup instead of a generation. Templates are at {@code (0, 0)}, like
+ * the zones returned by {@link IRoomGenerator}, and are translated into place
+ * by callers.
+ * 
+ * <p>
+ * Templates of a bucket are generated with the bucket's size, so they fit any
+ * query of the bucket, but can be a bit smaller than caves generated without a
+ * cache.
+ * </p>
+ * 
+ * <p>
+ * Buckets are filled lazily: a query of a bucket that has less than
+ * {@link #poolSize} templates generates a single cave (like without a cache),
+ * adds it to the bucket, and returns it. Other queries pick a template. There's
+ * no background refill, to stay single-threaded. Generation and picking use
+ * the {@link IRNG} of the query, so that generation stays deterministic given
+ * the cache's state. As a cache shared by multiple dungeons makes the output of
+ * a seed depend on the dungeons generated before, use
+ * {@link #setReproducible(boolean)} when exact replay is required.
+ * </p>
+ * 
+ * <p>
+ * Buckets are evicted in least recently used order, so that the cache never
+ * exceeds the number of bytes given at construction (approximately).
+ * </p>
+ * 
+ * @author smelC
+ */
+public class CaveTemplateCache {
+
+	/** The number of templates that a bucket is refilled to */
+	protected final int poolSize;
+
+	/** The memory budget, in bytes */
+	protected final long maxBytes;
+
+	/**
+	 * Whether the cache is bypassed, so that caves are generated exactly as
+	 * without a cache.
+	 */
+	protected boolean reproducible;
+
+	/** An estimation of the memory used by a template, excluding its cells */
+	private static final int TEMPLATE_OVERHEAD = 64;
+
+	/** Sizes of buckets are multiples of this value (or the minimum size of caves) */
+	private static final int GRANULARITY = 4;
+
+	/**
+	 * Keys are {@code (maxWidth, maxHeight)}. In access order, so that
+	 * iteration starts with the least recently used.
+	 */
+	private final LinkedHashMap<Coord, List<Zone>> buckets;
+	/** An estimation of the memory used by {@link #buckets} */
+	private long bytes;
+
+	/**
+	 * @param poolSize
+	 *            The number of templates per bucket. The higher, the more
+	 *            diverse caves are.
+	 * @param maxBytes
+	 *            The memory budget of this cache, in bytes.
+	 */
+	public CaveTemplateCache(int poolSize, long maxBytes) {
+		if (poolSize <= 0)
+			throw new IllegalStateException("Pool size of cave cache must be > 0. Received: " + poolSize);
+		if (maxBytes < 0)
+			throw new IllegalStateException("Memory budget of cave cache must be >= 0. Received: " + maxBytes);
+		this.poolSize = poolSize;
+		this.maxBytes = maxBytes;
+		this.buckets = new LinkedHashMap<Coord, List<Zone>>(16, 0.75f, true);
+	}
+
+	/**
+	 * @param value
+	 *            Whether to bypass this cache, so that a seed always yields
+	 *            the same caves.
+	 */
+	public void setReproducible(boolean value) {
+		this.reproducible = value;
+	}
+
+	/**
+	 * @return Whether this cache is bypassed.
+	 */
+	public boolean isReproducible() {
+		return reproducible;
+	}
+
+	/**
+	 * @param rng
+	 *            The rng used to fill the bucket or to pick a template.
+	 * @param generator
+	 *            The generator used to fill the bucket.
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @return A cave at {@code (0, 0)}, shared with other callers: translate it
+	 *         before use and do not modify it. Or null if none could be
+	 *         generated.
+	 */
+	public /*@Nullable*/ Zone get(IRNG rng, CaveRoomGenerator generator, int maxWidth, int maxHeight) {
+		if (reproducible)
+			return generator.generate(rng, maxWidth, maxHeight, null);
+		final int width = getBucketSide(maxWidth);
+		final int height = getBucketSide(maxHeight);
+		final Coord key = Coord.get(width, height);
+		List<Zone> bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<Zone>(poolSize);
+			buckets.put(key, bucket);
+			bytes += TEMPLATE_OVERHEAD;
+		}
+		Zone result = null;
+		if (bucket.size() < poolSize) {
+			/* A single generation, so that a cold bucket costs like no cache */
+			result = generator.generate(rng, width, height, null);
+			if (result != null) {
+				bucket.add(result);
+				bytes += sizeof(result);
+			}
+		}
+		if (result == null && !bucket.isEmpty())
+			result = bucket.get(rng.nextInt(bucket.size()));
+		evict();
+		return result;
+	}
+
+	/** Removes all templates */
+	public void clear() {
+		buckets.clear();
+		bytes = 0;
+	}
+
+	/** @return The number of templates in this cache. */
+	public int size() {
+		int result = 0;
+		for (List<Zone> bucket : buckets.values())
+			result += bucket.size();
+		return result;
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<Coord, List<Zone>>> it = buckets.entrySet().iterator();
+		while (maxBytes < bytes && it.hasNext()) {
+			final List<Zone> evicted = it.next().getValue();
+			bytes -= TEMPLATE_OVERHEAD;
+			for (Zone template : evicted)
+				bytes -= sizeof(template);
+			it.remove();
+		}
+	}
+
+	/**
+	 * @return {@code side} rounded down to a multiple of {@link #GRANULARITY},
+	 *         but not below the minimum size of caves.
+	 */
+	private static int getBucketSide(int side) {
+		if (side <= CaveRoomGenerator.MIN_SIDE_SIZE)
+			/* The generator deals with sides that are too small */
+			return side;
+		return Math.max(CaveRoomGenerator.MIN_SIDE_SIZE, side - (side % GRANULARITY));
+	}
+
+	private static long sizeof(Zone template) {
+		/* A reference per cell (Coords are shared) */
+		return (template.size() * 8) + TEMPLATE_OVERHEAD;
+	}
+
+}
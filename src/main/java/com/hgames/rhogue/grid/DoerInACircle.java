@@ -21,6 +21,20 @@ public abstract class DoerInACircle extends SkeletalCellsDoer {
 	/** The circle's radius (rayon). */
 	protected int radius;
 
+	/** Circles whose radius is greater aren't cached */
+	private static final int MAX_CACHED_RADIUS = 64;
+
+	/**
+	 * The half heights of the columns of circles, by radius (see
+	 * {@link #getHighs(int)}). Built once for all, so that threads can share it.
+	 */
+	private static final int[][] HIGHS = new int[MAX_CACHED_RADIUS + 1][];
+
+	static {
+		for (int r = 0; r <= MAX_CACHED_RADIUS; r++)
+			HIGHS[r] = computeHighs(r);
+	}
+
 	/**
 	 * A fresh instance, you should call {@link #init(int, int, int)} afterwards.
 	 */
@@ -47,8 +61,9 @@ public abstract class DoerInACircle extends SkeletalCellsDoer {
 	public void doOnCells() {
 		if (radius < 0)
 			return;
+		final int[] highs = getHighs(radius);
 		for (int dx = -radius; dx <= radius; ++dx) {
-			final int high = (int) Math.floor(Math.sqrt((radius * radius) - (dx * dx)));
+			final int high = highs[dx + radius];
 			for (int dy = -high; dy <= high; ++dy) {
 				final boolean stop = doOnACell(centerx + dx, centery + dy);
 				if (stop)
@@ -69,8 +84,11 @@ public abstract class DoerInACircle extends SkeletalCellsDoer {
 	 */
 	public static List<Coord> computeAll(int x, int y, int radius, List<Coord> buf) {
 		final List<Coord> result = buf == null ? new ArrayList<Coord>(radius * 4) : buf;
+		if (radius < 0)
+			return result;
+		final int[] highs = getHighs(radius);
 		for (int dx = -radius; dx <= radius; ++dx) {
-			final int high = (int) Math.floor(Math.sqrt((radius * radius) - (dx * dx)));
+			final int high = highs[dx + radius];
 			for (int dy = -high; dy <= high; ++dy) {
 				result.add(Coord.get(x + dx, y + dy));
 			}
@@ -88,9 +106,82 @@ public abstract class DoerInACircle extends SkeletalCellsDoer {
 	 */
 	public static Coord getRandom(IRNG rng, int x, int y, int radius) {
 		final int dx = rng.between(-radius, radius);
-		final int high = (int) Math.floor(Math.sqrt((radius * radius) - (dx * dx)));
+		final int high = radius < 0 ? high(radius, dx) : getHighs(radius)[dx + radius];
 		final int dy = rng.between(-high, high);
 		return Coord.get(x + dx, y + dy);
 	}
 
+	/**
+	 * A variant of {@link #computeAll(int, int, int, List)} that stores cells
+	 * as indexes {@code x * height + y}, skipping cells out of
+	 * {@code [0, width) x [0, height)}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param width
+	 *            The width of the map.
+	 * @param height
+	 *            The height of the map.
+	 * @param buf
+	 *            Where to store the cells. Its length should be at least
+	 *            {@link #size(int) size(radius)}.
+	 * @return The number of cells stored in {@code buf}, in the order of
+	 *         {@link #computeAll(int, int, int, List)}.
+	 */
+	public static int computeAll(int x, int y, int radius, int width, int height, int[] buf) {
+		if (radius < 0)
+			return 0;
+		final int[] highs = getHighs(radius);
+		int result = 0;
+		for (int dx = -radius; dx <= radius; ++dx) {
+			final int cx = x + dx;
+			if (cx < 0 || width <= cx)
+				continue;
+			final int high = highs[dx + radius];
+			final int ymin = Math.max(0, y - high);
+			final int ymax = Math.min(height - 1, y + high);
+			for (int cy = ymin; cy <= ymax; ++cy)
+				buf[result++] = (cx * height) + cy;
+		}
+		return result;
+	}
+
+	/**
+	 * @param radius
+	 * @return The number of cells in a circle of radius {@code radius}.
+	 */
+	public static int size(int radius) {
+		if (radius < 0)
+			return 0;
+		final int[] highs = getHighs(radius);
+		int result = 0;
+		for (int high : highs)
+			result += (2 * high) + 1;
+		return result;
+	}
+
+	/**
+	 * @param radius
+	 *            A non-negative radius.
+	 * @return The half heights of the columns of the circle of radius
+	 *         {@code radius}: the column at {@code dx} spans
+	 *         {@code [-result[dx + radius], result[dx + radius]]}. Do not
+	 *         modify it.
+	 */
+	private static int[] getHighs(int radius) {
+		return radius <= MAX_CACHED_RADIUS ? HIGHS[radius] : computeHighs(radius);
+	}
+
+	private static int[] computeHighs(int radius) {
+		final int[] result = new int[(2 * radius) + 1];
+		for (int dx = -radius; dx <= radius; ++dx)
+			result[dx + radius] = high(radius, dx);
+		return result;
+	}
+
+	private static int high(int radius, int dx) {
+		return (int) Math.floor(Math.sqrt((radius * radius) - (dx * dx)));
+	}
+
 }
@@ -1,6 +1,8 @@
 package com.hgames.rhogue.grid;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 import squidpony.squidgrid.Direction;
 import squidpony.squidmath.Coord;
@@ -44,4 +46,117 @@ public class Grids {
 		return result;
 	}
 
+	/**
+	 * Removes lonely cells from {@code coords} until there are none, a lonely
+	 * cell being a cell whose {@link #borderness(Collection, Coord)} is
+	 * {@code >= 7} (i.e. a cell with at most one neighbor). The result is the
+	 * same as removing lonely cells in repeated passes over {@code coords},
+	 * but it takes linear time: neighbors are counted once on a bitmap and
+	 * only the neighbors of removed cells are examined again.
+	 * 
+	 * @param coords
+	 *            The cells to clean. If it is a {@link List}, it had better be a
+	 *            {@link java.util.RandomAccess} one.
+	 * @param removeds
+	 *            Where to record the cells removed, in removal order, or null.
+	 * @return The number of cells removed.
+	 */
+	public static <T extends Coord> int removeLonelies(Collection<T> coords, /* @Nullable */ List<? super Coord> removeds) {
+		if (coords.isEmpty())
+			return 0;
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (Coord c : coords) {
+			minX = Math.min(minX, c.x);
+			minY = Math.min(minY, c.y);
+			maxX = Math.max(maxX, c.x);
+			maxY = Math.max(maxY, c.y);
+		}
+		/* With a margin of one, so that neighbors of cells are in the bitmap */
+		final int ox = minX - 1;
+		final int oy = minY - 1;
+		final int w = maxX - minX + 3;
+		final int h = maxY - minY + 3;
+		final long[] members = new long[((w * h) + 63) >>> 6];
+		for (Coord c : coords) {
+			final int idx = ((c.x - ox) * h) + (c.y - oy);
+			members[idx >>> 6] |= 1L << (idx & 63);
+		}
+		/* The offsets of neighbors in the bitmap */
+		final Direction[] outwards = Direction.OUTWARDS;
+		final int[] offsets = new int[outwards.length];
+		for (int i = 0; i < outwards.length; i++)
+			offsets[i] = (outwards[i].deltaX * h) + outwards[i].deltaY;
+		/* The number of neighbors of each member */
+		final byte[] neighbors = new byte[w * h];
+		final int[] todos = new int[coords.size()];
+		int top = 0;
+		for (Coord c : coords) {
+			final int idx = ((c.x - ox) * h) + (c.y - oy);
+			int nb = 0;
+			for (int offset : offsets) {
+				final int n = idx + offset;
+				if ((members[n >>> 6] & (1L << (n & 63))) != 0)
+					nb++;
+			}
+			neighbors[idx] = (byte) nb;
+			if (nb <= 1)
+				todos[top++] = idx;
+		}
+		if (top == 0)
+			return 0;
+		int result = 0;
+		while (0 < top) {
+			final int idx = todos[--top];
+			final long mask = 1L << (idx & 63);
+			if ((members[idx >>> 6] & mask) == 0)
+				/* Already removed */
+				continue;
+			members[idx >>> 6] &= ~mask;
+			result++;
+			if (removeds != null)
+				removeds.add(Coord.get((idx / h) + ox, (idx % h) + oy));
+			for (int offset : offsets) {
+				final int n = idx + offset;
+				if ((members[n >>> 6] & (1L << (n & 63))) == 0)
+					continue;
+				neighbors[n]--;
+				/* Becoming lonely now, hence pushed at most once */
+				if (neighbors[n] == 1)
+					todos[top++] = n;
+			}
+		}
+		/* Apply the removals */
+		if (coords instanceof List)
+			retain((List<T>) coords, members, ox, oy, h);
+		else {
+			final Iterator<T> it = coords.iterator();
+			while (it.hasNext()) {
+				final Coord c = it.next();
+				final int idx = ((c.x - ox) * h) + (c.y - oy);
+				if ((members[idx >>> 6] & (1L << (idx & 63))) == 0)
+					it.remove();
+			}
+		}
+		return result;
+	}
+
+	/** Keeps the members of {@code list} that are in {@code members}, in order */
+	private static <T extends Coord> void retain(List<T> list, long[] members, int ox, int oy, int h) {
+		final int sz = list.size();
+		int kept = 0;
+		for (int i = 0; i < sz; i++) {
+			final T c = list.get(i);
+			final int idx = ((c.x - ox) * h) + (c.y - oy);
+			if ((members[idx >>> 6] & (1L << (idx & 63))) != 0) {
+				if (kept != i)
+					list.set(kept, c);
+				kept++;
+			}
+		}
+		list.subList(kept, sz).clear();
+	}
+
 }
@@ -0,0 +1,244 @@
+package com.hgames.rhogue.grid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A spatial index of points (with payloads) in a map: points are bucketed in a
+ * uniform grid of square buckets, so that the points close to a position can
+ * be enumerated without looking at all points.
+ * 
+ * @author smelC
+ * @param <T>
+ *            The type of payloads
+ */
+public class PointGrid<T> {
+
+	/** The side of buckets */
+	protected final int bucketSize;
+	/** The number of buckets along the x-axis */
+	protected final int bwidth;
+	/** The number of buckets along the y-axis */
+	protected final int bheight;
+
+	/** The first point of every bucket, or -1. */
+	private final int[] heads;
+	/** The next point in the bucket of every point, or -1. */
+	private int[] nexts;
+	private int[] xs;
+	private int[] ys;
+	private final List<T> payloads;
+
+	/**
+	 * @param width
+	 *            The width of the map.
+	 * @param height
+	 *            The height of the map.
+	 * @param bucketSize
+	 *            The side of buckets. A good value is the typical distance
+	 *            between points.
+	 */
+	public PointGrid(int width, int height, int bucketSize) {
+		if (bucketSize <= 0)
+			throw new IllegalStateException("Size of buckets must be > 0. Received: " + bucketSize);
+		this.bucketSize = bucketSize;
+		this.bwidth = Math.max(1, (width + bucketSize - 1) / bucketSize);
+		this.bheight = Math.max(1, (height + bucketSize - 1) / bucketSize);
+		this.heads = new int[bwidth * bheight];
+		Arrays.fill(heads, -1);
+		this.nexts = new int[16];
+		this.xs = new int[16];
+		this.ys = new int[16];
+		this.payloads = new ArrayList<T>();
+	}
+
+	/**
+	 * Adds a point.
+	 * 
+	 * @param x
+	 *            Within the map's width.
+	 * @param y
+	 *            Within the map's height.
+	 * @param payload
+	 */
+	public void add(int x, int y, T payload) {
+		if (x < 0 || bwidth * bucketSize <= x || y < 0 || bheight * bucketSize <= y)
+			throw new IllegalStateException("Point out of the map: " + x + "," + y);
+		final int idx = payloads.size();
+		if (idx == xs.length) {
+			nexts = Arrays.copyOf(nexts, idx * 2);
+			xs = Arrays.copyOf(xs, idx * 2);
+			ys = Arrays.copyOf(ys, idx * 2);
+		}
+		xs[idx] = x;
+		ys[idx] = y;
+		payloads.add(payload);
+		final int bucket = ((x / bucketSize) * bheight) + (y / bucketSize);
+		nexts[idx] = heads[bucket];
+		heads[bucket] = idx;
+	}
+
+	/** @return The number of points in {@code this}. */
+	public int size() {
+		return payloads.size();
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param maxDistance
+	 *            The maximum distance of points returned, or
+	 *            {@link Integer#MAX_VALUE} for no limit.
+	 * @return The payloads of points at a distance of at most
+	 *         {@code maxDistance} of {@code (x, y)}, by increasing (euclidean)
+	 *         distance. Points at the same distance are returned in the order
+	 *         in which they were {@link #add(int, int, Object) added}. The
+	 *         iterator is lazy: it only looks at the buckets required to
+	 *         answer, so that callers not going through it all don't pay for
+	 *         faraway buckets.
+	 */
+	public Iterator<T> nearest(int x, int y, int maxDistance) {
+		return new Nearest(x, y, maxDistance);
+	}
+
+	/** @return {@code a / b} rounded towards negative infinity */
+	private static int floorDiv(int a, int b) {
+		final int result = a / b;
+		return (a % b != 0 && a < 0) ? result - 1 : result;
+	}
+
+	/**
+	 * Visits buckets ring by ring around the position. A point is returned when
+	 * it is closer than all points in the rings not visited yet.
+	 * 
+	 * @author smelC
+	 */
+	private class Nearest implements Iterator<T> {
+
+		private final int x;
+		private final int y;
+		/** The bucket of (x, y), possibly out of the grid */
+		private final int bx;
+		private final int by;
+		private final long maxSquaredDistance;
+		/** The last ring to visit */
+		private final int maxRing;
+
+		/** The next ring to visit */
+		private int ring = 0;
+
+		/** A binary heap of {@code (squared distance << 31) | point} */
+		private long[] heap = new long[16];
+		private int hsize = 0;
+
+		Nearest(int x, int y, int maxDistance) {
+			this.x = x;
+			this.y = y;
+			this.bx = floorDiv(x, bucketSize);
+			this.by = floorDiv(y, bucketSize);
+			this.maxSquaredDistance = maxDistance == Integer.MAX_VALUE ? Long.MAX_VALUE
+					: (long) maxDistance * maxDistance;
+			final int cover = Math.max(Math.max(Math.abs(bx), Math.abs(bwidth - 1 - bx)),
+					Math.max(Math.abs(by), Math.abs(bheight - 1 - by)));
+			/* Points of ring r are at a distance greater than (r - 1) * bucketSize */
+			final int reach = maxDistance == Integer.MAX_VALUE ? Integer.MAX_VALUE
+					: (maxDistance / bucketSize) + 1;
+			this.maxRing = Math.min(cover, reach);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (true) {
+				if (0 < hsize && (maxRing < ring || isSafe(heap[0] >>> 31)))
+					return true;
+				if (maxRing < ring)
+					return false;
+				visit(ring);
+				ring++;
+			}
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final int idx = (int) (heap[0] & Integer.MAX_VALUE);
+			pop();
+			return payloads.get(idx);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @return Whether points in rings not visited yet are farther than
+		 *         {@code d2}.
+		 */
+		private boolean isSafe(long d2) {
+			if (ring == 0)
+				return false;
+			/* Points in ring 'ring' or beyond are at a distance > bound */
+			final long bound = (long) (ring - 1) * bucketSize;
+			return d2 <= bound * bound;
+		}
+
+		private void visit(int r) {
+			for (int i = bx - r; i <= bx + r; i++) {
+				if (i < 0 || bwidth <= i)
+					continue;
+				final boolean edge = i == bx - r || i == bx + r;
+				/* On edge columns, the whole column. Otherwise, its ends. */
+				final int step = edge || r == 0 ? 1 : 2 * r;
+				for (int j = by - r; j <= by + r; j += step) {
+					if (j < 0 || bheight <= j)
+						continue;
+					for (int p = heads[(i * bheight) + j]; p != -1; p = nexts[p]) {
+						final long dx = xs[p] - x;
+						final long dy = ys[p] - y;
+						final long d2 = (dx * dx) + (dy * dy);
+						if (d2 <= maxSquaredDistance)
+							push((d2 << 31) | p);
+					}
+				}
+			}
+		}
+
+		private void push(long entry) {
+			if (hsize == heap.length)
+				heap = Arrays.copyOf(heap, hsize * 2);
+			int i = hsize++;
+			while (0 < i) {
+				final int parent = (i - 1) >>> 1;
+				if (heap[parent] <= entry)
+					break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = entry;
+		}
+
+		private void pop() {
+			final int last = --hsize;
+			final long entry = heap[last];
+			int i = 0;
+			while (true) {
+				int child = (2 * i) + 1;
+				if (last <= child)
+					break;
+				if (child + 1 < last && heap[child + 1] < heap[child])
+					child++;
+				if (entry <= heap[child])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = entry;
+		}
+	}
+
+}
@@ -36,6 +36,16 @@ public class DefaultRNG extends AbstractRNG {
 		this.delegate = new Random(seed);
 	}
 
+	/**
+	 * Resets this instance, so that it yields the same sequence as a fresh
+	 * instance built with {@code seed}.
+	 * 
+	 * @param seed
+	 */
+	public final void setSeed(long seed) {
+		delegate.setSeed(seed);
+	}
+
 	@Override
 	public final boolean nextBoolean() {
 		return delegate.nextBoolean();
@@ -0,0 +1,97 @@
+package com.hgames.rhogue.zone;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * A zone that is a component of a labeling: an array that maps each cell of a
+ * map to the label of its component. Many zones share the same labeling, and
+ * membership tests are done in constant time by looking up the labeling.
+ *
+ * <p>
+ * Instances are immutable: neither the labeling nor the list of cells should
+ * be muted once an instance is built.
+ * </p>
+ *
+ * @author smelC
+ */
+public class LabeledZone extends Zone.Skeleton {
+
+	/** The label of (x, y) is at {@code x * height + y} */
+	protected final int[] labels;
+	protected final int width;
+	protected final int height;
+	protected final int label;
+
+	/** The cells whose label is {@link #label} */
+	protected final List<Coord> coords;
+
+	private static final long serialVersionUID = -2949386375917826390L;
+
+	/**
+	 * A fresh zone that <b>captures</b> {@code labels} and {@code coords}.
+	 *
+	 * @param labels
+	 *            The labeling, the label of (x, y) being at
+	 *            {@code x * height + y}.
+	 * @param width
+	 *            The width of the labeled map.
+	 * @param height
+	 *            The height of the labeled map.
+	 * @param label
+	 *            The label of this zone.
+	 * @param coords
+	 *            The cells whose label is {@code label}.
+	 */
+	public LabeledZone(int[] labels, int width, int height, int label, List<Coord> coords) {
+		if (labels.length != width * height)
+			throw new IllegalStateException("Labeling of size " + labels.length + " doesn't match a map of size "
+					+ width + "x" + height);
+		this.labels = labels;
+		this.width = width;
+		this.height = height;
+		this.label = label;
+		this.coords = coords;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return coords.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return coords.size();
+	}
+
+	@Override
+	public boolean contains(Coord c) {
+		return contains(c.x, c.y);
+	}
+
+	@Override
+	public boolean contains(int x, int y) {
+		if (x < 0 || width <= x || y < 0 || height <= y)
+			return false;
+		return labels[(x * height) + y] == label;
+	}
+
+	@Override
+	public List<Coord> getAll(boolean fresh) {
+		return fresh ? new ArrayList<Coord>(coords) : coords;
+	}
+
+	@Override
+	public Coord getRandom(IRNG rng) {
+		return rng.getRandomElement(coords);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + label + ": " + coords;
+	}
+
+}
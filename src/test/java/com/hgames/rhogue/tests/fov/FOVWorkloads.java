@@ -0,0 +1,134 @@
+package com.hgames.rhogue.tests.fov;
+
+import java.util.List;
+
+import com.hgames.lib.Exceptions;
+import com.hgames.lib.color.IColor;
+import com.hgames.rhogue.fov.ColoredLightFOV;
+import com.hgames.rhogue.fov.FOVCell;
+import com.hgames.rhogue.fov.ShadowCastingObjectFOV;
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerators;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.rng.DefaultRNG;
+import com.hgames.rhogue.tests.fov.ShadowCastingObjectFOVTest.LightSource;
+
+import squidpony.squidmath.IRNG;
+
+/**
+ * The workloads shared by {@link ShadowCastingObjectFOVBenchmark} and
+ * {@link ShadowCastingObjectFOVGoldenTest}: seeded dungeons and light sources.
+ * 
+ * @author smelC
+ */
+final class FOVWorkloads {
+
+	/** The number of sources of workloads */
+	static final int[] SOURCES = { 1, 50, 500 };
+	/** The radiuses of workloads */
+	static final int[] RADIUSES = { 5, 10, 20 };
+
+	static final int WIDTH = 80;
+	static final int HEIGHT = 50;
+
+	/**
+	 * The kind of maps of workloads.
+	 * 
+	 * @author smelC
+	 */
+	enum MapKind {
+		/** Open caves */
+		CAVES,
+		/** Rectangle rooms connected by corridors */
+		CORRIDORS;
+
+		DungeonGenerator getGenerator(IRNG rng, int width, int height) {
+			final DungeonGenerators dgens = new DungeonGenerators(rng, width, height);
+			switch (this) {
+			case CAVES:
+				return dgens.cave();
+			case CORRIDORS:
+				return dgens.basic();
+			}
+			throw Exceptions.newUnmatchedISE(this);
+		}
+	}
+
+	private FOVWorkloads() {
+		/* Not instantiable */
+	}
+
+	/**
+	 * @param kind
+	 * @param seed
+	 * @return A dungeon of kind {@code kind}, generated deterministically from
+	 *         {@code seed}.
+	 */
+	static DungeonSymbol[][] getMap(MapKind kind, long seed) {
+		final IRNG rng = new DefaultRNG(seed);
+		/* Generation may fail, retry with the same RNG (still deterministic) */
+		for (int i = 0; i < 32; i++) {
+			final Dungeon dungeon = kind.getGenerator(rng, WIDTH, HEIGHT).generate();
+			if (dungeon != null)
+				return dungeon.getMap();
+		}
+		throw new IllegalStateException("Cannot generate a dungeon of kind " + kind + " with seed " + seed);
+	}
+
+	/**
+	 * @param map
+	 * @param seed
+	 * @param nb
+	 * @param radius
+	 * @return Sources on {@code map}, built deterministically from {@code seed}.
+	 */
+	static List<LightSource> getSources(DungeonSymbol[][] map, long seed, int nb, int radius) {
+		return ShadowCastingObjectFOVTest.buildSources(new DefaultRNG(seed), map, nb, radius);
+	}
+
+	/**
+	 * @param map
+	 * @return The reference FOV, that allocates a {@link FOVCell} per lit cell.
+	 */
+	static ShadowCastingObjectFOV<LightSource, FOVCell<LightSource>> newFOV(DungeonSymbol[][] map) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		@SuppressWarnings("unchecked")
+		final FOVCell<LightSource>[][] lightMap = new FOVCell[width][height];
+		final double[][] resistanceMap = ShadowCastingObjectFOVTest.toResistanceMap(map);
+		return new ShadowCastingObjectFOV<LightSource, FOVCell<LightSource>>(null, lightMap) {
+			@Override
+			protected FOVCell<LightSource> buildCell() {
+				return new FOVCell<LightSource>();
+			}
+
+			@Override
+			protected double getResistance(int x, int y) {
+				return resistanceMap[x][y];
+			}
+		};
+	}
+
+	/**
+	 * @param map
+	 * @return A {@link ColoredLightFOV} where all sources are white.
+	 */
+	static ColoredLightFOV<LightSource> newColoredFOV(DungeonSymbol[][] map) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		final double[][] resistanceMap = ShadowCastingObjectFOVTest.toResistanceMap(map);
+		return new ColoredLightFOV<LightSource>(width, height) {
+			@Override
+			protected int toRGB(IColor color) {
+				return 0xFFFFFF;
+			}
+
+			@Override
+			protected double getResistance(int x, int y) {
+				return resistanceMap[x][y];
+			}
+		};
+	}
+
+}
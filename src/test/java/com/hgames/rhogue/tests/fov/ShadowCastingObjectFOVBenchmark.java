@@ -0,0 +1,72 @@
+package com.hgames.rhogue.tests.fov;
+
+import java.util.List;
+
+import com.hgames.rhogue.fov.ColoredLightFOV;
+import com.hgames.rhogue.fov.ShadowCastingObjectFOV;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.tests.fov.FOVWorkloads.MapKind;
+import com.hgames.rhogue.tests.fov.ShadowCastingObjectFOVTest.LightSource;
+
+/**
+ * Command line benchmark of {@link ShadowCastingObjectFOV} and
+ * {@link ColoredLightFOV} on the workloads of {@link FOVWorkloads}: open caves
+ * and corridor-heavy maps, with 1, 50 and 500 sources of radius 5, 10 and 20.
+ * Each workload is run a few times to warm up the JIT, then timed.
+ * 
+ * <p>
+ * Run it with assertions disabled, they slow down FOVs a lot.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class ShadowCastingObjectFOVBenchmark {
+
+	/** The seed used */
+	private static final long SEED = 34;
+
+	/** The number of sources computed per workload and per measure */
+	private static final int BUDGET = 2000;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		System.out.println("map        sources radius     objects(ms)     colored(ms)");
+		for (MapKind kind : MapKind.values()) {
+			final DungeonSymbol[][] map = FOVWorkloads.getMap(kind, SEED);
+			for (int nb : FOVWorkloads.SOURCES) {
+				for (int radius : FOVWorkloads.RADIUSES) {
+					final List<LightSource> sources = FOVWorkloads.getSources(map, SEED, nb, radius);
+					/* So that all workloads take approximately the same time */
+					final int iterations = Math.max(1, BUDGET / nb);
+					final double objects = measure(FOVWorkloads.newFOV(map), sources, iterations);
+					final double colored = measure(FOVWorkloads.newColoredFOV(map), sources, iterations);
+					System.out.println(String.format("%-10s %7d %6d %15.3f %15.3f", kind, nb, radius, objects, colored));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The mean time of {@link ShadowCastingObjectFOV#computeFOV(List)},
+	 *         in milliseconds.
+	 */
+	private static double measure(ShadowCastingObjectFOV<LightSource, ?> fov, List<LightSource> sources,
+			int iterations) {
+		/* Warmup */
+		for (int i = 0; i < iterations; i++)
+			run(fov, sources);
+		final long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			run(fov, sources);
+		final long elapsed = System.nanoTime() - start;
+		return (elapsed / 1000000d) / iterations;
+	}
+
+	private static void run(ShadowCastingObjectFOV<LightSource, ?> fov, List<LightSource> sources) {
+		fov.clearLightMap();
+		fov.computeFOV(sources);
+	}
+
+}
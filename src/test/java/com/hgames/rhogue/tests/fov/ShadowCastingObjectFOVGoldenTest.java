@@ -0,0 +1,182 @@
+package com.hgames.rhogue.tests.fov;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.hgames.rhogue.fov.ColoredLightFOV;
+import com.hgames.rhogue.fov.FOVCache;
+import com.hgames.rhogue.fov.FOVCell;
+import com.hgames.rhogue.fov.ShadowCastingObjectFOV;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.tests.fov.FOVWorkloads.MapKind;
+import com.hgames.rhogue.tests.fov.ShadowCastingObjectFOVTest.LightSource;
+
+/**
+ * Command line correctness test of {@link ShadowCastingObjectFOV}, on the
+ * workloads of {@link FOVWorkloads}:
+ * 
+ * <ul>
+ * <li>Light maps are compared to a baseline. By default, the baseline is
+ * {@link #BASELINE}, next to this class in {@code src/test/resources}. It was
+ * recorded with the implementation of {@link ShadowCastingObjectFOV} that
+ * computed slopes and distances per cell (before they were precomputed in
+ * tables). Call this program with {@code <file>} to compare to another
+ * baseline, and with {@code record <file>} to record one (with a version of
+ * {@link ShadowCastingObjectFOV} known to be right). Workloads are
+ * generated dungeons: generation is reproducible from a seed, but the
+ * baseline must be recorded again if dungeon generation changes.</li>
+ * <li>Faster modes ({@link FOVCache} and {@link ColoredLightFOV}) are compared
+ * to the light maps of {@link ShadowCastingObjectFOV}.</li>
+ * </ul>
+ * 
+ * @author smelC
+ */
+public class ShadowCastingObjectFOVGoldenTest {
+
+	/** The seed used */
+	private static final long SEED = 34;
+
+	/** The resource containing the default baseline */
+	private static final String BASELINE = "ShadowCastingObjectFOVGoldenTest.properties";
+
+	/**
+	 * @param args
+	 *            Nothing, {@code <file>}, or {@code record <file>}
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		final boolean record = args.length == 2 && "record".equals(args[0]);
+		if (!record && 1 < args.length)
+			throw new IllegalStateException("Usage: [[record] <file>]");
+		final String file = args.length == 0 ? null : args[args.length - 1];
+		final Properties baseline = new Properties();
+		if (!record) {
+			final InputStream in = file == null ? ShadowCastingObjectFOVGoldenTest.class.getResourceAsStream(BASELINE)
+					: new FileInputStream(file);
+			if (in == null)
+				throw new IllegalStateException("Baseline not found: " + BASELINE);
+			try {
+				baseline.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		final List<String> failures = new ArrayList<String>();
+		for (MapKind kind : MapKind.values()) {
+			final DungeonSymbol[][] map = FOVWorkloads.getMap(kind, SEED);
+			for (int nb : FOVWorkloads.SOURCES) {
+				for (int radius : FOVWorkloads.RADIUSES) {
+					final String name = kind + "-" + nb + "-" + radius;
+					final List<LightSource> sources = FOVWorkloads.getSources(map, SEED, nb, radius);
+					final ShadowCastingObjectFOV<LightSource, FOVCell<LightSource>> fov = FOVWorkloads.newFOV(map);
+					fov.computeFOV(sources);
+					final FOVCell<LightSource>[][] lightMap = fov.getFOV();
+					final String hash = Long.toString(hash(lightMap));
+					if (record)
+						baseline.setProperty(name, hash);
+					else if (!hash.equals(baseline.getProperty(name)))
+						failures.add(name + ": light map differs from the baseline");
+					if (!checkCache(map, sources, radius, lightMap))
+						failures.add(name + ": " + FOVCache.class.getSimpleName() + " differs");
+					if (nb == 1 && !checkColored(map, sources, lightMap))
+						failures.add(name + ": " + ColoredLightFOV.class.getSimpleName() + " differs");
+				}
+			}
+		}
+		if (record) {
+			final OutputStream out = new FileOutputStream(file);
+			try {
+				baseline.store(out, "Baseline of " + ShadowCastingObjectFOVGoldenTest.class.getSimpleName());
+			} finally {
+				out.close();
+			}
+		}
+		for (String failure : failures)
+			System.out.println(failure);
+		if (!failures.isEmpty())
+			throw new IllegalStateException(failures.size() + " failure(s)");
+		System.out.println("All good" + (record ? ", baseline recorded in " + file : ""));
+	}
+
+	/**
+	 * @return A hash of {@code lightMap}, that distinguishes cells that haven't
+	 *         been reached from cells that have been reached with a light of
+	 *         0.
+	 */
+	private static long hash(FOVCell<LightSource>[][] lightMap) {
+		long result = 1;
+		for (int x = 0; x < lightMap.length; x++) {
+			for (int y = 0; y < lightMap[x].length; y++) {
+				final FOVCell<LightSource> cell = lightMap[x][y];
+				final long h = cell == null ? -1 : Double.doubleToLongBits(cell.getLighting());
+				result = (31 * result) + h;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return Whether the cells that {@link FOVCache} deems visible from some
+	 *         source are the cells reached in {@code lightMap}.
+	 */
+	private static boolean checkCache(DungeonSymbol[][] map, List<LightSource> sources, int radius,
+			FOVCell<LightSource>[][] lightMap) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		final double[][] resistanceMap = ShadowCastingObjectFOVTest.toResistanceMap(map);
+		final FOVCache cache = new FOVCache(width, height, 0) {
+			@Override
+			protected double getResistance(int x, int y) {
+				return resistanceMap[x][y];
+			}
+		};
+		final boolean[][] visibles = new boolean[width][height];
+		for (LightSource source : sources) {
+			final int sx = source.getX();
+			final int sy = source.getY();
+			final long[] bits = cache.getVisibles(sx, sy, radius, 0);
+			for (int x = Math.max(0, sx - radius); x <= Math.min(width - 1, sx + radius); x++) {
+				for (int y = Math.max(0, sy - radius); y <= Math.min(height - 1, sy + radius); y++) {
+					if (FOVCache.isVisible(bits, radius, x - sx, y - sy))
+						visibles[x][y] = true;
+				}
+			}
+		}
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (visibles[x][y] != (lightMap[x][y] != null))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Whether {@link ColoredLightFOV} computes the same light as
+	 *         {@code lightMap}, which must have been computed from a single
+	 *         source (because {@link FOVCell} keeps the strongest light while
+	 *         {@link ColoredLightFOV} adds lights).
+	 */
+	private static boolean checkColored(DungeonSymbol[][] map, List<LightSource> sources,
+			FOVCell<LightSource>[][] lightMap) {
+		assert sources.size() <= 1;
+		final ColoredLightFOV<LightSource> fov = FOVWorkloads.newColoredFOV(map);
+		fov.computeFOV(sources);
+		for (int x = 0; x < lightMap.length; x++) {
+			for (int y = 0; y < lightMap[x].length; y++) {
+				final FOVCell<LightSource> cell = lightMap[x][y];
+				final int expected = cell == null ? 0 : (int) ((0xFF * cell.getLighting()) + 0.5d);
+				if (expected != (fov.getRGB(x, y) & 0xFF))
+					return false;
+			}
+		}
+		return true;
+	}
+
+}
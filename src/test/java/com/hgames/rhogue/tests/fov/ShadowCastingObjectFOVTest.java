@@ -94,7 +94,7 @@ public class ShadowCastingObjectFOVTest {
 		ddrawer.draw(map);
 	}
 
-	private static double[][] toResistanceMap(DungeonSymbol[][] map) {
+	static double[][] toResistanceMap(DungeonSymbol[][] map) {
 		final int width = map.length;
 		final int height = width == 0 ? 0 : map[0].length;
 		final double[][] result = new double[width][height];
@@ -137,37 +137,77 @@ public class ShadowCastingObjectFOVTest {
 		return result;
 	}
 
+	/**
+	 * @param rng
+	 * @param map
+	 * @param nb
+	 *            The number of sources to try to build.
+	 * @param radius
+	 *            The sources' radius.
+	 * @return At most {@code nb} sources of radius {@code radius}, on cells of
+	 *         {@code map} that can contain a light source.
+	 */
+	static List<LightSource> buildSources(IRNG rng, DungeonSymbol[][] map, int nb, int radius) {
+		final List<LightSource> result = new ArrayList<LightSource>(nb);
+		for (int i = 0; i < nb; i++) {
+			final LightSource source = buildSource(rng, map, radius);
+			if (source != null)
+				result.add(source);
+		}
+		return result;
+	}
+
 	private static /* @Nullable */ LightSource buildSource(IRNG rng, DungeonSymbol[][] map) {
 		final int width = map.length;
 		final int height = width == 0 ? 0 : map[0].length;
 		for (int i = 0; i < 64; i++) {
 			final int x = rng.nextInt(width);
 			final int y = rng.nextInt(height);
-			final DungeonSymbol sym = map[x][y];
-			switch (sym) {
-			case CHASM:
-			case DOOR:
-			case FLOOR:
-			case GRASS:
-			case HIGH_GRASS:
-			case SHALLOW_WATER:
+			if (canHoldLight(map[x][y]))
 				return new LightSource('s', rng.between(3, 7), x, y);
-			case DEEP_WATER:
-			case STAIR_DOWN:
-			case STAIR_UP:
-			case WALL:
-				/* Cannot contain a light source */
-				continue;
-			}
-			throw Exceptions.newUnmatchedISE(sym);
 		}
 		return null;
 	}
 
+	/**
+	 * Like {@link #buildSource(IRNG, DungeonSymbol[][])}, but with a fixed
+	 * radius, hence the radius isn't drawn from {@code rng}.
+	 */
+	private static /* @Nullable */ LightSource buildSource(IRNG rng, DungeonSymbol[][] map, int radius) {
+		final int width = map.length;
+		final int height = width == 0 ? 0 : map[0].length;
+		for (int i = 0; i < 64; i++) {
+			final int x = rng.nextInt(width);
+			final int y = rng.nextInt(height);
+			if (canHoldLight(map[x][y]))
+				return new LightSource('s', radius, x, y);
+		}
+		return null;
+	}
+
+	/** @return Whether a cell of {@code sym} can contain a light source */
+	private static boolean canHoldLight(DungeonSymbol sym) {
+		switch (sym) {
+		case CHASM:
+		case DOOR:
+		case FLOOR:
+		case GRASS:
+		case HIGH_GRASS:
+		case SHALLOW_WATER:
+			return true;
+		case DEEP_WATER:
+		case STAIR_DOWN:
+		case STAIR_UP:
+		case WALL:
+			return false;
+		}
+		throw Exceptions.newUnmatchedISE(sym);
+	}
+
 	/**
 	 * @author smelC
 	 */
-	private static final class LightSource implements ILightSource, Positioned {
+	static final class LightSource implements ILightSource, Positioned {
 
 		private final char sym;
 		private final int intensity;
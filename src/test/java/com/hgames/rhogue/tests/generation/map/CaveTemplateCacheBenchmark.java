@@ -0,0 +1,123 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.Complexity;
+import com.hgames.rhogue.generation.map.dungeon.RoomComponent;
+import com.hgames.rhogue.generation.map.lifetime.Eternity;
+import com.hgames.rhogue.generation.map.rgenerator.CaveRoomGenerator;
+import com.hgames.rhogue.generation.map.rgenerator.CaveTemplateCache;
+import com.hgames.rhogue.rng.DefaultRNG;
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * Command line benchmark of {@link CaveTemplateCache}: generates series of
+ * cave dungeons (like
+ * {@link com.hgames.rhogue.generation.map.dungeon.DungeonGenerators#cave()}),
+ * without a cache and with a cache shared by the dungeons of a series. Each
+ * series is run once to warm up the JIT, then timed.
+ * 
+ * <p>
+ * What is timed is the time spent in the room generator, i.e. what the cache
+ * replaces. The time of whole dungeons isn't comparable: rooms of the cache are
+ * a bit smaller, hence more of them fit and the later stages have more to do
+ * (the number of rooms per dungeon is printed).
+ * </p>
+ * 
+ * <p>
+ * Run it with assertions disabled, they slow down generation a lot.
+ * </p>
+ * 
+ * @author smelC
+ */
+public class CaveTemplateCacheBenchmark {
+
+	/** The seed used */
+	private static final long SEED = 34;
+
+	/** The number of dungeons per series */
+	private static final int DUNGEONS = 200;
+
+	private static final int[][] SIZES = { { 40, 30 }, { 80, 50 }, { 120, 80 } };
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		System.out.println("size      calls  no cache(ms)  cache(ms)  rooms/dungeon  templates");
+		for (int[] size : SIZES) {
+			final int width = size[0];
+			final int height = size[1];
+			measure(width, height, null);
+			final Series uncached = measure(width, height, null);
+			measure(width, height, newCache());
+			final CaveTemplateCache cache = newCache();
+			final Series cached = measure(width, height, cache);
+			System.out.println(String.format("%-8s %7d %13.1f %10.1f %6.1f / %5.1f %10d", width + "x" + height,
+					uncached.calls, uncached.nanos / 1000000d, cached.nanos / 1000000d, uncached.getRoomsPerDungeon(),
+					cached.getRoomsPerDungeon(), cache.size()));
+		}
+	}
+
+	private static CaveTemplateCache newCache() {
+		return new CaveTemplateCache(16, 4 * 1024 * 1024);
+	}
+
+	/**
+	 * @param cache
+	 *            The cache shared by the dungeons, or null.
+	 * @return The measures of a series of {@link #DUNGEONS} dungeons.
+	 */
+	private static Series measure(int width, int height, /* @Nullable */ CaveTemplateCache cache) {
+		final DefaultRNG rng = new DefaultRNG(SEED);
+		final Series result = new Series();
+		final CaveRoomGenerator caves = new CaveRoomGenerator() {
+			@Override
+			public Zone generate(IRNG roomRNG, RoomComponent component, Coord translation, int maxWidth,
+					int maxHeight) {
+				final long start = System.nanoTime();
+				final Zone zone = super.generate(roomRNG, component, translation, maxWidth, maxHeight);
+				result.nanos += System.nanoTime() - start;
+				result.calls++;
+				return zone;
+			}
+		};
+		caves.setTemplates(cache);
+		for (int i = 0; i < DUNGEONS; i++) {
+			final DungeonGenerator dgen = new DungeonGenerator(rng, width, height);
+			dgen.setComplexity(Complexity.KID);
+			dgen.installRoomGenerator(caves, 1, Eternity.INSTANCE);
+			final Dungeon dungeon = dgen.generate();
+			if (dungeon != null) {
+				result.dungeons++;
+				result.rooms += dungeon.getRooms().size();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The measures of a series of dungeons.
+	 * 
+	 * @author smelC
+	 */
+	private static final class Series {
+
+		/** The time spent in the room generator */
+		long nanos;
+		/** The number of calls to the room generator */
+		int calls;
+		/** The number of dungeons successfully generated */
+		int dungeons;
+		/** The number of rooms of the dungeons successfully generated */
+		int rooms;
+
+		double getRoomsPerDungeon() {
+			return dungeons == 0 ? 0 : rooms / (double) dungeons;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.List;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.Checkpoint;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerator.Stage;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerators;
+import com.hgames.rhogue.rng.DefaultRNG;
+import com.hgames.rhogue.zone.Zone;
+
+/**
+ * Tests of {@link DungeonGenerator#generateUntil(Stage)} and
+ * {@link DungeonGenerator#generate(Checkpoint)}.
+ * 
+ * @author smelC
+ */
+public class CheckpointTest {
+
+	private static final int WIDTH = 60;
+	private static final int HEIGHT = 40;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		testSameAsGenerate();
+		testCheckpointUnchanged();
+		testStartWithWaterMismatch();
+		testEmpty();
+	}
+
+	/**
+	 * Checks that {@code generateUntil(CORRIDORS)} followed by
+	 * {@code generate(checkpoint)} gives the same dungeon as {@code generate()}.
+	 */
+	private static void testSameAsGenerate() {
+		int nb = 0;
+		for (int seed = DungeonGeneratorTest.SEED; seed < DungeonGeneratorTest.SEED + 8; seed++) {
+			for (int preset = 0; preset < 4; preset++) {
+				final Dungeon expected = getGenerator(seed, preset).generate();
+				final DungeonGenerator dgen = getGenerator(seed, preset);
+				final Checkpoint checkpoint = dgen.generateUntil(Stage.CORRIDORS);
+				final Dungeon actual = checkpoint == null ? null : dgen.generate(checkpoint);
+				if (expected == null && actual == null)
+					continue;
+				if (expected == null || actual == null)
+					throw new IllegalStateException("Generation of seed " + seed + " (preset " + preset
+							+ ") fails " + (expected == null ? "without" : "with") + " a checkpoint");
+				new DungeonState(expected).check(new DungeonState(actual),
+						"Dungeon of seed " + seed + " (preset " + preset + ")");
+				nb++;
+			}
+		}
+		System.out.println("Checked that " + nb + " dungeons are the same with and without a checkpoint");
+	}
+
+	/**
+	 * Checks that finishing a checkpoint twice, with different settings, leaves
+	 * the checkpoint unchanged and gives different dungeons.
+	 */
+	private static void testCheckpointUnchanged() {
+		final DungeonGenerator dgen = getGenerator(DungeonGeneratorTest.SEED, 2);
+		/* So that water is done after the checkpoint */
+		dgen.setWaterObjective(false, -1, -1, -1);
+		final Checkpoint checkpoint = dgen.generateUntil(Stage.CORRIDORS);
+		if (checkpoint == null)
+			throw new IllegalStateException("Generation until " + Stage.CORRIDORS + " failed");
+		final DungeonState before = new DungeonState(checkpoint.getDungeon(), checkpoint.getCellToZone());
+		dgen.setWaterObjective(false, 20, 3, 1);
+		dgen.setGrassObjectives(30, 12);
+		final Dungeon first = dgen.generate(checkpoint);
+		before.check(new DungeonState(checkpoint.getDungeon(), checkpoint.getCellToZone()),
+				"Checkpoint after a first finish");
+		dgen.setWaterObjective(false, 5, 1, 0);
+		dgen.setGrassObjectives(5, 10);
+		dgen.setScanlineFloods(true);
+		final Dungeon second = dgen.generate(checkpoint);
+		before.check(new DungeonState(checkpoint.getDungeon(), checkpoint.getCellToZone()),
+				"Checkpoint after a second finish");
+		if (first == null || second == null)
+			throw new IllegalStateException("Could not finish checkpoint");
+		if (first == second || first == checkpoint.getDungeon())
+			throw new IllegalStateException("Finishing a checkpoint should give a fresh dungeon");
+		final int water = size(first.getDeepWaterPools());
+		if (water == size(second.getDeepWaterPools()))
+			throw new IllegalStateException(
+					"Finishing a checkpoint with different water settings should give different water: " + water
+							+ " cells both times");
+		if (size(first.getGrassPools()) == size(second.getGrassPools()))
+			throw new IllegalStateException(
+					"Finishing a checkpoint with different grass settings should give different grass");
+		System.out.println("Checked that finishing a checkpoint twice leaves it unchanged");
+	}
+
+	/**
+	 * Checks that a checkpoint cannot be finished with another
+	 * {@code startWithWater} setting, as water would be done twice or not at
+	 * all.
+	 */
+	private static void testStartWithWaterMismatch() {
+		for (boolean startWithWater : new boolean[] { true, false }) {
+			final DungeonGenerator dgen = getGenerator(DungeonGeneratorTest.SEED, 2);
+			dgen.setWaterObjective(startWithWater, -1, -1, -1);
+			final Checkpoint checkpoint = dgen.generateUntil(Stage.ROOMS);
+			if (checkpoint == null)
+				throw new IllegalStateException("Generation until " + Stage.ROOMS + " failed");
+			if (checkpoint.getStartWithWater() != startWithWater)
+				throw new IllegalStateException("Checkpoint should record startWithWater=" + startWithWater);
+			dgen.setWaterObjective(!startWithWater, -1, -1, -1);
+			boolean thrown = false;
+			try {
+				dgen.generate(checkpoint);
+			} catch (IllegalStateException e) {
+				thrown = true;
+			}
+			if (!thrown)
+				throw new IllegalStateException("Checkpoint made with startWithWater=" + startWithWater
+						+ " should not be finished with startWithWater=" + !startWithWater);
+		}
+		System.out.println("Checked that checkpoints are finished with the same startWithWater setting");
+	}
+
+	/** Checks that empty dungeons are handled like in {@link DungeonGenerator#generate()} */
+	private static void testEmpty() {
+		final DungeonGenerator dgen = new DungeonGenerators(new DefaultRNG(DungeonGeneratorTest.SEED), 0, 0)
+				.basic();
+		final Dungeon expected = dgen.generate();
+		final Checkpoint checkpoint = dgen.generateUntil(Stage.CORRIDORS);
+		if (expected == null || checkpoint == null)
+			throw new IllegalStateException("Empty dungeons should be generated");
+		final Dungeon actual = dgen.generate(checkpoint);
+		if (actual == null || actual.size() != 0 || !actual.getRooms().isEmpty())
+			throw new IllegalStateException("Finishing an empty checkpoint should give an empty dungeon");
+		System.out.println("Checked checkpoints of empty dungeons");
+	}
+
+	private static int size(List<? extends Zone> zones) {
+		int result = 0;
+		for (Zone z : zones)
+			result += z.size();
+		return result;
+	}
+
+	private static DungeonGenerator getGenerator(int seed, int preset) {
+		final DungeonGenerators dgens = new DungeonGenerators(new DefaultRNG(seed), WIDTH, HEIGHT);
+		switch (preset) {
+		case 0:
+			return dgens.basic();
+		case 1:
+			return dgens.cave();
+		case 2:
+			return dgens.fancy();
+		case 3:
+			return dgens.halfRectanglesHalfCaves();
+		default:
+			throw new IllegalStateException("Unknown preset: " + preset);
+		}
+	}
+
+}
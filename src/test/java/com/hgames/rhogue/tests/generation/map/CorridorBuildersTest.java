@@ -0,0 +1,108 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonAdapter;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.generation.map.dungeon.corridor.CorridorBuilders;
+import com.hgames.rhogue.generation.map.dungeon.corridor.ICorridorBuilder;
+import com.hgames.rhogue.generation.map.dungeon.corridor.SequencedCorridorBuilder;
+import com.hgames.rhogue.rng.DefaultRNG;
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * Tests of {@link CorridorBuilders}, on a dungeon where an obstacle lies
+ * between two rooms.
+ * 
+ * @author smelC
+ */
+public class CorridorBuildersTest {
+
+	private static final int WIDTH = 40;
+	private static final int HEIGHT = 20;
+
+	/** A cell of the left room */
+	private static final Coord START = Coord.get(6, 9);
+	/** A cell of the right room */
+	private static final Coord END = Coord.get(33, 9);
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		final Dungeon dungeon = buildDungeon();
+		final IRNG rng = new DefaultRNG(DungeonGeneratorTest.SEED);
+		final Coord[] buf = new Coord[2];
+		final ICorridorBuilder straight = CorridorBuilders.create(dungeon, true, true);
+		if (straight.build(rng, START, END, buf) != null)
+			throw new IllegalStateException("Straight corridors should be blocked by the obstacle");
+		System.out.println("Checked that straight corridors are blocked");
+
+		/* What a forced corridor control builds */
+		final Zone forced = new SequencedCorridorBuilder(straight,
+				CorridorBuilders.createAStar(dungeon, true, Integer.MAX_VALUE)).build(rng, START, END, buf);
+		if (forced == null)
+			throw new IllegalStateException("Forced corridor should go around the obstacle");
+		checkCorridor(dungeon, forced, buf);
+		System.out.println("Checked forced corridor of size " + forced.size() + " around the obstacle");
+
+		final int size = forced.size();
+		final Zone limited = CorridorBuilders.createAStar(dungeon, true, size).build(rng, START, END, buf);
+		if (limited == null || size < limited.size())
+			throw new IllegalStateException("Forced corridor should fit in a limit of " + size + " cells");
+		checkCorridor(dungeon, limited, buf);
+		if (CorridorBuilders.createAStar(dungeon, true, size - 1).build(rng, START, END, buf) != null)
+			throw new IllegalStateException("No corridor should fit in a limit of " + (size - 1) + " cells");
+		System.out.println("Checked limit of length of forced corridors");
+	}
+
+	/**
+	 * @return A dungeon with two rooms, between which lies a third room that
+	 *         blocks straight corridors.
+	 */
+	private static Dungeon buildDungeon() {
+		final DungeonSymbol[][] map = new DungeonSymbol[WIDTH][HEIGHT];
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++)
+				map[x][y] = DungeonSymbol.WALL;
+		}
+		fill(map, 3, 7, 6, 12);
+		fill(map, 33, 7, 36, 12);
+		/* The obstacle */
+		fill(map, 19, 8, 20, 10);
+		return new DungeonAdapter(map).build();
+	}
+
+	private static void fill(DungeonSymbol[][] map, int xmin, int ymin, int xmax, int ymax) {
+		for (int x = xmin; x <= xmax; x++) {
+			for (int y = ymin; y <= ymax; y++)
+				map[x][y] = DungeonSymbol.FLOOR;
+		}
+	}
+
+	private static void checkCorridor(Dungeon dungeon, Zone corridor, Coord[] buf) {
+		for (Coord c : corridor) {
+			if (dungeon.getSymbol(c) != DungeonSymbol.WALL)
+				throw new IllegalStateException("Corridor goes through " + dungeon.getSymbol(c) + " at " + c);
+		}
+		if (!corridor.contains(buf[0]) || buf[0].distance(START) != 1)
+			throw new IllegalStateException("Corridor doesn't start next to " + START + ": " + buf[0]);
+		if (!corridor.contains(buf[1]) || buf[1].distance(END) != 1)
+			throw new IllegalStateException("Corridor doesn't end next to " + END + ": " + buf[1]);
+		/* It is a path: every cell but the extremities has two cardinal neighbors in it */
+		for (Coord c : corridor) {
+			int neighbors = 0;
+			for (Coord d : corridor) {
+				if (c.distance(d) == 1)
+					neighbors++;
+			}
+			final int expected = c.equals(buf[0]) || c.equals(buf[1]) ? 1 : 2;
+			if (neighbors != expected)
+				throw new IllegalStateException(
+						"Corridor's cell " + c + " has " + neighbors + " neighbors instead of " + expected);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.hgames.rhogue.generation.map.dungeon.DistanceField;
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonAdapter;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerators;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.rng.DefaultRNG;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Tests of {@link DistanceField}.
+ * 
+ * @author smelC
+ */
+public class DistanceFieldTest {
+
+	private static final EnumSet<DungeonSymbol> WALKABLES = EnumSet.of(DungeonSymbol.DOOR, DungeonSymbol.FLOOR,
+			DungeonSymbol.GRASS, DungeonSymbol.HIGH_GRASS, DungeonSymbol.SHALLOW_WATER, DungeonSymbol.STAIR_DOWN,
+			DungeonSymbol.STAIR_UP);
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		testCorridor();
+		testDiagonals();
+		testCosts();
+		testWeightedSameAsBFS();
+	}
+
+	/** Distances along a corridor, with one and two seeds, before and after a change */
+	private static void testCorridor() {
+		final DungeonSymbol[][] map = newMap(10, 3, DungeonSymbol.WALL);
+		for (int x = 1; x < 9; x++)
+			map[x][1] = DungeonSymbol.FLOOR;
+		final Dungeon dungeon = new DungeonAdapter(map).build();
+		final DistanceField field = new DistanceField(dungeon).setWalkables(WALKABLES);
+
+		field.compute(Coord.get(1, 1));
+		for (int x = 1; x < 9; x++)
+			check(field, x, 1, x - 1);
+		check(field, 0, 1, DistanceField.UNREACHED);
+		check(field, 4, 0, DistanceField.UNREACHED);
+		if (!field.isReachable(0, 1) || field.isReachable(0, 0))
+			throw new IllegalStateException("Only walls next to the corridor should be reachable");
+		field.setConsiderDiagonals(true).compute(Coord.get(1, 1));
+		if (!field.isReachable(0, 0))
+			throw new IllegalStateException("Corner should be reachable with diagonals");
+		field.setConsiderDiagonals(false);
+
+		field.compute(Arrays.asList(Coord.get(1, 1), Coord.get(8, 1)));
+		check(field, 4, 1, 3);
+		check(field, 5, 1, 3);
+		check(field, 8, 1, 0);
+
+		/* Cutting the corridor changes the dungeon's version, hence distances are recomputed */
+		field.compute(Coord.get(1, 1));
+		dungeon.getBuilder().setSymbol(4, 1, DungeonSymbol.WALL);
+		field.compute(Coord.get(1, 1));
+		check(field, 3, 1, 2);
+		check(field, 4, 1, DistanceField.UNREACHED);
+		check(field, 5, 1, DistanceField.UNREACHED);
+		System.out.println("Checked distances along a corridor");
+	}
+
+	/** 4-connectivity versus 8-connectivity on an open map */
+	private static void testDiagonals() {
+		final Dungeon dungeon = new DungeonAdapter(newMap(5, 5, DungeonSymbol.FLOOR)).build();
+		final DistanceField field = new DistanceField(dungeon).setWalkables(WALKABLES);
+		field.compute(Coord.get(0, 0));
+		check(field, 3, 4, 7);
+		field.setConsiderDiagonals(true).compute(Coord.get(0, 0));
+		check(field, 3, 4, 4);
+		System.out.println("Checked 4-connectivity and 8-connectivity");
+	}
+
+	/** Costs of entering cells, that make the search use Dijkstra */
+	private static void testCosts() {
+		final DungeonSymbol[][] map = newMap(5, 5, DungeonSymbol.FLOOR);
+		for (int y = 0; y < 5; y++)
+			map[2][y] = DungeonSymbol.HIGH_GRASS;
+		final Dungeon dungeon = new DungeonAdapter(map).build();
+		final DistanceField field = new DistanceField(dungeon).setWalkables(WALKABLES);
+		field.setCost(DungeonSymbol.HIGH_GRASS, 5).compute(Coord.get(0, 2));
+		check(field, 1, 2, 1);
+		check(field, 2, 2, 6);
+		check(field, 4, 2, 8);
+		/* Going around is impossible, as high grass spans the whole column */
+		check(field, 4, 0, 10);
+		field.setCost(DungeonSymbol.HIGH_GRASS, 0).compute(Coord.get(0, 2));
+		check(field, 2, 2, DistanceField.UNREACHED);
+		check(field, 4, 2, DistanceField.UNREACHED);
+		System.out.println("Checked costs of symbols");
+	}
+
+	/**
+	 * Checks, on a generated dungeon, that doubling all costs doubles the
+	 * distances of the breadth first search.
+	 */
+	private static void testWeightedSameAsBFS() {
+		final Dungeon dungeon = new DungeonGenerators(new DefaultRNG(DungeonGeneratorTest.SEED), 60, 40).fancy()
+				.generate();
+		if (dungeon == null)
+			throw new IllegalStateException("Could not generate dungeon");
+		final Coord seed = dungeon.getStair(true);
+		if (seed == null)
+			throw new IllegalStateException("Dungeon should have a stair up");
+		for (boolean considerDiagonals : new boolean[] { false, true }) {
+			final DistanceField field = new DistanceField(dungeon).setWalkables(WALKABLES)
+					.setConsiderDiagonals(considerDiagonals);
+			final int[] bfs = field.compute(seed).clone();
+			for (DungeonSymbol sym : WALKABLES)
+				field.setCost(sym, 2);
+			final int[] dijkstra = field.compute(seed);
+			int reached = 0;
+			for (int i = 0; i < bfs.length; i++) {
+				final int expected = bfs[i] == DistanceField.UNREACHED ? DistanceField.UNREACHED : 2 * bfs[i];
+				if (dijkstra[i] != expected)
+					throw new IllegalStateException("Distance of cell " + i + " should be " + expected
+							+ ". Received: " + dijkstra[i]);
+				if (bfs[i] != DistanceField.UNREACHED)
+					reached++;
+			}
+			if (reached < 2)
+				throw new IllegalStateException("Stair should reach other cells");
+			System.out.println("Checked Dijkstra against BFS on " + reached + " cells (diagonals: "
+					+ considerDiagonals + ")");
+		}
+	}
+
+	private static DungeonSymbol[][] newMap(int width, int height, DungeonSymbol sym) {
+		final DungeonSymbol[][] result = new DungeonSymbol[width][height];
+		for (int x = 0; x < width; x++)
+			Arrays.fill(result[x], sym);
+		return result;
+	}
+
+	private static void check(DistanceField field, int x, int y, int expected) {
+		final int actual = field.getDistance(x, y);
+		if (actual != expected)
+			throw new IllegalStateException(
+					"Distance of (" + x + ", " + y + ") should be " + expected + ". Received: " + actual);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.List;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonBuilder;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerators;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.rng.DefaultRNG;
+import com.hgames.rhogue.zone.SingleCellZone;
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Tests that {@link Dungeon#snapshot()} and its original are isolated: mutating
+ * one of them doesn't change the other.
+ * 
+ * @author smelC
+ */
+public class DungeonSnapshotTest {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		final Dungeon original = new DungeonGenerators(new DefaultRNG(DungeonGeneratorTest.SEED), 60, 40).fancy()
+				.generate();
+		if (original == null)
+			throw new IllegalStateException("Could not generate dungeon");
+		testBuilderMutations(original);
+		testGetMap(original);
+	}
+
+	/** Mutates a snapshot and then its original, with their builders */
+	private static void testBuilderMutations(Dungeon original) {
+		final DungeonState originalState = new DungeonState(original);
+		final int originalVersion = original.getVersion();
+		final Dungeon snapshot = original.snapshot();
+		originalState.check(new DungeonState(snapshot), "Fresh snapshot");
+		if (snapshot.getVersion() != originalVersion)
+			throw new IllegalStateException("Fresh snapshot should have the version of its original");
+
+		mutate(snapshot, 0);
+		if (snapshot.getVersion() == originalVersion)
+			throw new IllegalStateException("Version of snapshot should change when mutated");
+		originalState.check(new DungeonState(original), "Original after mutating its snapshot");
+		if (original.getVersion() != originalVersion)
+			throw new IllegalStateException("Version of original should not change when its snapshot is mutated");
+		System.out.println("Checked that mutating a snapshot leaves its original unchanged");
+
+		final DungeonState snapshotState = new DungeonState(snapshot);
+		final int snapshotVersion = snapshot.getVersion();
+		mutate(original, original.getWidth() / 2);
+		snapshotState.check(new DungeonState(snapshot), "Snapshot after mutating its original");
+		if (snapshot.getVersion() != snapshotVersion)
+			throw new IllegalStateException("Version of snapshot should not change when its original is mutated");
+		System.out.println("Checked that mutating an original leaves its snapshot unchanged");
+	}
+
+	/** Writes in a snapshot through {@link Dungeon#getMap()} */
+	private static void testGetMap(Dungeon original) {
+		final DungeonState originalState = new DungeonState(original);
+		final Dungeon snapshot = original.snapshot();
+		final Coord c = findWall(snapshot, 0);
+		snapshot.getMap()[c.x][c.y] = DungeonSymbol.CHASM;
+		if (snapshot.getSymbol(c) != DungeonSymbol.CHASM)
+			throw new IllegalStateException("Write through getMap() should be visible");
+		originalState.check(new DungeonState(original), "Original after writing in its snapshot's map");
+		System.out.println("Checked that writing in a snapshot's map leaves its original unchanged");
+	}
+
+	/**
+	 * Mutates a column, the rooms, the corridors, the connections, and the
+	 * water pools of {@code dungeon}; and checks that the mutations are visible.
+	 * 
+	 * @param fromX
+	 *            Where to start searching for the cell to mutate.
+	 */
+	private static void mutate(Dungeon dungeon, int fromX) {
+		final DungeonBuilder builder = dungeon.getBuilder();
+		final List<Zone> rooms = dungeon.getRooms();
+		final List<Zone> corridors = dungeon.getCorridors();
+		final List<? extends Zone> pools = dungeon.getDeepWaterPools();
+		if (rooms.isEmpty() || corridors.isEmpty() || pools.isEmpty())
+			throw new IllegalStateException("Dungeon should have rooms, corridors, and water pools");
+		final int nbRooms = rooms.size();
+		final int nbCorridors = corridors.size();
+		final int poolSize = pools.get(0).size();
+
+		final Coord c = findWall(dungeon, fromX);
+		builder.setSymbol(c, DungeonSymbol.FLOOR);
+		final Zone room = new SingleCellZone(c);
+		builder.addZone(room, null, true);
+		final Zone neighbor = rooms.get(0);
+		builder.addConnection(room, neighbor);
+		final Zone corridor = corridors.get(0);
+		builder.removeRoomOrCorridor(corridor);
+		builder.removeFromWaterPools(new SingleCellZone(pools.get(0).getAll(false).get(0)), null);
+
+		if (dungeon.getSymbol(c) != DungeonSymbol.FLOOR)
+			throw new IllegalStateException("Symbol should have been set");
+		if (dungeon.getRooms().size() != nbRooms + 1 || !dungeon.getRooms().contains(room))
+			throw new IllegalStateException("Room should have been added");
+		if (!dungeon.getNeighbors(neighbor).contains(room))
+			throw new IllegalStateException("Connection should have been added");
+		if (dungeon.getCorridors().size() != nbCorridors - 1 || dungeon.getCorridors().contains(corridor))
+			throw new IllegalStateException("Corridor should have been removed");
+		if (dungeon.getDeepWaterPools().get(0).size() != poolSize - 1)
+			throw new IllegalStateException("Water pool should have shrunk");
+	}
+
+	/** @return A wall, searching from the column {@code fromX} */
+	private static Coord findWall(Dungeon dungeon, int fromX) {
+		final int width = dungeon.getWidth();
+		final int height = dungeon.getHeight();
+		for (int i = 0; i < width; i++) {
+			final int x = (fromX + i) % width;
+			for (int y = 0; y < height; y++) {
+				if (dungeon.getSymbol(x, y) == DungeonSymbol.WALL)
+					return Coord.get(x, y);
+			}
+		}
+		throw new IllegalStateException("No wall found");
+	}
+
+}
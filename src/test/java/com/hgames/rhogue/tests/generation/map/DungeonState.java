@@ -0,0 +1,110 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.generation.map.dungeon.ICellToZone;
+import com.hgames.rhogue.zone.Zone;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * What a dungeon looks like, through its public API. Zones are recorded by
+ * their cells, so that states of distinct dungeons can be compared.
+ * 
+ * @author smelC
+ */
+class DungeonState {
+
+	private final DungeonSymbol[][] map;
+	private final Coord upStair;
+	private final Coord downStair;
+	/** The cells of the zones of every list of the dungeon */
+	private final List<List<Set<Coord>>> lists = new ArrayList<List<Set<Coord>>>();
+	/** The cells of the neighbors of rooms and corridors */
+	private final List<Set<Set<Coord>>> connections = new ArrayList<Set<Set<Coord>>>();
+	/** The cells of the zones of {@code cellToZone}, or null */
+	private final /* @Nullable */ Set<Coord>[][] cellToZone;
+
+	DungeonState(Dungeon dungeon) {
+		this(dungeon, null);
+	}
+
+	/**
+	 * @param dungeon
+	 * @param cellToZone
+	 *            The zones of cells of {@code dungeon} to record, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	DungeonState(Dungeon dungeon, /* @Nullable */ ICellToZone cellToZone) {
+		final int width = dungeon.getWidth();
+		final int height = dungeon.getHeight();
+		this.map = new DungeonSymbol[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++)
+				map[x][y] = dungeon.getSymbol(x, y);
+		}
+		this.upStair = dungeon.getStair(true);
+		this.downStair = dungeon.getStair(false);
+		lists.add(toCells(dungeon.getRooms()));
+		lists.add(toCells(dungeon.getCorridors()));
+		lists.add(toCells(dungeon.getDisconnectedRooms()));
+		lists.add(toCells(dungeon.getWaterIslands()));
+		lists.add(toCells(dungeon.getChasms()));
+		lists.add(toCells(dungeon.getDeepWaterPools()));
+		lists.add(toCells(dungeon.getGrassPools()));
+		lists.add(toCells(dungeon.getHighGrassPools()));
+		for (Zone z : dungeon.getRooms())
+			connections.add(new HashSet<Set<Coord>>(toCells(dungeon.getNeighbors(z))));
+		for (Zone z : dungeon.getCorridors())
+			connections.add(new HashSet<Set<Coord>>(toCells(dungeon.getNeighbors(z))));
+		if (cellToZone == null)
+			this.cellToZone = null;
+		else {
+			this.cellToZone = new Set[width][height];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					final Zone z = cellToZone.get(Coord.get(x, y));
+					this.cellToZone[x][y] = z == null ? null : new HashSet<Coord>(z.getAll(false));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param other
+	 * @param what
+	 *            A description of {@code other}, for errors.
+	 * @throws IllegalStateException
+	 *             If {@code other} differs from {@code this}.
+	 */
+	void check(DungeonState other, String what) {
+		if (!Arrays.deepEquals(map, other.map))
+			throw new IllegalStateException(what + ": map differs");
+		if (!equals(upStair, other.upStair) || !equals(downStair, other.downStair))
+			throw new IllegalStateException(what + ": stairs differ");
+		if (!lists.equals(other.lists))
+			throw new IllegalStateException(what + ": zones differ");
+		if (!connections.equals(other.connections))
+			throw new IllegalStateException(what + ": connections differ");
+		if (!Arrays.deepEquals(cellToZone, other.cellToZone))
+			throw new IllegalStateException(what + ": zones of cells differ");
+	}
+
+	private static List<Set<Coord>> toCells(List<? extends Zone> zones) {
+		final List<Set<Coord>> result = new ArrayList<Set<Coord>>(zones.size());
+		for (Zone z : zones)
+			result.add(new HashSet<Coord>(z.getAll(false)));
+		return result;
+	}
+
+	private static boolean equals(/* @Nullable */ Object o1, /* @Nullable */ Object o2) {
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
+}
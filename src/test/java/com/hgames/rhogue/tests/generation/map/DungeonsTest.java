@@ -0,0 +1,138 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonAdapter;
+import com.hgames.rhogue.generation.map.dungeon.DungeonBuilder;
+import com.hgames.rhogue.generation.map.dungeon.DungeonSymbol;
+import com.hgames.rhogue.generation.map.dungeon.Dungeons;
+import com.hgames.rhogue.zone.SingleCellZone;
+import com.hgames.rhogue.zone.Zone;
+
+/**
+ * Tests of {@link Dungeons}.
+ * 
+ * @author smelC
+ */
+public class DungeonsTest {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		testAreConnected();
+	}
+
+	/**
+	 * Regression test of {@link Dungeons#areConnected(Dungeon, Zone, Zone, int)}
+	 * when a zone is first reached by a long path. It used to be wrong in that
+	 * case, because shorter paths through the zone weren't explored.
+	 */
+	private static void testAreConnected() {
+		final DungeonSymbol[][] map = new DungeonSymbol[16][3];
+		for (int x = 0; x < map.length; x++) {
+			for (int y = 0; y < map[x].length; y++)
+				map[x][y] = DungeonSymbol.WALL;
+		}
+		final Dungeon dungeon = new DungeonAdapter(map).build();
+		final DungeonBuilder builder = dungeon.getBuilder();
+		final Zone a = addZone(builder, 1, true);
+		final Zone b = addZone(builder, 3, false);
+		final Zone c = addZone(builder, 5, true);
+		final Zone d = addZone(builder, 7, false);
+		final Zone z = addZone(builder, 9, true);
+		/*
+		 * a's first neighbor is b, so searches from a reach d by the long path
+		 * (a, b, c, d) before the short one (a, d).
+		 */
+		builder.addConnection(a, b);
+		builder.addConnection(b, c);
+		builder.addConnection(c, d);
+		builder.addConnection(a, d);
+		builder.addConnection(d, z);
+
+		check(dungeon, a, z, 1, false);
+		check(dungeon, a, z, 2, true);
+		check(dungeon, a, z, 3, true);
+		check(dungeon, a, z, Integer.MAX_VALUE, true);
+		check(dungeon, b, z, 2, false);
+		check(dungeon, b, z, 3, true);
+		check(dungeon, z, a, 2, true);
+		checkAll(dungeon);
+		System.out.println("Checked areConnected when a zone is first reached by a long path");
+
+		/* Removing 'd' disconnects 'z' */
+		builder.removeRoomOrCorridor(d);
+		check(dungeon, a, z, Integer.MAX_VALUE, false);
+		check(dungeon, a, c, 2, true);
+		/* 'e' is added right after the removal of 'd', so it reuses its id */
+		final Zone e = addZone(builder, 11, true);
+		builder.addConnection(e, z);
+		check(dungeon, e, z, 1, true);
+		check(dungeon, a, z, Integer.MAX_VALUE, false);
+		check(dungeon, a, e, Integer.MAX_VALUE, false);
+		check(dungeon, c, e, Integer.MAX_VALUE, false);
+		builder.addConnection(c, e);
+		check(dungeon, a, z, 3, false);
+		check(dungeon, a, z, 4, true);
+		check(dungeon, z, a, 4, true);
+		checkAll(dungeon);
+		System.out.println("Checked areConnected after removeRoomOrCorridor");
+	}
+
+	private static Zone addZone(DungeonBuilder builder, int x, boolean roomOrCorridor) {
+		final Zone result = new SingleCellZone(x, 1);
+		builder.addZone(result, null, roomOrCorridor);
+		return result;
+	}
+
+	private static void check(Dungeon dungeon, Zone z0, Zone z1, int intermediates, boolean expected) {
+		if (Dungeons.areConnected(dungeon, z0, z1, intermediates) != expected)
+			throw new IllegalStateException("areConnected(" + z0 + ", " + z1 + ", " + intermediates
+					+ ") should be " + expected);
+	}
+
+	/**
+	 * Checks {@link Dungeons#areConnected(Dungeon, Zone, Zone, int)} against a
+	 * breadth-first search, for all pairs of zones and all depths.
+	 */
+	private static void checkAll(Dungeon dungeon) {
+		final List<Zone> zones = new ArrayList<Zone>(dungeon.getRooms());
+		zones.addAll(dungeon.getCorridors());
+		final int nbz = zones.size();
+		for (Zone z0 : zones) {
+			for (Zone z1 : zones) {
+				for (int i = 0; i <= nbz; i++)
+					check(dungeon, z0, z1, i, getDistance(dungeon, z0, z1) <= i);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of connections between {@code z0} and {@code z1}
+	 *         (at least 1), or {@link Integer#MAX_VALUE} if they aren't
+	 *         connected.
+	 */
+	private static int getDistance(Dungeon dungeon, Zone z0, Zone z1) {
+		Set<Zone> frontier = new HashSet<Zone>(dungeon.getNeighbors(z0));
+		final Set<Zone> reached = new HashSet<Zone>(frontier);
+		for (int result = 1; !frontier.isEmpty(); result++) {
+			if (frontier.contains(z1))
+				return result;
+			final Set<Zone> next = new HashSet<Zone>();
+			for (Zone z : frontier) {
+				for (Zone neighbor : dungeon.getNeighbors(z)) {
+					if (reached.add(neighbor))
+						next.add(neighbor);
+				}
+			}
+			frontier = next;
+		}
+		return Integer.MAX_VALUE;
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.hgames.rhogue.tests.generation.map;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hgames.rhogue.generation.map.dungeon.Dungeon;
+import com.hgames.rhogue.generation.map.dungeon.DungeonGenerators;
+import com.hgames.rhogue.generation.map.dungeon.flood.DungeonGrassFloodFill;
+import com.hgames.rhogue.generation.map.dungeon.flood.DungeonWaterStartFloodFill;
+import com.hgames.rhogue.generation.map.dungeon.flood.FloodFill;
+import com.hgames.rhogue.generation.map.dungeon.flood.IFloodSpanObjective;
+import com.hgames.rhogue.rng.DefaultRNG;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
+
+/**
+ * Tests that {@link FloodFill#floodSpans(IRNG, int, int, IFloodSpanObjective, boolean, int[])}
+ * floods on the same cells as
+ * {@link FloodFill#flood(IRNG, int, int, com.hgames.rhogue.generation.map.dungeon.flood.IFloodObjective, boolean, int[])}
+ * when the objective doesn't stop them.
+ * 
+ * @author smelC
+ */
+public class FloodFillTest {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		final int width = 60;
+		final int height = 40;
+		final DungeonGenerators dgens = new DungeonGenerators(new DefaultRNG(DungeonGeneratorTest.SEED), width,
+				height);
+		test("cave", dgens.cave().generate());
+		test("fancy", dgens.fancy().generate());
+	}
+
+	private static void test(String name, Dungeon dungeon) {
+		final IRNG rng = new DefaultRNG(DungeonGeneratorTest.SEED);
+		final int width = dungeon.getWidth();
+		final int height = dungeon.getHeight();
+		final FloodFill grass = new DungeonGrassFloodFill(dungeon.getMap());
+		final FloodFill water = new DungeonWaterStartFloodFill(dungeon.getMap(), width, height);
+		final int[] buf = new int[width * height];
+		int nonEmpty = 0;
+		for (int i = 0; i < 64; i++) {
+			final int x = rng.nextInt(width);
+			final int y = rng.nextInt(height);
+			if (0 < check(rng, grass, x, y, buf))
+				nonEmpty++;
+			if (0 < check(rng, water, x, y, buf))
+				nonEmpty++;
+		}
+		if (nonEmpty == 0)
+			throw new IllegalStateException("No flood was tried on the " + name + " dungeon");
+		System.out.println("Checked " + nonEmpty + " span floods against cell floods on the " + name + " dungeon");
+	}
+
+	/** @return The size of the flood */
+	private static int check(IRNG rng, FloodFill fill, int x, int y, int[] buf) {
+		final int nb = fill.flood(rng, x, y, new NeverMet(), false, buf);
+		final Set<Integer> cells = toSet(buf, nb);
+		final int nbSpans = fill.floodSpans(rng, x, y, new NeverMet(), false, buf);
+		final Set<Integer> spans = toSet(buf, nbSpans);
+		if (!cells.equals(spans))
+			throw new IllegalStateException("Span flood from " + Coord.get(x, y) + " differs from the cell flood: "
+					+ spans.size() + " cells instead of " + cells.size());
+		return nb;
+	}
+
+	private static Set<Integer> toSet(int[] buf, int nb) {
+		final Set<Integer> result = new HashSet<Integer>(nb);
+		for (int i = 0; i < nb; i++) {
+			if (!result.add(buf[i]))
+				throw new IllegalStateException("Cell " + buf[i] + " is flooded twice");
+		}
+		return result;
+	}
+
+	/**
+	 * An objective that never stops the flood.
+	 * 
+	 * @author smelC
+	 */
+	private static class NeverMet implements IFloodSpanObjective {
+
+		@Override
+		public void record(Coord c) {
+			/* Nothing to do */
+		}
+
+		@Override
+		public boolean isMet() {
+			return false;
+		}
+
+		@Override
+		public int getSpanLimit() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public void recordSpan(int x, int yStart, int yEnd) {
+			/* Nothing to do */
+		}
+	}
+
+}